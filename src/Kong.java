@@ -1,11 +1,134 @@
+import ast.Program;
+import embed.AstCache;
+import embed.KongParseException;
+import embed.KongProgram;
+import embed.ProjectLoader;
+import evaluator.Evaluator;
+import jit.Jit;
+import lexer.Lexer;
+import lexer.Utf8Sequence;
+import object.Environment;
+import object.KongError;
+import object.KongObject;
+import object.Parallel;
+import optimizer.Optimizer;
+import parser.Parser;
+import repl.Engine;
 import repl.Repl;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 public class Kong {
 
+    private static final Optimizer NO_OPTIMIZATION = new Optimizer(Collections.emptyList());
+
     public static void main(String[] args) {
+        Engine engine = Engine.EVALUATOR;
+        Optimizer optimizer = new Optimizer();
+        boolean dumpAst = false;
+        boolean lazyParse = false;
+        AstCache cache = AstCache.getDefault();
+        List<Path> files = new ArrayList<>();
+        for(String arg : args) {
+            if(arg.equals("--engine=vm")) engine = Engine.VM;
+            else if(arg.equals("--engine=eval")) engine = Engine.EVALUATOR;
+            else if(arg.equals("--jit=off")) Jit.setEnabled(false);
+            else if(arg.equals("--jit=on")) Jit.setEnabled(true);
+            else if(arg.equals("--optimize=off")) optimizer = new Optimizer(Collections.emptyList());
+            else if(arg.equals("--dump-ast")) dumpAst = true;
+            else if(arg.startsWith("--parallelism=")) Parallel.setParallelism(Integer.parseInt(arg.substring("--parallelism=".length())));
+            else if(arg.equals("--cache=off")) cache = null;
+            else if(arg.equals("--lazy-parse")) lazyParse = true;
+            else if(arg.startsWith("--cache-dir=")) cache = new AstCache(Paths.get(arg.substring("--cache-dir=".length())));
+            else if(!arg.startsWith("--")) files.add(Paths.get(arg));
+        }
+
+        boolean singleFile = files.size() == 1 && !Files.isDirectory(files.get(0));
+        // Only the evaluator can run a body parsed on its first call, the compiler needs every body upfront
+        if(lazyParse && (engine != Engine.EVALUATOR || !singleFile)) {
+            System.err.println("--lazy-parse only works when running a single file with the evaluator");
+            System.exit(1);
+        }
+
+        if(singleFile) {
+            System.exit(run(files.get(0), engine, lazyParse ? null : cache, optimizer, lazyParse, dumpAst));
+        }
+        if(!files.isEmpty()) {
+            System.exit(runProject(files, engine, cache, optimizer, dumpAst));
+        }
+
         String name = System.getProperty("user.name");
         System.out.printf("Hello %s! This is the Monkey programming language!\n", name);
         System.out.println("Feel free to type in commands\n");
-        Repl.start(System.in, System.out);
+        Repl.start(System.in, System.out, engine, optimizer, dumpAst);
+    }
+
+    private static int run(Path file, Engine engine, AstCache cache, Optimizer optimizer, boolean lazyParse, boolean dumpAst) {
+        try {
+            KongObject result = lazyParse
+                    ? runLazily(file, optimizer, dumpAst)
+                    : execute(KongProgram.read(file, cache), engine, optimizer, dumpAst);
+            return report(result);
+        } catch (KongParseException e) {
+            return report(e);
+        } catch (IOException e) {
+            System.err.println("can not read " + file + ": " + e.getMessage());
+            return 1;
+        }
+    }
+
+    // A directory or several files run as one program, the files are parsed in parallel and joined in order
+    private static int runProject(List<Path> paths, Engine engine, AstCache cache, Optimizer optimizer, boolean dumpAst) {
+        ProjectLoader loader = new ProjectLoader(Runtime.getRuntime().availableProcessors(), cache);
+        try {
+            return report(execute(loader.load(paths), engine, optimizer, dumpAst));
+        } catch (KongParseException e) {
+            return report(e);
+        } catch (IOException e) {
+            System.err.println("can not read " + e.getMessage());
+            return 1;
+        }
+    }
+
+    private static KongObject execute(Program program, Engine engine, Optimizer optimizer, boolean dumpAst) {
+        if(!dumpAst) return KongProgram.compile(program, engine, optimizer).execute();
+
+        // The printed tree is the one that runs, it is not optimized a second time
+        Program optimized = optimizer.optimize(program);
+        System.out.println(optimized);
+        return KongProgram.compile(optimized, engine, NO_OPTIMIZATION).execute();
+    }
+
+    private static int report(KongObject result) {
+        if(result instanceof KongError) {
+            System.err.println(result.inspect());
+            return 1;
+        }
+        return 0;
+    }
+
+    private static int report(KongParseException e) {
+        System.err.println("parser errors:");
+        for(String error : e.getErrors()) {
+            System.err.println("\t" + error);
+        }
+        return 1;
+    }
+
+    // Function bodies are parsed on their first call, a program with bodies left unparsed can not be shared
+    // like a KongProgram because resolving them later defines globals in the environment running it
+    private static KongObject runLazily(Path file, Optimizer optimizer, boolean dumpAst) throws IOException {
+        Parser parser = new Parser(new Lexer(Utf8Sequence.map(file)), true);
+        Program program = parser.parseProgram();
+        if(!parser.getErrors().isEmpty()) throw new KongParseException(parser.getErrors());
+        program = optimizer.optimize(program);
+        if(dumpAst) System.out.println(program);
+        return new Evaluator(new Environment()).visit(program);
     }
 }
@@ -1,5 +1,7 @@
 package ast;
 
+import evaluator.InlineCache;
+
 import java.util.List;
 
 public class CallExpression extends Expression {
@@ -8,6 +10,12 @@ public class CallExpression extends Expression {
     private final Expression function;
     private final List<Expression> arguments;
 
+    // Set by the resolver when the value of the call is the result of the enclosing function
+    private volatile boolean tailCall;
+
+    // Created by the evaluator on the first call through this site, threads running the same program share it
+    private volatile InlineCache inlineCache;
+
     public CallExpression(Expression function, List<Expression> arguments) {
         this.function = function;
         this.arguments = arguments;
@@ -21,6 +29,22 @@ public class CallExpression extends Expression {
         return arguments;
     }
 
+    public InlineCache getInlineCache() {
+        return inlineCache;
+    }
+
+    public void setInlineCache(InlineCache inlineCache) {
+        this.inlineCache = inlineCache;
+    }
+
+    public boolean isTailCall() {
+        return tailCall;
+    }
+
+    public void setTailCall(boolean tailCall) {
+        this.tailCall = tailCall;
+    }
+
     @Override
     public <R> R accept(ExpressionVisitor<R> visitor) {
         return visitor.visit(this);
@@ -0,0 +1,145 @@
+package ast;
+
+import token.Symbol;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+// Declares every let of a function body upfront, including the ones inside if blocks,
+// because the tree-walker binds them all in the environment of the enclosing call
+public class DeclarationCollector implements StatementVisitor<Void>, ExpressionVisitor<Void> {
+
+    private final Consumer<Symbol> declaration;
+    private boolean createsClosures;
+
+    public DeclarationCollector(Consumer<Symbol> declaration) {
+        this.declaration = declaration;
+    }
+
+    public boolean createsClosures() {
+        return createsClosures;
+    }
+
+    public void collect(List<Statement> statements) {
+        if(statements == null) return;
+        for(Statement statement : statements) {
+            if(statement != null) statement.accept(this);
+        }
+    }
+
+    private void collect(Expression expression) {
+        if(expression != null) expression.accept(this);
+    }
+
+    @Override
+    public Void visit(Program statement) {
+        collect(statement.getStatements());
+        return null;
+    }
+
+    @Override
+    public Void visit(LetStatement statement) {
+        declaration.accept(statement.getName().getSymbol());
+        collect(statement.getValue());
+        return null;
+    }
+
+    @Override
+    public Void visit(ReturnStatement statement) {
+        collect(statement.getReturnValue());
+        return null;
+    }
+
+    @Override
+    public Void visit(ExpressionStatement statement) {
+        collect(statement.getExpression());
+        return null;
+    }
+
+    @Override
+    public Void visit(BlockStatement statement) {
+        collect(statement.getStatements());
+        return null;
+    }
+
+    @Override
+    public Void visit(Identifier expression) {
+        return null;
+    }
+
+    @Override
+    public Void visit(IntegerLiteral expression) {
+        return null;
+    }
+
+    @Override
+    public Void visit(StringLiteral expression) {
+        return null;
+    }
+
+    @Override
+    public Void visit(BooleanLiteral expression) {
+        return null;
+    }
+
+    @Override
+    public Void visit(PrefixExpression expression) {
+        collect(expression.getRight());
+        return null;
+    }
+
+    @Override
+    public Void visit(InfixExpression expression) {
+        collect(expression.getLeft());
+        collect(expression.getRight());
+        return null;
+    }
+
+    @Override
+    public Void visit(IfExpression expression) {
+        collect(expression.getCondition());
+        if(expression.getConsequence() != null) expression.getConsequence().accept(this);
+        if(expression.getAlternative() != null) expression.getAlternative().accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visit(FunctionLiteral expression) {
+        createsClosures = true;
+        return null;
+    }
+
+    @Override
+    public Void visit(CallExpression expression) {
+        collect(expression.getFunction());
+        if(expression.getArguments() != null) {
+            for(Expression argument : expression.getArguments()) collect(argument);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(ArrayLiteral expression) {
+        if(expression.getElements() != null) {
+            for(Expression element : expression.getElements()) collect(element);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(IndexExpression expression) {
+        collect(expression.getLeft());
+        collect(expression.getIndex());
+        return null;
+    }
+
+    @Override
+    public Void visit(MapLiteral expression) {
+        for(Map.Entry<Expression, Expression> pair : expression.getPairs().entrySet()) {
+            collect(pair.getKey());
+            collect(pair.getValue());
+        }
+        return null;
+    }
+}
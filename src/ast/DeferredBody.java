@@ -0,0 +1,19 @@
+package ast;
+
+import token.Symbol;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+// Tokens of a function body skipped by a lazy parse
+public interface DeferredBody {
+
+    // Parses the body, adding its parser errors to the list
+    BlockStatement parse(List<String> errors);
+
+    // Every name token of the body, locals included
+    void forEachName(Consumer<Symbol> action);
+
+    // Shared by every deferred body of one source, which is read through a single cursor
+    Object getLock();
+}
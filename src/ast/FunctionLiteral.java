@@ -1,15 +1,96 @@
 package ast;
 
+import jit.CompiledBody;
+import token.Symbol;
+
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 public class FunctionLiteral extends Expression {
 
     private final List<Identifier> parameters;
-    private final BlockStatement body;
+
+    // Null until a body skipped by a lazy parse is needed, the resolver leaves its work for that moment too
+    private volatile BlockStatement body;
+    private DeferredBody deferredBody;
+    private final Object materializeLock;
+    private Runnable deferredResolution;
+    private BlockStatement parsing;
+
+    // Names of the frame slots, parameters first then every let of the body, set by the resolver
+    private Symbol[] localNames;
+    private boolean createsClosures;
+
+    // Calls seen by the evaluator and the body generated once the function became hot,
+    // published to other threads running the same function through parallel builtins
+    private final AtomicInteger callCount = new AtomicInteger();
+    private volatile CompiledBody compiledBody;
 
     public FunctionLiteral(List<Identifier> parameters, BlockStatement body) {
         this.parameters = parameters;
         this.body = body;
+        this.materializeLock = this;
+    }
+
+    public FunctionLiteral(List<Identifier> parameters, DeferredBody deferredBody) {
+        this.parameters = parameters;
+        this.deferredBody = deferredBody;
+        this.materializeLock = deferredBody.getLock();
+    }
+
+    public boolean isBodyParsed() {
+        return body != null;
+    }
+
+    // Parses and resolves a deferred body, returns its parser errors
+    public List<String> parseBody() {
+        List<String> errors = new ArrayList<>();
+        if(body == null) materialize(errors);
+        return errors;
+    }
+
+    // Names the deferred body mentions, nothing once the body is parsed
+    public void forEachDeferredName(Consumer<Symbol> action) {
+        DeferredBody deferred = deferredBody;
+        if(deferred != null) deferred.forEachName(action);
+    }
+
+    public void setDeferredResolution(Runnable deferredResolution) {
+        this.deferredResolution = deferredResolution;
+    }
+
+    public Symbol[] getLocalNames() {
+        if(body == null) getBody();
+        return localNames;
+    }
+
+    public void setLocalNames(Symbol[] localNames) {
+        this.localNames = localNames;
+    }
+
+    public boolean createsClosures() {
+        if(body == null) getBody();
+        return createsClosures;
+    }
+
+    public void setCreatesClosures(boolean createsClosures) {
+        this.createsClosures = createsClosures;
+    }
+
+    // Counts a call, true for exactly one call, the one reaching the threshold, whichever thread makes it
+    public boolean countCall(int threshold) {
+        if(callCount.get() >= threshold) return false;
+        return callCount.incrementAndGet() == threshold;
+    }
+
+    public CompiledBody getCompiledBody() {
+        return compiledBody;
+    }
+
+    public void setCompiledBody(CompiledBody compiledBody) {
+        this.compiledBody = compiledBody;
     }
 
     public List<Identifier> getParameters() {
@@ -17,7 +98,33 @@ public class FunctionLiteral extends Expression {
     }
 
     public BlockStatement getBody() {
-        return body;
+        BlockStatement parsed = body;
+        if(parsed != null) return parsed;
+
+        List<String> errors = new ArrayList<>();
+        parsed = materialize(errors);
+        if(parsed == null) throw new IllegalStateException("parser errors in function body: " + String.join(", ", errors));
+        return parsed;
+    }
+
+    // The body is published once resolved, the resolver reading it meanwhile gets it from parsing. Bodies of
+    // one source are materialized one at a time as they share the token buffer and the source behind it
+    private BlockStatement materialize(List<String> errors) {
+        synchronized (materializeLock) {
+            if(body != null) return body;
+            if(parsing != null) return parsing;
+
+            BlockStatement parsed = deferredBody.parse(errors);
+            if(!errors.isEmpty()) return null;
+
+            parsing = parsed;
+            if(deferredResolution != null) deferredResolution.run();
+            body = parsed;
+            parsing = null;
+            deferredBody = null;
+            deferredResolution = null;
+            return parsed;
+        }
     }
 
     @Override
@@ -37,7 +144,8 @@ public class FunctionLiteral extends Expression {
             }
         }
         builder.append(") ");
-        builder.append(body.toString());
+        // Printing leaves a deferred body for its first call
+        builder.append(isBodyParsed() ? body.toString() : "{ ... }");
         return builder.toString();
     }
 }
@@ -1,15 +1,56 @@
 package ast;
 
+import token.Symbol;
+
 public class Identifier extends Expression {
 
-    private final String value;
+    private final Symbol symbol;
+
+    // Lexical address assigned by the resolver, number of enclosing functions to walk and slot in that frame
+    private int depth = -1;
+    private int index = -1;
+    private boolean global;
+
+    public Identifier(Symbol symbol) {
+        this.symbol = symbol;
+    }
 
     public Identifier(String value) {
-        this.value = value;
+        this(Symbol.intern(value));
+    }
+
+    public Symbol getSymbol() {
+        return symbol;
     }
 
     public String getValue() {
-        return value;
+        return symbol.getName();
+    }
+
+    public void resolve(int depth, int index) {
+        this.depth = depth;
+        this.index = index;
+    }
+
+    public void resolveGlobal(int depth, int index) {
+        resolve(depth, index);
+        this.global = true;
+    }
+
+    public boolean isGlobal() {
+        return global;
+    }
+
+    public boolean isResolved() {
+        return index != -1;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public int getIndex() {
+        return index;
     }
 
     @Override
@@ -19,6 +60,6 @@ public class Identifier extends Expression {
 
     @Override
     public String toString() {
-        return value;
+        return symbol.getName();
     }
 }
@@ -4,11 +4,16 @@ public class InfixExpression extends Expression {
 
     private final Expression left;
     private final String operator;
+    private final InfixOperator infixOperator;
     private final Expression right;
 
+    // Updated while the program runs, by every thread running it
+    private volatile Specialization specialization = Specialization.UNINITIALIZED;
+
     public InfixExpression(Expression left, String operator, Expression right) {
         this.left = left;
         this.operator = operator;
+        this.infixOperator = InfixOperator.lookup(operator);
         this.right = right;
     }
 
@@ -20,6 +25,18 @@ public class InfixExpression extends Expression {
         return operator;
     }
 
+    public InfixOperator getInfixOperator() {
+        return infixOperator;
+    }
+
+    public Specialization getSpecialization() {
+        return specialization;
+    }
+
+    public void setSpecialization(Specialization specialization) {
+        this.specialization = specialization;
+    }
+
     public Expression getRight() {
         return right;
     }
@@ -0,0 +1,29 @@
+package ast;
+
+public enum InfixOperator {
+    PLUS("+"),
+    MINUS("-"),
+    ASTERISK("*"),
+    SLASH("/"),
+    LT("<"),
+    GT(">"),
+    EQ("=="),
+    NOT_EQ("!=");
+
+    private final String literal;
+
+    InfixOperator(String literal) {
+        this.literal = literal;
+    }
+
+    public String getLiteral() {
+        return literal;
+    }
+
+    public static InfixOperator lookup(String literal) {
+        for(InfixOperator operator : values()) {
+            if(operator.literal.equals(literal)) return operator;
+        }
+        return null;
+    }
+}
@@ -1,17 +1,27 @@
 package ast;
 
+import object.KongInteger;
+
 public class IntegerLiteral extends Expression {
 
     private final long value;
 
+    // Created once here, every evaluation of the literal returns the same object
+    private final KongInteger object;
+
     public IntegerLiteral(long value) {
         this.value = value;
+        this.object = KongInteger.valueOf(value);
     }
 
     public long getValue() {
         return value;
     }
 
+    public KongInteger getObject() {
+        return object;
+    }
+
     @Override
     public String toString() {
         return String.valueOf(value);
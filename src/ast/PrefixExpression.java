@@ -3,10 +3,15 @@ package ast;
 public class PrefixExpression extends Expression{
 
     private final String operator;
+    private final PrefixOperator prefixOperator;
     private final Expression right;
 
+    // Updated while the program runs, by every thread running it
+    private volatile Specialization specialization = Specialization.UNINITIALIZED;
+
     public PrefixExpression(String operator, Expression right) {
         this.operator = operator;
+        this.prefixOperator = PrefixOperator.lookup(operator);
         this.right = right;
     }
 
@@ -14,6 +19,18 @@ public class PrefixExpression extends Expression{
         return operator;
     }
 
+    public PrefixOperator getPrefixOperator() {
+        return prefixOperator;
+    }
+
+    public Specialization getSpecialization() {
+        return specialization;
+    }
+
+    public void setSpecialization(Specialization specialization) {
+        this.specialization = specialization;
+    }
+
     public Expression getRight() {
         return right;
     }
@@ -0,0 +1,23 @@
+package ast;
+
+public enum PrefixOperator {
+    BANG("!"),
+    MINUS("-");
+
+    private final String literal;
+
+    PrefixOperator(String literal) {
+        this.literal = literal;
+    }
+
+    public String getLiteral() {
+        return literal;
+    }
+
+    public static PrefixOperator lookup(String literal) {
+        for(PrefixOperator operator : values()) {
+            if(operator.literal.equals(literal)) return operator;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,9 @@
+package ast;
+
+// Operand types an operator site has seen so far, a site only ever moves towards GENERIC
+public enum Specialization {
+    UNINITIALIZED,
+    INTEGER,
+    STRING,
+    GENERIC,
+}
@@ -0,0 +1,28 @@
+package compiler;
+
+public class Binding {
+
+    private final BindingScope scope;
+
+    // Number of enclosing functions between the reference and the binding
+    private final int depth;
+    private final int index;
+
+    public Binding(BindingScope scope, int depth, int index) {
+        this.scope = scope;
+        this.depth = depth;
+        this.index = index;
+    }
+
+    public BindingScope getScope() {
+        return scope;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+}
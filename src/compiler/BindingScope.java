@@ -0,0 +1,7 @@
+package compiler;
+
+public enum BindingScope {
+    GLOBAL,
+    LOCAL,
+    OUTER,
+}
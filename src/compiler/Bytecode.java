@@ -0,0 +1,32 @@
+package compiler;
+
+import object.KongCompiledFunction;
+import object.KongObject;
+import token.Symbol;
+
+import java.util.List;
+
+public class Bytecode {
+
+    private final KongCompiledFunction mainFunction;
+    private final KongObject[] constants;
+    private final List<Symbol> globalNames;
+
+    public Bytecode(KongCompiledFunction mainFunction, KongObject[] constants, List<Symbol> globalNames) {
+        this.mainFunction = mainFunction;
+        this.constants = constants;
+        this.globalNames = globalNames;
+    }
+
+    public KongCompiledFunction getMainFunction() {
+        return mainFunction;
+    }
+
+    public KongObject[] getConstants() {
+        return constants;
+    }
+
+    public List<Symbol> getGlobalNames() {
+        return globalNames;
+    }
+}
@@ -0,0 +1,384 @@
+package compiler;
+
+import ast.*;
+import object.KongCompiledFunction;
+import object.KongObject;
+import object.KongString;
+import token.Symbol;
+
+import java.util.*;
+
+public class Compiler implements StatementVisitor<Void>, ExpressionVisitor<Void> {
+
+    private static final int MAX_OPERAND = 0xFFFF;
+
+    private final List<KongObject> constants;
+    private final Map<Long, Integer> integerConstants = new HashMap<>();
+    private final Map<String, Integer> stringConstants = new HashMap<>();
+
+    private final SymbolTable globalSymbolTable;
+    private SymbolTable symbolTable;
+    private CompilationScope scope;
+
+    public Compiler() {
+        this(new SymbolTable(), new ArrayList<>());
+    }
+
+    // Reuses the state of previous compilations, closures they created keep pointing into the same pools
+    public Compiler(SymbolTable globalSymbolTable, List<KongObject> constants) {
+        this.constants = constants;
+        this.globalSymbolTable = globalSymbolTable;
+        this.symbolTable = globalSymbolTable;
+        this.scope = new CompilationScope();
+    }
+
+    public Bytecode compile(Program program) {
+        program.accept(this);
+        KongCompiledFunction mainFunction = new KongCompiledFunction(scope.toByteArray(), 0, 0,
+                scope.getMaxStackDepth(), true, new Symbol[0], null);
+        KongObject[] constantsPool = constants.toArray(new KongObject[0]);
+        return new Bytecode(mainFunction, constantsPool, globalSymbolTable.getNames());
+    }
+
+    @Override
+    public Void visit(Program statement) {
+        new DeclarationCollector(symbolTable::define).collect(statement.getStatements());
+        compileStatements(statement.getStatements(), false);
+        emit(OpCode.RETURN_VALUE);
+        return null;
+    }
+
+    @Override
+    public Void visit(LetStatement statement) {
+        statement.getValue().accept(this);
+        Binding binding = symbolTable.resolve(statement.getName().getSymbol());
+        if(binding.getScope() == BindingScope.GLOBAL) {
+            emit(OpCode.SET_GLOBAL, binding.getIndex());
+        } else {
+            emit(scope.capturesLocals ? OpCode.SET_CAPTURED : OpCode.SET_LOCAL, binding.getIndex());
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(ReturnStatement statement) {
+        // A return leaves the function wherever it is, a top level one ends the program instead
+        if(scope.function) {
+            compileTail(statement.getReturnValue());
+        } else {
+            statement.getReturnValue().accept(this);
+        }
+        emit(OpCode.RETURN_VALUE);
+        // Code after a return is unreachable, keep counting as if the statement left its value
+        scope.stackDepth++;
+        return null;
+    }
+
+    @Override
+    public Void visit(ExpressionStatement statement) {
+        statement.getExpression().accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visit(BlockStatement statement) {
+        compileStatements(statement.getStatements(), false);
+        return null;
+    }
+
+    @Override
+    public Void visit(Identifier expression) {
+        Binding binding = symbolTable.resolve(expression.getSymbol());
+        if(binding == null) {
+            // Unknown names are looked up at runtime, first as globals then as builtins
+            binding = new Binding(BindingScope.GLOBAL, 0, defineGlobal(expression.getSymbol()));
+        }
+        switch (binding.getScope()) {
+            case GLOBAL: emit(OpCode.GET_GLOBAL, binding.getIndex()); break;
+            case LOCAL: emit(scope.capturesLocals ? OpCode.GET_CAPTURED : OpCode.GET_LOCAL, binding.getIndex()); break;
+            case OUTER: emit(OpCode.GET_OUTER, binding.getDepth(), binding.getIndex()); break;
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(IntegerLiteral expression) {
+        Integer index = integerConstants.get(expression.getValue());
+        if(index == null) {
+            index = addConstant(expression.getObject());
+            integerConstants.put(expression.getValue(), index);
+        }
+        emit(OpCode.CONSTANT, index);
+        return null;
+    }
+
+    @Override
+    public Void visit(StringLiteral expression) {
+        Integer index = stringConstants.get(expression.getValue());
+        if(index == null) {
+            index = addConstant(new KongString(expression.getValue()));
+            stringConstants.put(expression.getValue(), index);
+        }
+        emit(OpCode.CONSTANT, index);
+        return null;
+    }
+
+    @Override
+    public Void visit(BooleanLiteral expression) {
+        emit(expression.isValue() ? OpCode.TRUE : OpCode.FALSE);
+        return null;
+    }
+
+    @Override
+    public Void visit(PrefixExpression expression) {
+        expression.getRight().accept(this);
+        switch (expression.getPrefixOperator()) {
+            case BANG: emit(OpCode.BANG); break;
+            case MINUS: emit(OpCode.MINUS); break;
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(InfixExpression expression) {
+        expression.getLeft().accept(this);
+        expression.getRight().accept(this);
+        switch (expression.getInfixOperator()) {
+            case PLUS: emit(OpCode.ADD); break;
+            case MINUS: emit(OpCode.SUB); break;
+            case ASTERISK: emit(OpCode.MUL); break;
+            case SLASH: emit(OpCode.DIV); break;
+            case LT: emit(OpCode.LESS_THAN); break;
+            case GT: emit(OpCode.GREATER_THAN); break;
+            case EQ: emit(OpCode.EQUAL); break;
+            case NOT_EQ: emit(OpCode.NOT_EQUAL); break;
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(IfExpression expression) {
+        compileIf(expression, false);
+        return null;
+    }
+
+    private void compileIf(IfExpression expression, boolean tail) {
+        expression.getCondition().accept(this);
+        int jumpNotTruthyPosition = emit(OpCode.JUMP_NOT_TRUTHY, 0);
+        int stackDepth = scope.stackDepth;
+
+        compileStatements(expression.getConsequence().getStatements(), tail);
+        int jumpPosition = emit(OpCode.JUMP, 0);
+        scope.patchJump(jumpNotTruthyPosition);
+        scope.stackDepth = stackDepth;
+
+        if(expression.getAlternative() != null) {
+            compileStatements(expression.getAlternative().getStatements(), tail);
+        } else {
+            emit(OpCode.NULL);
+        }
+        scope.patchJump(jumpPosition);
+        scope.stackDepth = stackDepth + 1;
+    }
+
+    @Override
+    public Void visit(FunctionLiteral expression) {
+        SymbolTable enclosingSymbolTable = symbolTable;
+        CompilationScope enclosingScope = scope;
+        symbolTable = new SymbolTable(enclosingSymbolTable);
+
+        List<Identifier> parameters = expression.getParameters();
+        for(Identifier parameter : parameters) {
+            symbolTable.define(parameter.getSymbol());
+        }
+        List<Statement> statements = expression.getBody().getStatements();
+        DeclarationCollector collector = new DeclarationCollector(symbolTable::define);
+        collector.collect(statements);
+
+        scope = new CompilationScope();
+        scope.function = true;
+        scope.capturesLocals = collector.createsClosures();
+        compileStatements(statements, true);
+        emit(OpCode.RETURN_VALUE);
+
+        if(symbolTable.size() > MAX_OPERAND) {
+            throw new IllegalStateException("too many local bindings in function " + expression);
+        }
+
+        Symbol[] localNames = symbolTable.getNames().toArray(new Symbol[0]);
+        KongCompiledFunction function = new KongCompiledFunction(scope.toByteArray(), localNames.length,
+                parameters.size(), scope.getMaxStackDepth(), scope.capturesLocals, localNames, expression);
+
+        symbolTable = enclosingSymbolTable;
+        scope = enclosingScope;
+
+        emit(OpCode.CLOSURE, addConstant(function));
+        return null;
+    }
+
+    @Override
+    public Void visit(CallExpression expression) {
+        compileCall(expression, false);
+        return null;
+    }
+
+    private void compileCall(CallExpression expression, boolean tail) {
+        expression.getFunction().accept(this);
+        for(Expression argument : expression.getArguments()) {
+            argument.accept(this);
+        }
+        emit(tail ? OpCode.TAIL_CALL : OpCode.CALL, expression.getArguments().size());
+    }
+
+    // Compiles an expression whose value the function returns, calls in it do not need a frame of their own
+    private void compileTail(Expression expression) {
+        if(expression instanceof CallExpression) {
+            compileCall((CallExpression) expression, true);
+        } else if(expression instanceof IfExpression) {
+            compileIf((IfExpression) expression, true);
+        } else {
+            expression.accept(this);
+        }
+    }
+
+    @Override
+    public Void visit(ArrayLiteral expression) {
+        for(Expression element : expression.getElements()) {
+            element.accept(this);
+        }
+        emit(OpCode.ARRAY, expression.getElements().size());
+        return null;
+    }
+
+    @Override
+    public Void visit(IndexExpression expression) {
+        expression.getLeft().accept(this);
+        expression.getIndex().accept(this);
+        emit(OpCode.INDEX);
+        return null;
+    }
+
+    @Override
+    public Void visit(MapLiteral expression) {
+        for(Map.Entry<Expression, Expression> pair : expression.getPairs().entrySet()) {
+            pair.getKey().accept(this);
+            pair.getValue().accept(this);
+        }
+        emit(OpCode.MAP, expression.getPairs().size());
+        return null;
+    }
+
+    // Leaves exactly one value on the stack, the value of the last statement, which is in tail position
+    // when the statements end a function
+    private void compileStatements(List<Statement> statements, boolean tail) {
+        if(statements.isEmpty()) {
+            emit(OpCode.VOID);
+            return;
+        }
+
+        int last = statements.size() - 1;
+        for(int i = 0 ; i <= last ; i++) {
+            Statement statement = statements.get(i);
+            if(tail && i == last && statement instanceof ExpressionStatement) {
+                compileTail(((ExpressionStatement) statement).getExpression());
+            } else {
+                statement.accept(this);
+            }
+            if(statement instanceof LetStatement) {
+                if(i == last) emit(OpCode.VOID);
+            } else if(i != last) {
+                emit(OpCode.POP);
+            }
+        }
+    }
+
+    private int defineGlobal(Symbol name) {
+        int index = globalSymbolTable.define(name);
+        if(index > MAX_OPERAND) throw new IllegalStateException("too many global bindings");
+        return index;
+    }
+
+    private int addConstant(KongObject object) {
+        if(constants.size() > MAX_OPERAND) throw new IllegalStateException("too many constants");
+        constants.add(object);
+        return constants.size() - 1;
+    }
+
+    private int emit(OpCode opCode, int... operands) {
+        scope.stackDepth += stackEffect(opCode, operands);
+        scope.maxStackDepth = Math.max(scope.maxStackDepth, scope.stackDepth);
+        return scope.add(Instructions.make(opCode, operands));
+    }
+
+    private int stackEffect(OpCode opCode, int... operands) {
+        switch (opCode) {
+            case CONSTANT:
+            case TRUE:
+            case FALSE:
+            case NULL:
+            case VOID:
+            case GET_GLOBAL:
+            case GET_LOCAL:
+            case GET_CAPTURED:
+            case GET_OUTER:
+            case CLOSURE:
+                return 1;
+            case POP:
+            case ADD:
+            case SUB:
+            case MUL:
+            case DIV:
+            case EQUAL:
+            case NOT_EQUAL:
+            case GREATER_THAN:
+            case LESS_THAN:
+            case JUMP_NOT_TRUTHY:
+            case SET_GLOBAL:
+            case SET_LOCAL:
+            case SET_CAPTURED:
+            case INDEX:
+            case RETURN_VALUE:
+                return -1;
+            case ARRAY: return 1 - operands[0];
+            case MAP: return 1 - 2 * operands[0];
+            case CALL:
+            case TAIL_CALL:
+                return -operands[0];
+            default: return 0;
+        }
+    }
+
+    private static class CompilationScope {
+
+        private byte[] instructions = new byte[64];
+        private int size;
+
+        private int stackDepth;
+        private int maxStackDepth;
+        private boolean capturesLocals;
+        private boolean function;
+
+        int add(byte[] instruction) {
+            if(size + instruction.length > instructions.length) {
+                instructions = Arrays.copyOf(instructions, Math.max(instructions.length * 2, size + instruction.length));
+            }
+            int position = size;
+            System.arraycopy(instruction, 0, instructions, size, instruction.length);
+            size += instruction.length;
+            return position;
+        }
+
+        // Points the jump at position to the next emitted instruction
+        void patchJump(int position) {
+            Instructions.writeOperand(instructions, position + 1, 4, size);
+        }
+
+        int getMaxStackDepth() {
+            return maxStackDepth;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(instructions, size);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package compiler;
+
+public class Instructions {
+
+    public static byte[] make(OpCode opCode, int... operands) {
+        int[] widths = opCode.getOperandWidths();
+        int length = 1;
+        for(int width : widths) length += width;
+
+        byte[] instruction = new byte[length];
+        instruction[0] = (byte) opCode.ordinal();
+
+        int offset = 1;
+        for(int i = 0 ; i < widths.length ; i++) {
+            writeOperand(instruction, offset, widths[i], operands[i]);
+            offset += widths[i];
+        }
+        return instruction;
+    }
+
+    public static void writeOperand(byte[] instructions, int offset, int width, int operand) {
+        for(int i = width - 1 ; i >= 0 ; i--) {
+            instructions[offset + i] = (byte) operand;
+            operand >>>= 8;
+        }
+    }
+
+    public static int readUint8(byte[] instructions, int offset) {
+        return instructions[offset] & 0xFF;
+    }
+
+    public static int readUint16(byte[] instructions, int offset) {
+        return (instructions[offset] & 0xFF) << 8 | (instructions[offset + 1] & 0xFF);
+    }
+
+    public static int readInt32(byte[] instructions, int offset) {
+        return (instructions[offset] & 0xFF) << 24
+                | (instructions[offset + 1] & 0xFF) << 16
+                | (instructions[offset + 2] & 0xFF) << 8
+                | (instructions[offset + 3] & 0xFF);
+    }
+}
@@ -0,0 +1,66 @@
+package compiler;
+
+public enum OpCode {
+    CONSTANT(2),
+    POP,
+
+    ADD,
+    SUB,
+    MUL,
+    DIV,
+
+    TRUE,
+    FALSE,
+    NULL,
+    // Pushes the absent value produced by empty blocks and let statements
+    VOID,
+
+    EQUAL,
+    NOT_EQUAL,
+    GREATER_THAN,
+    LESS_THAN,
+
+    MINUS,
+    BANG,
+
+    JUMP_NOT_TRUTHY(4),
+    JUMP(4),
+
+    GET_GLOBAL(2),
+    SET_GLOBAL(2),
+    // Locals kept on the stack, used by functions that create no closures
+    GET_LOCAL(2),
+    SET_LOCAL(2),
+    // Locals kept in a heap array that closures created by the function share
+    GET_CAPTURED(2),
+    SET_CAPTURED(2),
+    // depth, index
+    GET_OUTER(1, 2),
+
+    ARRAY(2),
+    MAP(2),
+    INDEX,
+
+    CALL(1),
+    // A call whose value the function returns, the callee runs in the caller's frame
+    TAIL_CALL(1),
+    RETURN_VALUE,
+
+    CLOSURE(2);
+
+    private static final OpCode[] opCodes = values();
+
+    private final int[] operandWidths;
+
+    OpCode(int... operandWidths) {
+        this.operandWidths = operandWidths;
+    }
+
+    public int[] getOperandWidths() {
+        return operandWidths;
+    }
+
+    public static OpCode lookup(byte opCode) {
+        return opCodes[opCode];
+    }
+}
@@ -0,0 +1,70 @@
+package compiler;
+
+import token.Symbol;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class SymbolTable {
+
+    private final SymbolTable outer;
+    private final Map<Symbol, Integer> store;
+    private final List<Symbol> names;
+
+    public SymbolTable() {
+        this.outer = null;
+        this.store = new HashMap<>();
+        this.names = new ArrayList<>();
+    }
+
+    public SymbolTable(SymbolTable outer) {
+        this.outer = outer;
+        this.store = new HashMap<>();
+        this.names = new ArrayList<>();
+    }
+
+    public int define(Symbol name) {
+        Integer index = store.get(name);
+        if(index != null) return index;
+
+        index = names.size();
+        store.put(name, index);
+        names.add(name);
+        return index;
+    }
+
+    public Binding resolve(Symbol name) {
+        SymbolTable table = this;
+        int depth = 0;
+        while (table != null) {
+            Integer index = table.store.get(name);
+            if(index != null) {
+                if(table.outer == null) return new Binding(BindingScope.GLOBAL, 0, index);
+                return new Binding(depth == 0 ? BindingScope.LOCAL : BindingScope.OUTER, depth, index);
+            }
+            table = table.outer;
+            depth++;
+        }
+        return null;
+    }
+
+    public SymbolTable getOuter() {
+        return outer;
+    }
+
+    public SymbolTable getGlobal() {
+        SymbolTable table = this;
+        while (table.outer != null) table = table.outer;
+        return table;
+    }
+
+    public List<Symbol> getNames() {
+        return names;
+    }
+
+    public int size() {
+        return names.size();
+    }
+}
@@ -0,0 +1,115 @@
+package embed;
+
+import ast.Program;
+import lexer.Lexer;
+import lexer.Utf8Sequence;
+import parser.Parser;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+// Parsed programs kept on disk by the sha-256 digest of their source, a file that did not change since its
+// last run is loaded from its mapped cache entry instead of being lexed and parsed again
+public class AstCache {
+
+    private static final String EXTENSION = ".kast";
+
+    private final Path directory;
+
+    public AstCache(Path directory) {
+        this.directory = directory;
+    }
+
+    // kong.cache.dir or ~/.kong/cache
+    public static AstCache getDefault() {
+        String directory = System.getProperty("kong.cache.dir");
+        if(directory != null) return new AstCache(Paths.get(directory));
+        return new AstCache(Paths.get(System.getProperty("user.home"), ".kong", "cache"));
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    // The source is mapped as well, on a miss it is lexed straight from the mapping
+    public Program parse(Path file) throws IOException {
+        ByteBuffer source = map(file);
+        byte[] digest = digest(source);
+        Path entry = directory.resolve(toHex(digest) + EXTENSION);
+
+        Program program = read(entry, digest);
+        if(program != null) return program;
+
+        Parser parser = new Parser(new Lexer(new Utf8Sequence(source)));
+        program = parser.parseProgram();
+        List<String> errors = parser.getErrors();
+        if(!errors.isEmpty()) throw new KongParseException(errors);
+
+        write(entry, program, digest);
+        return program;
+    }
+
+    // Missing, stale and damaged entries are all treated as a miss
+    private static Program read(Path entry, byte[] digest) throws IOException {
+        if(!Files.isRegularFile(entry)) return null;
+        try {
+            return AstReader.read(map(entry), digest);
+        } catch (BufferUnderflowException | IllegalStateException | IndexOutOfBoundsException | NegativeArraySizeException e) {
+            return null;
+        }
+    }
+
+    // The cache only saves time, a run never fails because its entry could not be written.
+    // Entries are written aside and moved in place so concurrent runs never read half of one
+    private void write(Path entry, Program program, byte[] digest) {
+        try {
+            Files.createDirectories(directory);
+            Path temporary = Files.createTempFile(directory, "kast", ".tmp");
+            try (OutputStream output = Files.newOutputStream(temporary)) {
+                AstWriter.write(program, digest, output);
+            }
+            try {
+                Files.move(temporary, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, entry, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+        } catch (IOException ignored) {
+        }
+    }
+
+    // The cache directory may be shared, two sources must never get the same entry even when crafted to
+    private static byte[] digest(ByteBuffer bytes) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(bytes.duplicate());
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform has to provide sha-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static ByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if(channel.size() > Integer.MAX_VALUE) throw new IOException(file + " is too large to map");
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for(byte b : bytes) {
+            builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,36 @@
+package embed;
+
+// Layout of cached programs: magic, format version, sha-256 digest of the source, length and crc32 of the
+// payload, then the payload, a string table and the tree in prefix order with one tag byte per node and
+// counts, string indexes and integers as varints. Bump VERSION whenever a node or the layout changes
+final class AstFormat {
+
+    static final int MAGIC = 0x4B415354;
+    static final int VERSION = 2;
+    static final int DIGEST_LENGTH = 32;
+    static final int HEADER_LENGTH = 8 + DIGEST_LENGTH + 8;
+
+    static final byte NULL = 0;
+
+    static final byte LET = 1;
+    static final byte RETURN = 2;
+    static final byte EXPRESSION = 3;
+    static final byte BLOCK = 4;
+
+    static final byte IDENTIFIER = 10;
+    static final byte INTEGER = 11;
+    static final byte STRING = 12;
+    static final byte TRUE = 13;
+    static final byte FALSE = 14;
+    static final byte PREFIX = 15;
+    static final byte INFIX = 16;
+    static final byte IF = 17;
+    static final byte FUNCTION = 18;
+    static final byte CALL = 19;
+    static final byte ARRAY = 20;
+    static final byte INDEX = 21;
+    static final byte MAP = 22;
+
+    private AstFormat() {
+    }
+}
@@ -0,0 +1,185 @@
+package embed;
+
+import ast.*;
+import token.Symbol;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+// Rebuilds a program written by AstWriter, returns null when the buffer was written for another
+// source or by another format version, or when its payload does not match the crc32 stored with it
+class AstReader {
+
+    private final ByteBuffer buffer;
+    private String[] strings;
+    private Symbol[] symbols;
+
+    private AstReader(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    static Program read(ByteBuffer buffer, byte[] digest) {
+        return new AstReader(buffer).readProgram(digest);
+    }
+
+    private Program readProgram(byte[] digest) {
+        if(buffer.remaining() < AstFormat.HEADER_LENGTH) return null;
+        if(buffer.getInt() != AstFormat.MAGIC || buffer.getInt() != AstFormat.VERSION) return null;
+
+        byte[] stored = new byte[AstFormat.DIGEST_LENGTH];
+        buffer.get(stored);
+        if(!Arrays.equals(stored, digest)) return null;
+
+        int payloadLength = buffer.getInt();
+        int payloadCrc = buffer.getInt();
+        if(payloadLength != buffer.remaining()) return null;
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate());
+        if((int) crc.getValue() != payloadCrc) return null;
+
+        Program program = readPayload();
+        // A payload decoding to a program before its end was not written by AstWriter
+        return buffer.hasRemaining() ? null : program;
+    }
+
+    private Program readPayload() {
+        strings = new String[buffer.getInt()];
+        symbols = new Symbol[strings.length];
+        for(int i = 0 ; i < strings.length ; i++) {
+            byte[] bytes = new byte[buffer.getInt()];
+            buffer.get(bytes);
+            strings[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return new Program(readStatements());
+    }
+
+    private List<Statement> readStatements() {
+        int count = readCount();
+        List<Statement> statements = new ArrayList<>(count);
+        for(int i = 0 ; i < count ; i++) {
+            statements.add(readStatement());
+        }
+        return statements;
+    }
+
+    private Statement readStatement() {
+        byte tag = buffer.get();
+        switch (tag) {
+            case AstFormat.LET: {
+                Identifier name = new Identifier(readSymbol());
+                return new LetStatement(name, readExpression());
+            }
+            case AstFormat.RETURN: return new ReturnStatement(readExpression());
+            case AstFormat.EXPRESSION: return new ExpressionStatement(readExpression());
+            case AstFormat.BLOCK: return new BlockStatement(readStatements());
+            default: throw new IllegalStateException("unknown statement tag " + tag);
+        }
+    }
+
+    private BlockStatement readBlock() {
+        byte tag = buffer.get();
+        if(tag == AstFormat.NULL) return null;
+        if(tag != AstFormat.BLOCK) throw new IllegalStateException("expected block, got tag " + tag);
+        return new BlockStatement(readStatements());
+    }
+
+    private List<Expression> readExpressions() {
+        int count = readCount();
+        List<Expression> expressions = new ArrayList<>(count);
+        for(int i = 0 ; i < count ; i++) {
+            expressions.add(readExpression());
+        }
+        return expressions;
+    }
+
+    private Expression readExpression() {
+        byte tag = buffer.get();
+        switch (tag) {
+            case AstFormat.NULL: return null;
+            case AstFormat.IDENTIFIER: return new Identifier(readSymbol());
+            case AstFormat.INTEGER: {
+                long value = readVarLong();
+                return new IntegerLiteral((value >>> 1) ^ -(value & 1));
+            }
+            case AstFormat.STRING: return new StringLiteral(readString());
+            case AstFormat.TRUE: return new BooleanLiteral(true);
+            case AstFormat.FALSE: return new BooleanLiteral(false);
+            case AstFormat.PREFIX: {
+                String operator = readString();
+                return new PrefixExpression(operator, readExpression());
+            }
+            case AstFormat.INFIX: {
+                String operator = readString();
+                Expression left = readExpression();
+                return new InfixExpression(left, operator, readExpression());
+            }
+            case AstFormat.IF: {
+                Expression condition = readExpression();
+                BlockStatement consequence = readBlock();
+                return new IfExpression(condition, consequence, readBlock());
+            }
+            case AstFormat.FUNCTION: {
+                int count = readCount();
+                List<Identifier> parameters = new ArrayList<>(count);
+                for(int i = 0 ; i < count ; i++) {
+                    parameters.add(new Identifier(readSymbol()));
+                }
+                return new FunctionLiteral(parameters, readBlock());
+            }
+            case AstFormat.CALL: {
+                Expression function = readExpression();
+                return new CallExpression(function, readExpressions());
+            }
+            case AstFormat.ARRAY: return new ArrayLiteral(readExpressions());
+            case AstFormat.INDEX: {
+                Expression left = readExpression();
+                return new IndexExpression(left, readExpression());
+            }
+            case AstFormat.MAP: {
+                int count = readCount();
+                Map<Expression, Expression> pairs = new LinkedHashMap<>();
+                for(int i = 0 ; i < count ; i++) {
+                    Expression key = readExpression();
+                    pairs.put(key, readExpression());
+                }
+                return new MapLiteral(pairs);
+            }
+            default: throw new IllegalStateException("unknown expression tag " + tag);
+        }
+    }
+
+    private String readString() {
+        return strings[readCount()];
+    }
+
+    // Names are interned once per string table entry rather than once per occurrence
+    private Symbol readSymbol() {
+        int index = readCount();
+        Symbol symbol = symbols[index];
+        if(symbol == null) {
+            symbol = Symbol.intern(strings[index]);
+            symbols[index] = symbol;
+        }
+        return symbol;
+    }
+
+    private int readCount() {
+        return (int) readVarLong();
+    }
+
+    private long readVarLong() {
+        long value = 0;
+        for(int shift = 0 ; ; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if(b >= 0) return value;
+            if(shift > 63) throw new IllegalStateException("malformed varint");
+        }
+    }
+}
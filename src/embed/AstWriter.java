@@ -0,0 +1,236 @@
+package embed;
+
+import ast.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+// Writes a parsed program in the AstFormat layout, names and string literals are stored once in the string table
+class AstWriter implements StatementVisitor<Void>, ExpressionVisitor<Void> {
+
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+    private final Map<String, Integer> stringIndexes = new HashMap<>();
+    private final List<String> strings = new ArrayList<>();
+
+    static void write(Program program, byte[] digest, OutputStream output) throws IOException {
+        AstWriter writer = new AstWriter();
+        writer.writeStatements(program.getStatements());
+
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        DataOutputStream payloadOut = new DataOutputStream(payload);
+        payloadOut.writeInt(writer.strings.size());
+        for(String string : writer.strings) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            payloadOut.writeInt(bytes.length);
+            payloadOut.write(bytes);
+        }
+        writer.body.writeTo(payloadOut);
+        payloadOut.flush();
+
+        CRC32 crc = new CRC32();
+        crc.update(payload.toByteArray());
+
+        DataOutputStream out = new DataOutputStream(output);
+        out.writeInt(AstFormat.MAGIC);
+        out.writeInt(AstFormat.VERSION);
+        out.write(digest);
+        out.writeInt(payload.size());
+        out.writeInt((int) crc.getValue());
+        payload.writeTo(out);
+        out.flush();
+    }
+
+    @Override
+    public Void visit(Program statement) {
+        writeStatements(statement.getStatements());
+        return null;
+    }
+
+    @Override
+    public Void visit(LetStatement statement) {
+        writeTag(AstFormat.LET);
+        writeString(statement.getName().getValue());
+        writeExpression(statement.getValue());
+        return null;
+    }
+
+    @Override
+    public Void visit(ReturnStatement statement) {
+        writeTag(AstFormat.RETURN);
+        writeExpression(statement.getReturnValue());
+        return null;
+    }
+
+    @Override
+    public Void visit(ExpressionStatement statement) {
+        writeTag(AstFormat.EXPRESSION);
+        writeExpression(statement.getExpression());
+        return null;
+    }
+
+    @Override
+    public Void visit(BlockStatement statement) {
+        writeTag(AstFormat.BLOCK);
+        writeStatements(statement.getStatements());
+        return null;
+    }
+
+    @Override
+    public Void visit(Identifier expression) {
+        writeTag(AstFormat.IDENTIFIER);
+        writeString(expression.getValue());
+        return null;
+    }
+
+    @Override
+    public Void visit(IntegerLiteral expression) {
+        writeTag(AstFormat.INTEGER);
+        // Zig zag so small negative values stay short too
+        long value = expression.getValue();
+        writeVarLong((value << 1) ^ (value >> 63));
+        return null;
+    }
+
+    @Override
+    public Void visit(StringLiteral expression) {
+        writeTag(AstFormat.STRING);
+        writeString(expression.getValue());
+        return null;
+    }
+
+    @Override
+    public Void visit(BooleanLiteral expression) {
+        writeTag(expression.isValue() ? AstFormat.TRUE : AstFormat.FALSE);
+        return null;
+    }
+
+    @Override
+    public Void visit(PrefixExpression expression) {
+        writeTag(AstFormat.PREFIX);
+        writeString(expression.getOperator());
+        writeExpression(expression.getRight());
+        return null;
+    }
+
+    @Override
+    public Void visit(InfixExpression expression) {
+        writeTag(AstFormat.INFIX);
+        writeString(expression.getOperator());
+        writeExpression(expression.getLeft());
+        writeExpression(expression.getRight());
+        return null;
+    }
+
+    @Override
+    public Void visit(IfExpression expression) {
+        writeTag(AstFormat.IF);
+        writeExpression(expression.getCondition());
+        writeBlock(expression.getConsequence());
+        writeBlock(expression.getAlternative());
+        return null;
+    }
+
+    @Override
+    public Void visit(FunctionLiteral expression) {
+        writeTag(AstFormat.FUNCTION);
+        writeCount(expression.getParameters().size());
+        for(Identifier parameter : expression.getParameters()) {
+            writeString(parameter.getValue());
+        }
+        writeBlock(expression.getBody());
+        return null;
+    }
+
+    @Override
+    public Void visit(CallExpression expression) {
+        writeTag(AstFormat.CALL);
+        writeExpression(expression.getFunction());
+        writeExpressions(expression.getArguments());
+        return null;
+    }
+
+    @Override
+    public Void visit(ArrayLiteral expression) {
+        writeTag(AstFormat.ARRAY);
+        writeExpressions(expression.getElements());
+        return null;
+    }
+
+    @Override
+    public Void visit(IndexExpression expression) {
+        writeTag(AstFormat.INDEX);
+        writeExpression(expression.getLeft());
+        writeExpression(expression.getIndex());
+        return null;
+    }
+
+    @Override
+    public Void visit(MapLiteral expression) {
+        writeTag(AstFormat.MAP);
+        writeCount(expression.getPairs().size());
+        for(Map.Entry<Expression, Expression> pair : expression.getPairs().entrySet()) {
+            writeExpression(pair.getKey());
+            writeExpression(pair.getValue());
+        }
+        return null;
+    }
+
+    private void writeStatements(List<Statement> statements) {
+        writeCount(statements.size());
+        for(Statement statement : statements) {
+            statement.accept(this);
+        }
+    }
+
+    private void writeBlock(BlockStatement block) {
+        if(block == null) writeTag(AstFormat.NULL);
+        else block.accept(this);
+    }
+
+    private void writeExpressions(List<Expression> expressions) {
+        writeCount(expressions.size());
+        for(Expression expression : expressions) {
+            writeExpression(expression);
+        }
+    }
+
+    private void writeExpression(Expression expression) {
+        if(expression == null) writeTag(AstFormat.NULL);
+        else expression.accept(this);
+    }
+
+    private void writeString(String string) {
+        Integer index = stringIndexes.get(string);
+        if(index == null) {
+            index = strings.size();
+            strings.add(string);
+            stringIndexes.put(string, index);
+        }
+        writeCount(index);
+    }
+
+    private void writeTag(byte tag) {
+        body.write(tag);
+    }
+
+    private void writeCount(int count) {
+        writeVarLong(count & 0xFFFFFFFFL);
+    }
+
+    // Seven bits per byte, the high bit set on every byte but the last
+    private void writeVarLong(long value) {
+        while ((value & ~0x7FL) != 0) {
+            body.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        body.write((int) value);
+    }
+}
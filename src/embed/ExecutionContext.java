@@ -0,0 +1,83 @@
+package embed;
+
+import ast.Program;
+import compiler.Bytecode;
+import evaluator.Evaluator;
+import object.Environment;
+import object.KongObject;
+import token.Symbol;
+import vm.VM;
+
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.List;
+
+// The globals of one run of a KongProgram, confined to the thread using it.
+// Values set before run are visible to the script and values it binds can be read afterwards
+public class ExecutionContext {
+
+    private final Program program;
+    private final Environment environment;
+
+    private final Bytecode bytecode;
+    private final KongObject[] globals;
+
+    // Standard output while null
+    private PrintWriter output;
+
+    ExecutionContext(Program program, Environment environment) {
+        this.program = program;
+        this.environment = environment;
+        this.bytecode = null;
+        this.globals = null;
+    }
+
+    ExecutionContext(Bytecode bytecode) {
+        this.program = null;
+        this.environment = null;
+        this.bytecode = bytecode;
+        this.globals = new KongObject[Math.max(1, bytecode.getGlobalNames().size())];
+    }
+
+    public KongObject run() {
+        if(bytecode != null) {
+            VM vm = new VM(bytecode, globals);
+            vm.setOutput(output);
+            return vm.run();
+        }
+        Evaluator evaluator = new Evaluator(environment);
+        evaluator.setOutput(output);
+        return evaluator.execute(program);
+    }
+
+    // Where puts writes during run
+    public void setOutput(Writer output) {
+        this.output = output instanceof PrintWriter ? (PrintWriter) output : new PrintWriter(output, true);
+    }
+
+    // Names the script never mentions are ignored by the vm, it has no slot for them
+    public void set(String name, KongObject value) {
+        Symbol symbol = Symbol.intern(name);
+        if(bytecode == null) {
+            environment.set(symbol, value);
+            return;
+        }
+        int index = bytecode.getGlobalNames().indexOf(symbol);
+        if(index != -1) globals[index] = value;
+    }
+
+    // Globals of the program in slot order, including names set from outside
+    public List<Symbol> getNames() {
+        if(bytecode == null) return environment.getGlobalNames();
+        return bytecode.getGlobalNames();
+    }
+
+    public KongObject get(String name) {
+        Symbol symbol = Symbol.intern(name);
+        if(bytecode == null) return environment.get(symbol);
+
+        List<Symbol> names = bytecode.getGlobalNames();
+        int index = names.indexOf(symbol);
+        return index == -1 ? null : globals[index];
+    }
+}
@@ -0,0 +1,64 @@
+package embed;
+
+import object.KongError;
+import object.KongObject;
+import token.Symbol;
+
+import javax.script.*;
+import java.util.Map;
+
+// Runs a parsed program against the bindings of a script context. Bindings are copied into fresh globals
+// before the run and the globals the script binds are copied back into the engine scope afterwards
+public class KongCompiledScript extends CompiledScript {
+
+    private final KongScriptEngine engine;
+    private final KongProgram program;
+
+    KongCompiledScript(KongScriptEngine engine, KongProgram program) {
+        this.engine = engine;
+        this.program = program;
+    }
+
+    @Override
+    public Object eval(ScriptContext context) throws ScriptException {
+        ExecutionContext execution = program.newContext();
+        if(context.getWriter() != null) execution.setOutput(context.getWriter());
+        try {
+            // Engine scope bindings hide global scope ones with the same name
+            bind(execution, context.getBindings(ScriptContext.GLOBAL_SCOPE));
+            bind(execution, context.getBindings(ScriptContext.ENGINE_SCOPE));
+        } catch (IllegalArgumentException e) {
+            throw new ScriptException(e.getMessage());
+        }
+
+        KongObject result = execution.run();
+        if(result instanceof KongError) {
+            throw new ScriptException(((KongError) result).getMessage());
+        }
+
+        Bindings bindings = context.getBindings(ScriptContext.ENGINE_SCOPE);
+        if(bindings != null) {
+            for(Symbol name : execution.getNames()) {
+                KongObject value = execution.get(name.getName());
+                if(value != null) bindings.put(name.getName(), Values.toJava(value));
+            }
+        }
+        return Values.toJava(result);
+    }
+
+    @Override
+    public ScriptEngine getEngine() {
+        return engine;
+    }
+
+    public KongProgram getProgram() {
+        return program;
+    }
+
+    private static void bind(ExecutionContext execution, Bindings bindings) {
+        if(bindings == null) return;
+        for(Map.Entry<String, Object> binding : bindings.entrySet()) {
+            execution.set(binding.getKey(), Values.toKong(binding.getValue()));
+        }
+    }
+}
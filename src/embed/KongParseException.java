@@ -0,0 +1,19 @@
+package embed;
+
+import java.util.List;
+
+public class KongParseException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final List<String> errors;
+
+    public KongParseException(List<String> errors) {
+        super("parser errors: " + String.join(", ", errors));
+        this.errors = errors;
+    }
+
+    public List<String> getErrors() {
+        return errors;
+    }
+}
@@ -0,0 +1,106 @@
+package embed;
+
+import ast.Program;
+import compiler.Bytecode;
+import compiler.Compiler;
+import evaluator.Resolver;
+import lexer.Lexer;
+import lexer.Utf8Sequence;
+import object.Environment;
+import object.KongObject;
+import optimizer.Optimizer;
+import parser.Parser;
+import repl.Engine;
+import token.Symbol;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+// A script lexed, parsed, optimized and resolved or compiled once. Any number of threads may run it at the
+// same time, each run gets its own globals. Runs still share what call and operator sites learn about the
+// values they see, that state is volatile or kept in immutable snapshots and any version of it is correct
+public class KongProgram {
+
+    private final Engine engine;
+
+    // Resolved tree and the global slots it was resolved against, for the evaluator
+    private final Program program;
+    private final Symbol[] globalNames;
+
+    // For the vm
+    private final Bytecode bytecode;
+
+    private KongProgram(Engine engine, Program program, Symbol[] globalNames, Bytecode bytecode) {
+        this.engine = engine;
+        this.program = program;
+        this.globalNames = globalNames;
+        this.bytecode = bytecode;
+    }
+
+    public static KongProgram compile(String source) {
+        return compile(source, Engine.EVALUATOR);
+    }
+
+    public static KongProgram compile(String source, Engine engine) {
+        return compile(parse(source), engine);
+    }
+
+    // Loads a script file, through the cache of parsed programs when one is given
+    public static KongProgram load(Path file, Engine engine, AstCache cache) throws IOException {
+        return load(file, engine, cache, new Optimizer());
+    }
+
+    public static KongProgram load(Path file, Engine engine, AstCache cache, Optimizer optimizer) throws IOException {
+        return compile(read(file, cache), engine, optimizer);
+    }
+
+    // Parses a script file, through the cache of parsed programs when one is given
+    public static Program read(Path file, AstCache cache) throws IOException {
+        if(cache != null) return cache.parse(file);
+        return parse(Utf8Sequence.map(file));
+    }
+
+    public static KongProgram compile(Program program, Engine engine) {
+        return compile(program, engine, new Optimizer());
+    }
+
+    public static KongProgram compile(Program program, Engine engine, Optimizer optimizer) {
+        program = optimizer.optimize(program);
+        if(engine == Engine.VM) {
+            return new KongProgram(engine, null, null, new Compiler().compile(program));
+        }
+
+        Environment template = new Environment();
+        new Resolver(template).resolve(program);
+        Symbol[] globalNames = template.getGlobalNames().toArray(new Symbol[0]);
+        return new KongProgram(engine, program, globalNames, null);
+    }
+
+    private static Program parse(CharSequence source) {
+        Parser parser = new Parser(new Lexer(source));
+        Program program = parser.parseProgram();
+        List<String> errors = parser.getErrors();
+        if(!errors.isEmpty()) throw new KongParseException(errors);
+        return program;
+    }
+
+    public ExecutionContext newContext() {
+        if(engine == Engine.VM) return new ExecutionContext(bytecode);
+
+        Environment globals = new Environment();
+        for(Symbol name : globalNames) {
+            globals.define(name);
+        }
+        return new ExecutionContext(program, globals);
+    }
+
+    // Runs the program with fresh globals
+    public KongObject execute() {
+        return newContext().run();
+    }
+
+    public Engine getEngine() {
+        return engine;
+    }
+}
@@ -0,0 +1,86 @@
+package embed;
+
+import repl.Engine;
+
+import javax.script.*;
+import java.io.IOException;
+import java.io.Reader;
+
+// javax.script entry point, scripts are compiled to a KongProgram once and kept by source text
+public class KongScriptEngine extends AbstractScriptEngine implements Compilable {
+
+    private final KongScriptEngineFactory factory;
+    private final Engine engine;
+    private final ProgramCache cache;
+
+    public KongScriptEngine() {
+        this(new KongScriptEngineFactory(), Engine.EVALUATOR);
+    }
+
+    public KongScriptEngine(KongScriptEngineFactory factory, Engine engine) {
+        this(factory, engine, ProgramCache.DEFAULT_CAPACITY);
+    }
+
+    public KongScriptEngine(KongScriptEngineFactory factory, Engine engine, int cacheCapacity) {
+        this.factory = factory;
+        this.engine = engine;
+        this.cache = new ProgramCache(cacheCapacity);
+    }
+
+    @Override
+    public Object eval(String script, ScriptContext context) throws ScriptException {
+        return compile(script).eval(context);
+    }
+
+    @Override
+    public Object eval(Reader reader, ScriptContext context) throws ScriptException {
+        return eval(read(reader), context);
+    }
+
+    @Override
+    public KongCompiledScript compile(String script) throws ScriptException {
+        KongProgram program = cache.get(script);
+        if(program == null) {
+            try {
+                program = KongProgram.compile(script, engine);
+            } catch (KongParseException e) {
+                throw new ScriptException(e.getMessage());
+            }
+            cache.put(script, program);
+        }
+        return new KongCompiledScript(this, program);
+    }
+
+    @Override
+    public KongCompiledScript compile(Reader reader) throws ScriptException {
+        return compile(read(reader));
+    }
+
+    @Override
+    public Bindings createBindings() {
+        return new SimpleBindings();
+    }
+
+    @Override
+    public ScriptEngineFactory getFactory() {
+        return factory;
+    }
+
+    public Engine getEngine() {
+        return engine;
+    }
+
+    private static String read(Reader reader) throws ScriptException {
+        StringBuilder builder = new StringBuilder();
+        char[] buffer = new char[8192];
+        try {
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                builder.append(buffer, 0, read);
+            }
+        } catch (IOException e) {
+            throw new ScriptException(e);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,92 @@
+package embed;
+
+import repl.Engine;
+
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineFactory;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class KongScriptEngineFactory implements ScriptEngineFactory {
+
+    private static final List<String> NAMES = Collections.unmodifiableList(Arrays.asList("kong", "Kong", "monkey"));
+    private static final List<String> EXTENSIONS = Collections.singletonList("kong");
+    private static final List<String> MIME_TYPES = Collections.singletonList("application/x-kong");
+
+    @Override
+    public String getEngineName() {
+        return "Kong";
+    }
+
+    @Override
+    public String getEngineVersion() {
+        return "1.0";
+    }
+
+    @Override
+    public List<String> getExtensions() {
+        return EXTENSIONS;
+    }
+
+    @Override
+    public List<String> getMimeTypes() {
+        return MIME_TYPES;
+    }
+
+    @Override
+    public List<String> getNames() {
+        return NAMES;
+    }
+
+    @Override
+    public String getLanguageName() {
+        return "Monkey";
+    }
+
+    @Override
+    public String getLanguageVersion() {
+        return "1.0";
+    }
+
+    @Override
+    public Object getParameter(String key) {
+        switch (key) {
+            case ScriptEngine.ENGINE: return getEngineName();
+            case ScriptEngine.ENGINE_VERSION: return getEngineVersion();
+            case ScriptEngine.NAME: return NAMES.get(0);
+            case ScriptEngine.LANGUAGE: return getLanguageName();
+            case ScriptEngine.LANGUAGE_VERSION: return getLanguageVersion();
+            // Every eval gets its own globals and what evals of a cached program share is safely published,
+            // see KongProgram, so engines can be used by several threads at once
+            case "THREADING": return "MULTITHREADED";
+            default: return null;
+        }
+    }
+
+    @Override
+    public String getMethodCallSyntax(String object, String method, String... args) {
+        StringBuilder builder = new StringBuilder(object).append('[').append('"').append(method).append('"').append("](");
+        builder.append(String.join(", ", args));
+        return builder.append(')').toString();
+    }
+
+    @Override
+    public String getOutputStatement(String toDisplay) {
+        return "puts(\"" + toDisplay.replace("\"", "\\\"") + "\")";
+    }
+
+    @Override
+    public String getProgram(String... statements) {
+        StringBuilder builder = new StringBuilder();
+        for(String statement : statements) {
+            builder.append(statement).append(";\n");
+        }
+        return builder.toString();
+    }
+
+    @Override
+    public ScriptEngine getScriptEngine() {
+        return new KongScriptEngine(this, Engine.valueOf(System.getProperty("kong.engine", "evaluator").toUpperCase()));
+    }
+}
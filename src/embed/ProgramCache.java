@@ -0,0 +1,33 @@
+package embed;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Least recently used programs by source text, so evaluating the same snippet again skips lexing and parsing
+class ProgramCache {
+
+    static final int DEFAULT_CAPACITY = 256;
+
+    private final Map<String, KongProgram> programs;
+
+    ProgramCache(int capacity) {
+        this.programs = new LinkedHashMap<String, KongProgram>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, KongProgram> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    synchronized KongProgram get(String source) {
+        return programs.get(source);
+    }
+
+    synchronized void put(String source, KongProgram program) {
+        programs.put(source, program);
+    }
+
+    synchronized int size() {
+        return programs.size();
+    }
+}
@@ -0,0 +1,138 @@
+package embed;
+
+import ast.Program;
+import ast.Statement;
+import lexer.Lexer;
+import lexer.Utf8Sequence;
+import parser.Parser;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Parses the files of a project on a pool of workers and joins them into one program, in the order the files
+// were given or, for a directory, in the order of their paths. Parser errors of every file are reported together
+public class ProjectLoader {
+
+    private static final String EXTENSION = ".kong";
+
+    private final int parallelism;
+    private final AstCache cache;
+
+    public ProjectLoader() {
+        this(Runtime.getRuntime().availableProcessors(), null);
+    }
+
+    // Files are parsed through the cache when there is one
+    public ProjectLoader(int parallelism, AstCache cache) {
+        if(parallelism < 1) throw new IllegalArgumentException("parallelism must be positive, got " + parallelism);
+        this.parallelism = parallelism;
+        this.cache = cache;
+    }
+
+    public Program load(Path path) throws IOException {
+        return load(Collections.singletonList(path));
+    }
+
+    // A directory stands for every .kong file below it
+    public Program load(List<Path> paths) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for(Path path : paths) {
+            if(!Files.isDirectory(path)) {
+                files.add(path);
+                continue;
+            }
+            try (Stream<Path> found = Files.walk(path)) {
+                files.addAll(found.filter(file -> Files.isRegularFile(file) && file.getFileName().toString().endsWith(EXTENSION))
+                        .sorted()
+                        .collect(Collectors.toList()));
+            }
+        }
+
+        List<Parsed> parsed = parseAll(files);
+
+        List<Statement> statements = new ArrayList<>();
+        List<String> errors = new ArrayList<>();
+        for(Parsed file : parsed) {
+            // The first file that can not be read fails the load, whatever the workers finished first
+            if(file.failure != null) throw file.failure;
+            if(file.errors != null) {
+                for(String error : file.errors) errors.add(file.path + ": " + error);
+            } else {
+                statements.addAll(file.program.getStatements());
+            }
+        }
+        if(!errors.isEmpty()) throw new KongParseException(errors);
+        return new Program(statements);
+    }
+
+    private List<Parsed> parseAll(List<Path> files) {
+        List<Callable<Parsed>> tasks = new ArrayList<>(files.size());
+        for(Path file : files) tasks.add(() -> parse(file));
+
+        int workers = Math.min(parallelism, files.size());
+        if(workers <= 1) {
+            List<Parsed> parsed = new ArrayList<>(files.size());
+            for(Path file : files) parsed.add(parse(file));
+            return parsed;
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(workers, task -> {
+            Thread thread = new Thread(task, "kong-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Parsed> parsed = new ArrayList<>(files.size());
+            for(Future<Parsed> result : pool.invokeAll(tasks)) parsed.add(result.get());
+            return parsed;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while loading the project", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("parsing a file failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private Parsed parse(Path file) {
+        try {
+            if(cache != null) return new Parsed(file, cache.parse(file), null, null);
+
+            Parser parser = new Parser(new Lexer(Utf8Sequence.map(file)));
+            Program program = parser.parseProgram();
+            if(!parser.getErrors().isEmpty()) return new Parsed(file, null, parser.getErrors(), null);
+            return new Parsed(file, program, null, null);
+        } catch (KongParseException e) {
+            return new Parsed(file, null, e.getErrors(), null);
+        } catch (IOException e) {
+            return new Parsed(file, null, null, e);
+        }
+    }
+
+    private static class Parsed {
+
+        private final Path path;
+        private final Program program;
+        private final List<String> errors;
+        private final IOException failure;
+
+        Parsed(Path path, Program program, List<String> errors, IOException failure) {
+            this.path = path;
+            this.program = program;
+            this.errors = errors;
+            this.failure = failure;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package embed;
+
+import object.*;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Converts between Java values used by script bindings and Kong objects
+class Values {
+
+    static KongObject toKong(Object value) {
+        if(value == null) return KongNull.NULL;
+        if(value instanceof KongObject) return (KongObject) value;
+        if(value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return KongInteger.valueOf(((Number) value).longValue());
+        }
+        if(value instanceof Boolean) return (Boolean) value ? KongBoolean.TRUE : KongBoolean.FALSE;
+        if(value instanceof CharSequence || value instanceof Character) return new KongString(value.toString());
+        if(value instanceof List) {
+            List<?> list = (List<?>) value;
+            List<KongObject> elements = new ArrayList<>(list.size());
+            for(Object element : list) elements.add(toKong(element));
+            return new KongArray(elements);
+        }
+        if(value instanceof Map) {
+            PersistentMap pairs = PersistentMap.EMPTY;
+            for(Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                KongObject key = toKong(entry.getKey());
+                if(!(key instanceof Hashable)) {
+                    throw new IllegalArgumentException("unusable as hash key: " + key.getObjectType());
+                }
+                pairs = pairs.assoc(key, toKong(entry.getValue()));
+            }
+            return new KongMap(pairs);
+        }
+        throw new IllegalArgumentException("no Kong value for " + value.getClass().getName());
+    }
+
+    // Functions and other values without a Java counterpart are returned as they are
+    static Object toJava(KongObject value) {
+        if(value == null || value == KongNull.NULL) return null;
+        switch (value.getObjectType()) {
+            case INTEGER: return ((KongInteger) value).getValue();
+            case BOOLEAN: return value == KongBoolean.TRUE;
+            case STRING: return ((KongString) value).getValue();
+            case ARRAY: {
+                List<Object> elements = new ArrayList<>();
+                for(KongObject element : ((KongArray) value).getElements()) elements.add(toJava(element));
+                return elements;
+            }
+            case MAP: {
+                Map<Object, Object> pairs = new LinkedHashMap<>();
+                for(KongMapPair pair : ((KongMap) value).getPairs()) {
+                    pairs.put(toJava(pair.getKey()), toJava(pair.getValue()));
+                }
+                return pairs;
+            }
+            default: return value;
+        }
+    }
+}
@@ -1,36 +1,62 @@
 package evaluator;
 
 import ast.*;
+import jit.CompiledBody;
+import jit.Jit;
 import object.*;
 
+import java.io.PrintWriter;
 import java.util.*;
-import java.util.function.Function;
 
-public class Evaluator implements StatementVisitor<KongObject>, ExpressionVisitor<KongObject> {
+public class Evaluator implements StatementVisitor<KongObject>, ExpressionVisitor<KongObject>, CallContext {
 
-    private static final KongNull NULL = new KongNull();
-    private static final KongBoolean TRUE = new KongBoolean(true);
-    private static final KongBoolean FALSE = new KongBoolean(false);
-
-    private final Map<String, BuiltinFunction> builtinFunctionsMap = new HashMap<>();
+    private static final KongNull NULL = KongNull.NULL;
+    private static final KongBoolean TRUE = KongBoolean.TRUE;
+    private static final KongBoolean FALSE = KongBoolean.FALSE;
+    private static final KongReturn RETURN = KongReturn.RETURN;
 
+    private final Environment globals;
     private Environment environment;
 
+    // Value of the last return statement, read back once its signal reaches the function or the program
+    private KongObject returnValue;
+
+    // Boxed result of an unboxed integer operand that turned out not to be an integer, see evalIntegerOperand
+    private KongObject nonInteger;
+
+    private PrintWriter output;
+
     public Evaluator(Environment environment) {
         this.environment = environment;
+        this.globals = environment;
+    }
 
-        // Set Builtin Functions
-        this.builtinFunctionsMap.put("len", new BuiltinFunction(builtinStringLength));
-        this.builtinFunctionsMap.put("push", new BuiltinFunction(builtinArrayPush));
-        this.builtinFunctionsMap.put("puts", new BuiltinFunction(builtinPrintln));
+    public Environment getEnvironment() {
+        return environment;
+    }
+
+    @Override
+    public PrintWriter getOutput() {
+        return output;
+    }
+
+    public void setOutput(PrintWriter output) {
+        this.output = output;
     }
 
     @Override
     public KongObject visit(Program program) {
+        new Resolver(environment).resolve(program);
+        return execute(program);
+    }
+
+    // Runs a program resolved before against globals with the same slots, resolving never happens concurrently
+    // with a run so programs can be shared by evaluators on different threads
+    public KongObject execute(Program program) {
         KongObject result = null;
         for(Statement statement : program.getStatements()) {
             result = statement.accept(this);
-            if (result instanceof KongReturn) return ((KongReturn) result).getValue();
+            if (result == RETURN) return takeReturnValue();
             if (result instanceof KongError) return result;
         }
         return result;
@@ -39,17 +65,24 @@ public class Evaluator implements StatementVisitor<KongObject>, ExpressionVisito
     @Override
     public KongObject visit(LetStatement statement) {
         KongObject value = statement.getValue().accept(this);
-        if(isError(value)) return value;
+        if(isAbrupt(value)) return value;
 
-        environment.set(statement.getName().getValue(), value);
+        Identifier name = statement.getName();
+        if(name.isResolved()) {
+            environment.set(name.getIndex(), value);
+        } else {
+            environment.set(name.getSymbol(), value);
+        }
         return null;
     }
 
     @Override
     public KongObject visit(ReturnStatement statement) {
         KongObject value = statement.getReturnValue().accept(this);
-        if(isError(value)) return value;
-        return new KongReturn(value);
+        if(isAbrupt(value)) return value;
+
+        returnValue = value;
+        return RETURN;
     }
 
     @Override
@@ -64,18 +97,20 @@ public class Evaluator implements StatementVisitor<KongObject>, ExpressionVisito
 
     @Override
     public KongObject visit(Identifier expression) {
-        KongObject value = environment.get(expression.getValue());
+        KongObject value = expression.isResolved()
+                ? environment.get(expression.getDepth(), expression.getIndex())
+                : environment.get(expression.getSymbol());
         if(value != null) return value;
 
-        BuiltinFunction function = builtinFunctionsMap.get(expression.getValue());
+        BuiltinFunction function = Builtins.lookup(expression.getValue());
         if(function != null) return function;
 
-        return newError("identifier not found: " + expression.getValue());
+        return newError("identifier not found: %s", expression.getValue());
     }
 
     @Override
     public KongObject visit(IntegerLiteral expression) {
-        return new KongInteger(expression.getValue());
+        return expression.getObject();
     }
 
     @Override
@@ -91,25 +126,69 @@ public class Evaluator implements StatementVisitor<KongObject>, ExpressionVisito
     @Override
     public KongObject visit(PrefixExpression expression) {
         KongObject right = expression.getRight().accept(this);
-        if(isError(right)) return right;
+        if(isAbrupt(right)) return right;
+
+        return applyPrefixExpression(expression, right);
+    }
+
+    public KongObject applyPrefixExpression(PrefixExpression expression, KongObject right) {
+        switch (expression.getSpecialization()) {
+            case INTEGER: {
+                if(right instanceof KongInteger) return KongInteger.valueOf(-((KongInteger) right).getValue());
+                expression.setSpecialization(Specialization.GENERIC);
+                break;
+            }
+            case UNINITIALIZED: {
+                boolean negation = expression.getPrefixOperator() == PrefixOperator.MINUS && right instanceof KongInteger;
+                expression.setSpecialization(negation ? Specialization.INTEGER : Specialization.GENERIC);
+                break;
+            }
+        }
         return evalPrefixExpression(expression.getOperator(), right);
     }
 
     @Override
     public KongObject visit(InfixExpression expression) {
+        if(expression.getSpecialization() == Specialization.INTEGER) return evalUnboxedInfixExpression(expression);
+
         KongObject left = expression.getLeft().accept(this);
-        if(isError(left)) return left;
+        if(isAbrupt(left)) return left;
 
         KongObject right = expression.getRight().accept(this);
-        if(isError(right)) return right;
+        if(isAbrupt(right)) return right;
+
+        return applyInfixExpression(expression, left, right);
+    }
 
-        return evalInfixExpression(expression.getOperator(), left, right);
+    public KongObject applyInfixExpression(InfixExpression expression, KongObject left, KongObject right) {
+        InfixOperator operator = expression.getInfixOperator();
+        switch (expression.getSpecialization()) {
+            case INTEGER: {
+                if(left instanceof KongInteger && right instanceof KongInteger) {
+                    return evalIntegerInfixExpression(operator, ((KongInteger) left).getValue(), ((KongInteger) right).getValue());
+                }
+                expression.setSpecialization(Specialization.GENERIC);
+                break;
+            }
+            case STRING: {
+                if(left instanceof KongString && right instanceof KongString) {
+                    return evalStringInfixExpression(operator, (KongString) left, (KongString) right);
+                }
+                expression.setSpecialization(Specialization.GENERIC);
+                break;
+            }
+            case UNINITIALIZED: {
+                expression.setSpecialization(specializationOf(left, right));
+                break;
+            }
+        }
+        return evalInfixExpression(operator, left, right);
     }
 
     @Override
     public KongObject visit(IfExpression expression) {
         KongObject condition = expression.getCondition().accept(this);
-        if(isError(condition)) return condition;
+        if(isAbrupt(condition)) return condition;
 
         if(isTruthy(condition)) {
             return expression.getConsequence().accept(this);
@@ -121,57 +200,84 @@ public class Evaluator implements StatementVisitor<KongObject>, ExpressionVisito
 
     @Override
     public KongObject visit(FunctionLiteral expression) {
-        List<Identifier> params = expression.getParameters();
-        BlockStatement body = expression.getBody();
-        return new KongFunction(params, body, environment);
+        return new KongFunction(expression, environment);
     }
 
     @Override
     public KongObject visit(CallExpression expression) {
-        KongObject function = expression.getFunction().accept(this);
-        if(isError(function)) return function;
+        KongObject function = evalCallee(expression);
+        if(isAbrupt(function)) return function;
 
         List<KongObject> args = evalExpressions(expression.getArguments());
-        if(args.size() == 1 && isError(args.get(0))) return args.get(0);
+        if(args.size() == 1 && isAbrupt(args.get(0))) return args.get(0);
 
-        return applyFunction(function, args);
+        return call(expression, function, args);
+    }
+
+    public KongObject evalCallee(CallExpression expression) {
+        Expression callee = expression.getFunction();
+        if(!(callee instanceof Identifier) || !((Identifier) callee).isGlobal()) return callee.accept(this);
+
+        InlineCache cache = inlineCacheOf(expression);
+        KongObject function = cache.getGlobalCallee(globals);
+        if(function != null) return function;
+
+        function = callee.accept(this);
+        if(!isAbrupt(function)) cache.setGlobalCallee(globals, function);
+        return function;
+    }
+
+    public KongObject call(CallExpression expression, KongObject function, List<KongObject> args) {
+        switch (inlineCacheOf(expression).targetOf(function)) {
+            case FUNCTION: {
+                // Calls to Kong functions in tail position are deferred to the enclosing applyFunction,
+                // except memoized ones which have to see their result to cache it
+                KongFunction kongFunction = (KongFunction) function;
+                KongError error = parseBody(kongFunction);
+                if(error != null) return error;
+                if(expression.isTailCall() && kongFunction.getMemoCache() == null) {
+                    return new KongTailCall(kongFunction, args);
+                }
+                return applyFunction(kongFunction, args);
+            }
+            case BUILTIN: return ((BuiltinFunction) function).apply(this, args);
+            default: return newError("not a function: %s", function.getObjectType());
+        }
     }
 
     @Override
     public KongObject visit(ArrayLiteral expression) {
         List<KongObject> elements = evalExpressions(expression.getElements());
-        if(elements.size() == 1 && isError(elements.get(0))) return elements.get(0);
+        if(elements.size() == 1 && isAbrupt(elements.get(0))) return elements.get(0);
         return new KongArray(elements);
     }
 
     @Override
     public KongObject visit(IndexExpression expression) {
         KongObject left = expression.getLeft().accept(this);
-        if(isError(left)) return left;
+        if(isAbrupt(left)) return left;
 
         KongObject index = expression.getIndex().accept(this);
-        if(isError(index)) return index;
+        if(isAbrupt(index)) return index;
 
-        return evalIndexExpression(left, index);
+        return applyIndexExpression(left, index);
     }
 
     @Override
     public KongObject visit(MapLiteral expression) {
         Map<Expression, Expression> expressionsPairs = expression.getPairs();
-        Map<KongMapKey, KongMapPair> kongObjectsMap = new HashMap<>();
+        PersistentMap kongObjectsMap = PersistentMap.EMPTY;
         for(Map.Entry<Expression, Expression> expressionPair : expressionsPairs.entrySet()) {
             KongObject key = expressionPair.getKey().accept(this);
-            if(isError(key)) return key;
+            if(isAbrupt(key)) return key;
             if(!(key instanceof Hashable)) {
                 return newError("unusable as hash key: %s", key.getObjectType());
             }
 
             KongObject value = expressionPair.getValue().accept(this);
-            if(isError(value)) return value;
+            if(isAbrupt(value)) return value;
 
-            Hashable hashable = (Hashable) key;
-            KongMapPair pair = new KongMapPair(key, value);
-            kongObjectsMap.put(hashable.getHashKey(), pair);
+            kongObjectsMap = kongObjectsMap.assoc(key, value);
         }
         return new KongMap(kongObjectsMap);
     }
@@ -180,9 +286,7 @@ public class Evaluator implements StatementVisitor<KongObject>, ExpressionVisito
         KongObject result = null;
         for(Statement statement : statements) {
             result = statement.accept(this);
-            if(result.getObjectType() == ObjectType.RETURN || result.getObjectType() == ObjectType.ERROR) {
-                return result;
-            }
+            if(isAbrupt(result)) return result;
         }
         return result;
     }
@@ -206,55 +310,130 @@ public class Evaluator implements StatementVisitor<KongObject>, ExpressionVisito
         if(right.getObjectType() != ObjectType.INTEGER) return newError("unknown operator: -%s", right.getObjectType());
 
         long value = ((KongInteger) right).getValue();
-        return new KongInteger(-value);
+        return KongInteger.valueOf(-value);
+    }
+
+    // Integer sites pass their operands as longs, nested arithmetic sites are evaluated without boxing
+    private KongObject evalUnboxedInfixExpression(InfixExpression expression) {
+        long left = evalIntegerOperand(expression.getLeft());
+        if(nonInteger != null) return finishWithBoxedLeft(expression, takeNonInteger());
+
+        long right = evalIntegerOperand(expression.getRight());
+        if(nonInteger != null) return finishWithBoxedRight(expression, left, takeNonInteger());
+
+        return evalIntegerInfixExpression(expression.getInfixOperator(), left, right);
+    }
+
+    // Returns the integer value of the operand, or sets nonInteger to the value when it is anything else
+    private long evalIntegerOperand(Expression expression) {
+        if(expression instanceof IntegerLiteral) return ((IntegerLiteral) expression).getValue();
+
+        if(expression instanceof InfixExpression && isUnboxedArithmetic((InfixExpression) expression)) {
+            InfixExpression infix = (InfixExpression) expression;
+            long left = evalIntegerOperand(infix.getLeft());
+            if(nonInteger != null) return unboxOrKeep(finishWithBoxedLeft(infix, takeNonInteger()));
+
+            long right = evalIntegerOperand(infix.getRight());
+            if(nonInteger != null) return unboxOrKeep(finishWithBoxedRight(infix, left, takeNonInteger()));
+
+            switch (infix.getInfixOperator()) {
+                case PLUS:     return left + right;
+                case MINUS:    return left - right;
+                case ASTERISK: return left * right;
+                default:       return left / right;
+            }
+        }
+        return unboxOrKeep(expression.accept(this));
+    }
+
+    private boolean isUnboxedArithmetic(InfixExpression expression) {
+        if(expression.getSpecialization() != Specialization.INTEGER) return false;
+        switch (expression.getInfixOperator()) {
+            case PLUS:
+            case MINUS:
+            case ASTERISK:
+            case SLASH:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private long unboxOrKeep(KongObject value) {
+        if(value instanceof KongInteger) return ((KongInteger) value).getValue();
+        nonInteger = value;
+        return 0;
+    }
+
+    private KongObject takeNonInteger() {
+        KongObject value = nonInteger;
+        nonInteger = null;
+        return value;
+    }
+
+    // The operands of a site that stopped seeing integers are finished the way the generic path does it
+    private KongObject finishWithBoxedLeft(InfixExpression expression, KongObject left) {
+        if(isAbrupt(left)) return left;
+
+        KongObject right = expression.getRight().accept(this);
+        if(isAbrupt(right)) return right;
+
+        return applyInfixExpression(expression, left, right);
     }
 
-    private KongObject evalInfixExpression(String operator, KongObject left, KongObject right) {
+    private KongObject finishWithBoxedRight(InfixExpression expression, long left, KongObject right) {
+        if(isAbrupt(right)) return right;
+        return applyInfixExpression(expression, KongInteger.valueOf(left), right);
+    }
+
+    private Specialization specializationOf(KongObject left, KongObject right) {
+        if(left instanceof KongInteger && right instanceof KongInteger) return Specialization.INTEGER;
+        if(left instanceof KongString && right instanceof KongString) return Specialization.STRING;
+        return Specialization.GENERIC;
+    }
+
+    private KongObject evalInfixExpression(InfixOperator operator, KongObject left, KongObject right) {
         if(left.getObjectType() == ObjectType.INTEGER && right.getObjectType() == ObjectType.INTEGER) {
-            return evalIntegerInfixExpression(operator, left, right);
+            return evalIntegerInfixExpression(operator, ((KongInteger) left).getValue(), ((KongInteger) right).getValue());
         }
         if(left.getObjectType() == ObjectType.STRING && right.getObjectType() == ObjectType.STRING) {
-            return evalStringInfixExpression(operator, left, right);
+            return evalStringInfixExpression(operator, (KongString) left, (KongString) right);
         }
-        if(operator.equals("==")) return nativeBoolToBooleanObject(left == right);
-        if(operator.equals("!=")) return nativeBoolToBooleanObject(left != right);
+        if(operator == InfixOperator.EQ) return nativeBoolToBooleanObject(left == right);
+        if(operator == InfixOperator.NOT_EQ) return nativeBoolToBooleanObject(left != right);
         if(left.getObjectType() != right.getObjectType()) {
-            return newError("type mismatch: %s %s %s", left.getObjectType(), operator, right.getObjectType());
+            return newError("type mismatch: %s %s %s", left.getObjectType(), operator.getLiteral(), right.getObjectType());
         }
-        return newError("unknown operator: %s %s %s", left.getObjectType(), operator, right.getObjectType());
+        return newError("unknown operator: %s %s %s", left.getObjectType(), operator.getLiteral(), right.getObjectType());
     }
 
-    private KongObject evalIntegerInfixExpression(String operator, KongObject left, KongObject right) {
-        long leftValue = ((KongInteger) left).getValue();
-        long rightValue = ((KongInteger) right).getValue();
+    private KongObject evalIntegerInfixExpression(InfixOperator operator, long leftValue, long rightValue) {
         switch (operator) {
-            case "+":  return new KongInteger(leftValue + rightValue);
-            case "-":  return new KongInteger(leftValue - rightValue);
-            case "*":  return new KongInteger(leftValue * rightValue);
-            case "/":  return new KongInteger(leftValue / rightValue);
-
-            case "<":  return nativeBoolToBooleanObject(leftValue < rightValue);
-            case ">":  return nativeBoolToBooleanObject(leftValue > rightValue);
-            case "==": return nativeBoolToBooleanObject(leftValue == rightValue);
-            case "!=": return nativeBoolToBooleanObject(leftValue != rightValue);
-            default: return newError("unknown operator: %s %s %s", left.getObjectType(), operator, right.getObjectType());
+            case PLUS:     return KongInteger.valueOf(leftValue + rightValue);
+            case MINUS:    return KongInteger.valueOf(leftValue - rightValue);
+            case ASTERISK: return KongInteger.valueOf(leftValue * rightValue);
+            case SLASH:    return KongInteger.valueOf(leftValue / rightValue);
+
+            case LT:     return nativeBoolToBooleanObject(leftValue < rightValue);
+            case GT:     return nativeBoolToBooleanObject(leftValue > rightValue);
+            case EQ:     return nativeBoolToBooleanObject(leftValue == rightValue);
+            case NOT_EQ: return nativeBoolToBooleanObject(leftValue != rightValue);
+            default: return newError("unknown operator: INTEGER %s INTEGER", operator.getLiteral());
         }
     }
 
-    private KongObject evalStringInfixExpression(String operator, KongObject left, KongObject right) {
-        String leftValue = ((KongString) left).getValue();
-        String rightValue = ((KongString) right).getValue();
+    private KongObject evalStringInfixExpression(InfixOperator operator, KongString left, KongString right) {
         switch (operator) {
-            case "+":  return new KongString(leftValue + rightValue);
-            case "<":  return nativeBoolToBooleanObject(leftValue.length() < rightValue.length());
-            case ">":  return nativeBoolToBooleanObject(leftValue.length() > rightValue.length());
-            case "==": return nativeBoolToBooleanObject(leftValue.equals(rightValue));
-            case "!=": return nativeBoolToBooleanObject(!leftValue.equals(rightValue));
-            default: return newError("unknown operator: %s %s %s", left.getObjectType(), operator, right.getObjectType());
+            case PLUS:   return left.concat(right);
+            case LT:     return nativeBoolToBooleanObject(left.getLength() < right.getLength());
+            case GT:     return nativeBoolToBooleanObject(left.getLength() > right.getLength());
+            case EQ:     return nativeBoolToBooleanObject(left.getValue().equals(right.getValue()));
+            case NOT_EQ: return nativeBoolToBooleanObject(!left.getValue().equals(right.getValue()));
+            default: return newError("unknown operator: STRING %s STRING", operator.getLiteral());
         }
     }
 
-    private KongObject evalIndexExpression(KongObject left, KongObject index) {
+    public KongObject applyIndexExpression(KongObject left, KongObject index) {
         if(left.getObjectType() == ObjectType.ARRAY && index.getObjectType() == ObjectType.INTEGER) {
             return evalArrayIndexExpression(left, index);
         }
@@ -280,11 +459,9 @@ public class Evaluator implements StatementVisitor<KongObject>, ExpressionVisito
         if(!(key instanceof Hashable)) {
             return newError("unusable as hash key: %s", key.getObjectType());
         }
-        Hashable hashable = (Hashable) key;
-        KongMap kongMap = (KongMap) map;
-        KongMapPair pair = kongMap.getPairs().get(hashable.getHashKey());
-        if(pair == null) return NULL;
-        return pair.getValue();
+        KongObject value = ((KongMap) map).getPairs().get(key);
+        if(value == null) return NULL;
+        return value;
     }
 
     private KongObject evalStringIndexExpression(KongObject string, KongObject index) {
@@ -297,49 +474,130 @@ public class Evaluator implements StatementVisitor<KongObject>, ExpressionVisito
         return new KongString(charAtPosition);
     }
 
-    private KongObject applyFunction(KongObject function, List<KongObject> args) {
-        if(function instanceof KongFunction) {
-            Environment currentEnv = environment;
-
-            KongFunction functionObject = (KongFunction) function;
-            Environment extendedEnv = extendFunctionEnv(functionObject, args);
-
-            environment = extendedEnv;
-            KongObject evaluated = functionObject.getBody().accept(this);
-            environment = currentEnv;
+    @Override
+    public CallContext fork() {
+        Evaluator evaluator = new Evaluator(globals);
+        evaluator.output = output;
+        return evaluator;
+    }
 
-            return unwrapReturnValue(evaluated);
+    @Override
+    public KongObject applyFunction(KongObject function, List<KongObject> args) {
+        if(function instanceof KongFunction) {
+            KongError error = parseBody((KongFunction) function);
+            if(error != null) return error;
+            return applyFunction((KongFunction) function, args);
         }
 
         else if(function instanceof BuiltinFunction) {
             BuiltinFunction builtinFunction = (BuiltinFunction) function;
-            return builtinFunction.getFunction().apply(args);
+            return builtinFunction.apply(this, args);
         }
 
         return newError("not a function: %s", function.getObjectType());
     }
 
-    private Environment extendFunctionEnv(KongFunction function, List<KongObject> args) {
-        Environment env = new Environment(function.getEnvironment());
-        List<Identifier> parameters = function.getParameters();
-        for(int i = 0 ; i < parameters.size() ; i++) {
-            env.set(parameters.get(i).getValue(), args.get(i));
+    private KongObject applyFunction(KongFunction functionObject, List<KongObject> args) {
+        MemoCache memoCache = functionObject.getMemoCache();
+        MemoCache.Key key = memoCache != null ? MemoCache.Key.of(args) : null;
+        if(key == null) return invokeFunction(functionObject, args);
+
+        KongObject result = memoCache.get(key);
+        if(result != null) return result;
+
+        result = invokeFunction(functionObject, args);
+        if(!isAbrupt(result)) memoCache.put(key, result);
+        return result;
+    }
+
+    private KongObject invokeFunction(KongFunction functionObject, List<KongObject> args) {
+        Environment currentEnv = environment;
+        Environment extendedEnv = extendFunctionEnv(functionObject, args);
+
+        // Tail calls come back as KongTailCall and run in this loop instead of on a new Java frame
+        while(true) {
+            KongObject evaluated;
+            environment = extendedEnv;
+            try {
+                CompiledBody compiledBody = Jit.lookup(functionObject.getLiteral());
+                evaluated = compiledBody != null
+                        ? compiledBody.execute(this)
+                        : functionObject.getBody().accept(this);
+            } finally {
+                // A StackOverflowError or a bug escaping the body must not leave later runs in this frame
+                environment = currentEnv;
+            }
+
+            evaluated = unwrapReturnValue(evaluated);
+            if(!(evaluated instanceof KongTailCall)) return evaluated;
+
+            KongTailCall tailCall = (KongTailCall) evaluated;
+            KongFunction callee = tailCall.getFunction();
+            if(isSelfCall(functionObject, callee)) {
+                // Nothing can reference a frame of a function without closures, so it is reused
+                extendedEnv.reset();
+                bindArguments(extendedEnv, callee, tailCall.getArguments());
+            } else {
+                extendedEnv = extendFunctionEnv(callee, tailCall.getArguments());
+            }
+            functionObject = callee;
+        }
+    }
+
+    // Bodies skipped by a lazy parse are parsed and resolved on the first call
+    private KongError parseBody(KongFunction function) {
+        FunctionLiteral literal = function.getLiteral();
+        if(literal.isBodyParsed()) return null;
+
+        List<String> errors = literal.parseBody();
+        if(errors.isEmpty()) return null;
+        return newError("parser errors in function body: %s", String.join(", ", errors));
+    }
+
+    private InlineCache inlineCacheOf(CallExpression expression) {
+        InlineCache cache = expression.getInlineCache();
+        if(cache == null) {
+            cache = new InlineCache();
+            expression.setInlineCache(cache);
         }
+        return cache;
+    }
+
+    private Environment extendFunctionEnv(KongFunction function, List<KongObject> args) {
+        Environment env = new Environment(function.getEnvironment(), function.getLiteral().getLocalNames());
+        bindArguments(env, function, args);
         return env;
     }
 
-    private KongObject unwrapReturnValue(KongObject object) {
-        if(object instanceof KongReturn) {
-            return ((KongReturn) object).getValue();
+    private void bindArguments(Environment env, KongFunction function, List<KongObject> args) {
+        int parameters = function.getParameters().size();
+        for(int i = 0 ; i < parameters ; i++) {
+            env.set(i, args.get(i));
         }
+    }
+
+    private boolean isSelfCall(KongFunction caller, KongFunction callee) {
+        return caller.getLiteral() == callee.getLiteral()
+                && caller.getEnvironment() == callee.getEnvironment()
+                && !callee.getLiteral().createsClosures();
+    }
+
+    private KongObject unwrapReturnValue(KongObject object) {
+        if(object == RETURN) return takeReturnValue();
         return object;
     }
 
+    private KongObject takeReturnValue() {
+        KongObject value = returnValue;
+        returnValue = null;
+        return value;
+    }
+
     private List<KongObject> evalExpressions(List<Expression> expressions) {
         List<KongObject> result = new ArrayList<>();
         for(Expression expression : expressions) {
             KongObject evaluated = expression.accept(this);
-            if (isError(evaluated)) {
+            if (isAbrupt(evaluated)) {
                 return Collections.singletonList(evaluated);
             }
             result.add(evaluated);
@@ -351,63 +609,18 @@ public class Evaluator implements StatementVisitor<KongObject>, ExpressionVisito
         return value ? TRUE : FALSE;
     }
 
-    private boolean isTruthy(KongObject object) {
+    public boolean isTruthy(KongObject object) {
         if(object == NULL) return false;
         if(object == TRUE) return true;
         return object != FALSE;
     }
 
     private KongError newError(String format, Object... args) {
-        return new KongError(String.format(format, args));
+        return new KongError(format, args);
     }
 
-    private boolean isError(KongObject object) {
-        if(object != null) {
-            return object.getObjectType() == ObjectType.ERROR;
-        }
-        return false;
+    // Errors and the return signal stop the enclosing statements and expressions until a function or the program ends
+    public static boolean isAbrupt(KongObject object) {
+        return object instanceof KongError || object == RETURN;
     }
-
-    private final Function<List<KongObject>, KongObject> builtinStringLength = args -> {
-        if(args.size() != 1) {
-            return newError("wrong number of arguments. got=%d, want=1", args.size());
-        }
-
-        switch (args.get(0).getObjectType()) {
-            case STRING: {
-                String value = ((KongString )args.get(0)).getValue();
-                return new KongInteger(value.length());
-            }
-            case ARRAY: {
-                KongArray value = ((KongArray)args.get(0));
-                int length = value.getElements().size();
-                return new KongInteger(length);
-            }
-            default: {
-                return newError("argument to `len` not supported, got %s", args.get(0).getObjectType());
-            }
-        }
-    };
-
-    private final Function<List<KongObject>, KongObject> builtinArrayPush = args -> {
-        if(args.size() != 2) {
-            return newError("wrong number of arguments. got=%d, want=2", args.size());
-        }
-
-        if(args.get(0).getObjectType() != ObjectType.ARRAY) {
-            return newError("argument to `push` must be ARRAY, got %s", args.get(0).getObjectType());
-        }
-
-        KongArray array = (KongArray) args.get(0);
-        List<KongObject> elements = array.getElements();
-        elements.add(args.get(1));
-        return array;
-    };
-
-    private final Function<List<KongObject>, KongObject> builtinPrintln = args -> {
-        for(KongObject arg : args) {
-            System.out.println(arg.inspect());
-        }
-        return NULL;
-    };
 }
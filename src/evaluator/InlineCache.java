@@ -0,0 +1,92 @@
+package evaluator;
+
+import object.BuiltinFunction;
+import object.Environment;
+import object.KongFunction;
+import object.KongObject;
+
+// Callees seen by one call site. A global callee is reused without a lookup while the global environment
+// keeps the version it was read at, and known callees are dispatched without testing their type again.
+// State is replaced as immutable snapshots because threads running parallel builtins share call sites
+public class InlineCache {
+
+    private static final int MAX_TARGETS = 4;
+
+    public enum Target {
+        FUNCTION,
+        BUILTIN,
+        NOT_CALLABLE,
+    }
+
+    private static final Entry[] NO_ENTRIES = new Entry[0];
+
+    private volatile GlobalBinding globalBinding;
+    private volatile Entry[] entries = NO_ENTRIES;
+    private volatile boolean megamorphic;
+
+    // Returns the cached value of the global callee or null when the binding may have changed
+    public KongObject getGlobalCallee(Environment globals) {
+        GlobalBinding binding = globalBinding;
+        if(binding != null && binding.globals == globals && binding.version == globals.getVersion()) return binding.callee;
+        return null;
+    }
+
+    public void setGlobalCallee(Environment globals, KongObject callee) {
+        globalBinding = new GlobalBinding(globals, globals.getVersion(), callee);
+    }
+
+    public Target targetOf(KongObject callee) {
+        Entry[] current = entries;
+        for(Entry entry : current) {
+            if(entry.callee == callee) return entry.target;
+        }
+
+        Target target = classify(callee);
+        if(megamorphic || target == Target.NOT_CALLABLE) return target;
+        if(current.length == MAX_TARGETS) {
+            // Too many callees, usually closures created per call, the site falls back to type tests
+            megamorphic = true;
+            return target;
+        }
+
+        Entry[] grown = new Entry[current.length + 1];
+        System.arraycopy(current, 0, grown, 0, current.length);
+        grown[current.length] = new Entry(callee, target);
+        entries = grown;
+        return target;
+    }
+
+    boolean isMegamorphic() {
+        return megamorphic;
+    }
+
+    private static Target classify(KongObject callee) {
+        if(callee instanceof KongFunction) return Target.FUNCTION;
+        if(callee instanceof BuiltinFunction) return Target.BUILTIN;
+        return Target.NOT_CALLABLE;
+    }
+
+    private static class GlobalBinding {
+
+        private final Environment globals;
+        private final int version;
+        private final KongObject callee;
+
+        GlobalBinding(Environment globals, int version, KongObject callee) {
+            this.globals = globals;
+            this.version = version;
+            this.callee = callee;
+        }
+    }
+
+    private static class Entry {
+
+        private final KongObject callee;
+        private final Target target;
+
+        Entry(KongObject callee, Target target) {
+            this.callee = callee;
+            this.target = target;
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package evaluator;
+
+import ast.*;
+import object.Environment;
+import token.Symbol;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+// Gives every identifier a (depth, slot) address so the evaluator never looks names up at runtime
+public class Resolver implements StatementVisitor<Void>, ExpressionVisitor<Void> {
+
+    private final Environment globals;
+    private Scope scope;
+
+    public Resolver(Environment globals) {
+        this.globals = globals;
+    }
+
+    private Resolver(Environment globals, Scope scope) {
+        this.globals = globals;
+        this.scope = scope;
+    }
+
+    public void resolve(Program program) {
+        program.accept(this);
+    }
+
+    @Override
+    public Void visit(Program statement) {
+        new DeclarationCollector(globals::define).collect(statement.getStatements());
+        resolve(statement.getStatements());
+        return null;
+    }
+
+    @Override
+    public Void visit(LetStatement statement) {
+        resolve(statement.getValue());
+        resolveIdentifier(statement.getName());
+        return null;
+    }
+
+    @Override
+    public Void visit(ReturnStatement statement) {
+        resolve(statement.getReturnValue());
+        // A return leaves the function wherever it is, a top level one ends the program instead
+        if(scope != null) markTailCall(statement.getReturnValue(), true);
+        return null;
+    }
+
+    @Override
+    public Void visit(ExpressionStatement statement) {
+        resolve(statement.getExpression());
+        return null;
+    }
+
+    @Override
+    public Void visit(BlockStatement statement) {
+        resolve(statement.getStatements());
+        return null;
+    }
+
+    @Override
+    public Void visit(Identifier expression) {
+        resolveIdentifier(expression);
+        return null;
+    }
+
+    @Override
+    public Void visit(IntegerLiteral expression) {
+        return null;
+    }
+
+    @Override
+    public Void visit(StringLiteral expression) {
+        return null;
+    }
+
+    @Override
+    public Void visit(BooleanLiteral expression) {
+        return null;
+    }
+
+    @Override
+    public Void visit(PrefixExpression expression) {
+        resolve(expression.getRight());
+        return null;
+    }
+
+    @Override
+    public Void visit(InfixExpression expression) {
+        resolve(expression.getLeft());
+        resolve(expression.getRight());
+        return null;
+    }
+
+    @Override
+    public Void visit(IfExpression expression) {
+        resolve(expression.getCondition());
+        expression.getConsequence().accept(this);
+        if(expression.getAlternative() != null) expression.getAlternative().accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visit(FunctionLiteral expression) {
+        if(!expression.isBodyParsed()) {
+            // Resolved against the same scopes once the body is parsed, the names of enclosing scopes are
+            // all collected before anything in them is resolved so they do not change afterwards. Its names
+            // get global slots now, the body may be resolved while other threads run and read the globals
+            expression.forEachDeferredName(globals::define);
+            Scope enclosing = scope;
+            expression.setDeferredResolution(() -> new Resolver(globals, enclosing).resolveFunction(expression));
+            return null;
+        }
+        resolveFunction(expression);
+        return null;
+    }
+
+    private void resolveFunction(FunctionLiteral expression) {
+        scope = new Scope(scope);
+        for(Identifier parameter : expression.getParameters()) {
+            scope.define(parameter.getSymbol());
+            resolveIdentifier(parameter);
+        }
+
+        List<Statement> statements = expression.getBody().getStatements();
+        DeclarationCollector collector = new DeclarationCollector(scope::define);
+        collector.collect(statements);
+        resolve(statements);
+        markTailCalls(statements, true);
+
+        expression.setLocalNames(scope.names.toArray(new Symbol[0]));
+        expression.setCreatesClosures(collector.createsClosures());
+        scope = scope.outer;
+    }
+
+    @Override
+    public Void visit(CallExpression expression) {
+        resolve(expression.getFunction());
+        for(Expression argument : expression.getArguments()) resolve(argument);
+        return null;
+    }
+
+    @Override
+    public Void visit(ArrayLiteral expression) {
+        for(Expression element : expression.getElements()) resolve(element);
+        return null;
+    }
+
+    @Override
+    public Void visit(IndexExpression expression) {
+        resolve(expression.getLeft());
+        resolve(expression.getIndex());
+        return null;
+    }
+
+    @Override
+    public Void visit(MapLiteral expression) {
+        for(Map.Entry<Expression, Expression> pair : expression.getPairs().entrySet()) {
+            resolve(pair.getKey());
+            resolve(pair.getValue());
+        }
+        return null;
+    }
+
+    private void resolve(List<Statement> statements) {
+        for(Statement statement : statements) {
+            statement.accept(this);
+        }
+    }
+
+    private void resolve(Expression expression) {
+        if(expression != null) expression.accept(this);
+    }
+
+    // The value of the last statement of a block in tail position is the result of the function,
+    // return operands are marked when the return itself is resolved
+    private void markTailCalls(List<Statement> statements, boolean tail) {
+        if(!tail || statements.isEmpty()) return;
+
+        Statement last = statements.get(statements.size() - 1);
+        if(last instanceof ExpressionStatement) {
+            markTailCall(((ExpressionStatement) last).getExpression(), true);
+        }
+    }
+
+    private void markTailCall(Expression expression, boolean tail) {
+        if(expression instanceof CallExpression) {
+            ((CallExpression) expression).setTailCall(tail);
+        } else if(expression instanceof IfExpression) {
+            IfExpression ifExpression = (IfExpression) expression;
+            markTailCalls(ifExpression.getConsequence().getStatements(), tail);
+            if(ifExpression.getAlternative() != null) markTailCalls(ifExpression.getAlternative().getStatements(), tail);
+        }
+    }
+
+    private void resolveIdentifier(Identifier identifier) {
+        int depth = 0;
+        for(Scope current = scope ; current != null ; current = current.outer) {
+            int index = current.names.indexOf(identifier.getSymbol());
+            if(index != -1) {
+                identifier.resolve(depth, index);
+                return;
+            }
+            depth++;
+        }
+        // Unknown names live in the global environment and fall back to builtins while unbound
+        identifier.resolveGlobal(depth, globals.define(identifier.getSymbol()));
+    }
+
+    private static class Scope {
+
+        private final Scope outer;
+        private final List<Symbol> names = new ArrayList<>();
+
+        Scope(Scope outer) {
+            this.outer = outer;
+        }
+
+        void define(Symbol name) {
+            if(!names.contains(name)) names.add(name);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package jit;
+
+// Every compiled body gets its own loader so the class can be unloaded together with its function
+class BodyClassLoader extends ClassLoader {
+
+    BodyClassLoader(ClassLoader parent) {
+        super(parent);
+    }
+
+    Class<?> define(String name, byte[] classBytes) {
+        return defineClass(name, classBytes, 0, classBytes.length);
+    }
+}
@@ -0,0 +1,466 @@
+package jit;
+
+import ast.*;
+import object.KongString;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Translates a function body into the execute method of a CompiledBody class. Frame slots are read
+// straight from the environment and integer operators run on longs, operands of any other type
+// go through the evaluator's apply methods so the result and errors are the same as interpreted
+class BodyCompiler implements StatementVisitor<Void>, ExpressionVisitor<Void> {
+
+    private static final String OBJECT = "java/lang/Object";
+    private static final String ARRAY_LIST = "java/util/ArrayList";
+    private static final String LIST = "java/util/List";
+    private static final String EVALUATOR = "evaluator/Evaluator";
+    private static final String ENVIRONMENT = "object/Environment";
+    private static final String KONG_OBJECT = "object/KongObject";
+    private static final String KONG_INTEGER = "object/KongInteger";
+    private static final String KONG_BOOLEAN = "object/KongBoolean";
+    private static final String KONG_ARRAY = "object/KongArray";
+    private static final String KONG_FUNCTION = "object/KongFunction";
+    private static final String COMPILED_BODY = "jit/CompiledBody";
+
+    private static final String KONG_OBJECT_DESCRIPTOR = "L" + KONG_OBJECT + ";";
+    private static final String KONG_BOOLEAN_DESCRIPTOR = "L" + KONG_BOOLEAN + ";";
+    private static final String ENVIRONMENT_DESCRIPTOR = "L" + ENVIRONMENT + ";";
+    private static final String CONSTANTS_DESCRIPTOR = "[Ljava/lang/Object;";
+
+    private static final int THIS_SLOT = 0;
+    private static final int EVALUATOR_SLOT = 1;
+    private static final int ENVIRONMENT_SLOT = 2;
+
+    private final String className;
+    private final ClassFile classFile;
+    private final Code code = new Code(2);
+
+    private final List<Object> constants = new ArrayList<>();
+    private final Map<Object, Integer> constantIndexes = new IdentityHashMap<>();
+
+    // Locals after the environment hold operands while an operator checks their types
+    private int nextLocal = ENVIRONMENT_SLOT + 1;
+
+    BodyCompiler(String className) {
+        this.className = className;
+        this.classFile = new ClassFile(className, OBJECT, COMPILED_BODY);
+    }
+
+    byte[] compile(FunctionLiteral literal) {
+        classFile.addField(ClassFile.ACC_PRIVATE | ClassFile.ACC_FINAL, "constants", CONSTANTS_DESCRIPTOR);
+
+        Code constructor = new Code(2);
+        constructor.aload(THIS_SLOT);
+        constructor.op2(Code.INVOKESPECIAL, classFile.methodRef(OBJECT, "<init>", "()V"), -1);
+        constructor.aload(THIS_SLOT);
+        constructor.aload(1);
+        constructor.op2(Code.PUTFIELD, classFile.fieldRef(className, "constants", CONSTANTS_DESCRIPTOR), -2);
+        constructor.op(Code.RETURN, 0);
+        classFile.addMethod(ClassFile.ACC_PUBLIC, "<init>", "(" + CONSTANTS_DESCRIPTOR + ")V", constructor);
+
+        // The evaluator stays in the frame of this call until the body returns
+        code.aload(EVALUATOR_SLOT);
+        invokeEvaluator("getEnvironment", "()" + ENVIRONMENT_DESCRIPTOR, 0);
+        code.astore(ENVIRONMENT_SLOT);
+
+        compileStatements(literal.getBody().getStatements());
+        code.op(Code.ARETURN, -1);
+        classFile.addMethod(ClassFile.ACC_PUBLIC, "execute", "(L" + EVALUATOR + ";)" + KONG_OBJECT_DESCRIPTOR, code);
+        return classFile.toByteArray();
+    }
+
+    Object[] getConstants() {
+        return constants.toArray();
+    }
+
+    @Override
+    public Void visit(Program statement) {
+        throw new UnsupportedOperationException("program inside a function body");
+    }
+
+    @Override
+    public Void visit(LetStatement statement) {
+        Identifier name = statement.getName();
+        if(!name.isResolved()) throw new UnsupportedOperationException("unresolved let " + name);
+
+        code.aload(ENVIRONMENT_SLOT);
+        code.pushInt(classFile, name.getIndex());
+        statement.getValue().accept(this);
+        code.op2(Code.INVOKEVIRTUAL, classFile.methodRef(ENVIRONMENT, "set", "(I" + KONG_OBJECT_DESCRIPTOR + ")V"), -3);
+        return null;
+    }
+
+    @Override
+    public Void visit(ReturnStatement statement) {
+        statement.getReturnValue().accept(this);
+        code.op(Code.ARETURN, -1);
+        return null;
+    }
+
+    @Override
+    public Void visit(ExpressionStatement statement) {
+        statement.getExpression().accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visit(BlockStatement statement) {
+        compileStatements(statement.getStatements());
+        return null;
+    }
+
+    @Override
+    public Void visit(Identifier expression) {
+        if(!expression.isResolved()) {
+            compileFallback(expression, "ast/Identifier");
+            return null;
+        }
+
+        // An unbound slot is left to the evaluator, which looks up builtins and reports unknown names
+        Code.Label bound = code.newLabel();
+        code.aload(ENVIRONMENT_SLOT);
+        code.pushInt(classFile, expression.getDepth());
+        code.pushInt(classFile, expression.getIndex());
+        code.op2(Code.INVOKEVIRTUAL, classFile.methodRef(ENVIRONMENT, "get", "(II)" + KONG_OBJECT_DESCRIPTOR), -2);
+        code.op(Code.DUP, 1);
+        code.jump(Code.IFNONNULL, bound, -1);
+        code.op(Code.POP, -1);
+        compileFallback(expression, "ast/Identifier");
+        code.mark(bound);
+        return null;
+    }
+
+    @Override
+    public Void visit(IntegerLiteral expression) {
+        loadConstant(expression.getObject(), KONG_OBJECT);
+        return null;
+    }
+
+    @Override
+    public Void visit(StringLiteral expression) {
+        loadConstant(new KongString(expression.getValue()), KONG_OBJECT);
+        return null;
+    }
+
+    @Override
+    public Void visit(BooleanLiteral expression) {
+        loadBoolean(expression.isValue());
+        return null;
+    }
+
+    @Override
+    public Void visit(PrefixExpression expression) {
+        if(expression.getPrefixOperator() != PrefixOperator.MINUS) {
+            expression.getRight().accept(this);
+            applyPrefix(expression);
+            return null;
+        }
+
+        int right = allocateLocal();
+        expression.getRight().accept(this);
+        code.astore(right);
+
+        Code.Label generic = code.newLabel();
+        Code.Label end = code.newLabel();
+        int stackDepth = code.getStackDepth();
+        jumpUnlessInteger(right, generic);
+        loadLong(right);
+        code.op(Code.LNEG, 0);
+        boxLong();
+        code.jump(Code.GOTO, end, 0);
+
+        code.mark(generic);
+        code.setStackDepth(stackDepth);
+        code.aload(right);
+        applyPrefix(expression);
+        code.mark(end);
+
+        releaseLocal();
+        return null;
+    }
+
+    @Override
+    public Void visit(InfixExpression expression) {
+        Expression leftOperand = expression.getLeft();
+        Expression rightOperand = expression.getRight();
+        int left = compileOperand(leftOperand);
+        int right = compileOperand(rightOperand);
+
+        // Both operands integers, the operator runs on their values, anything else takes the generic path
+        Code.Label generic = code.newLabel();
+        Code.Label end = code.newLabel();
+        int stackDepth = code.getStackDepth();
+        if(left != -1) jumpUnlessInteger(left, generic);
+        if(right != -1) jumpUnlessInteger(right, generic);
+        loadOperandValue(leftOperand, left);
+        loadOperandValue(rightOperand, right);
+        compileIntegerOperator(expression.getInfixOperator());
+        code.jump(Code.GOTO, end, 0);
+
+        code.mark(generic);
+        code.setStackDepth(stackDepth);
+        code.aload(EVALUATOR_SLOT);
+        loadConstant(expression, "ast/InfixExpression");
+        loadOperand(leftOperand, left);
+        loadOperand(rightOperand, right);
+        invokeEvaluator("applyInfixExpression", "(Last/InfixExpression;" + KONG_OBJECT_DESCRIPTOR
+                + KONG_OBJECT_DESCRIPTOR + ")" + KONG_OBJECT_DESCRIPTOR, -3);
+        checkError();
+        code.mark(end);
+
+        if(right != -1) releaseLocal();
+        if(left != -1) releaseLocal();
+        return null;
+    }
+
+    @Override
+    public Void visit(IfExpression expression) {
+        expression.getCondition().accept(this);
+        code.aload(EVALUATOR_SLOT);
+        code.op(Code.SWAP, 0);
+        invokeEvaluator("isTruthy", "(" + KONG_OBJECT_DESCRIPTOR + ")Z", -1);
+
+        Code.Label alternative = code.newLabel();
+        Code.Label end = code.newLabel();
+        code.jump(Code.IFEQ, alternative, -1);
+        int stackDepth = code.getStackDepth();
+
+        expression.getConsequence().accept(this);
+        code.jump(Code.GOTO, end, 0);
+
+        code.mark(alternative);
+        code.setStackDepth(stackDepth);
+        if(expression.getAlternative() != null) {
+            expression.getAlternative().accept(this);
+        } else {
+            code.op2(Code.GETSTATIC, classFile.fieldRef("object/KongNull", "NULL", "Lobject/KongNull;"), 1);
+        }
+        code.mark(end);
+        return null;
+    }
+
+    @Override
+    public Void visit(FunctionLiteral expression) {
+        code.op2(Code.NEW, classFile.classRef(KONG_FUNCTION), 1);
+        code.op(Code.DUP, 1);
+        loadConstant(expression, "ast/FunctionLiteral");
+        code.aload(ENVIRONMENT_SLOT);
+        code.op2(Code.INVOKESPECIAL, classFile.methodRef(KONG_FUNCTION, "<init>",
+                "(Last/FunctionLiteral;" + ENVIRONMENT_DESCRIPTOR + ")V"), -3);
+        return null;
+    }
+
+    @Override
+    public Void visit(CallExpression expression) {
+        code.aload(EVALUATOR_SLOT);
+        loadConstant(expression, "ast/CallExpression");
+        code.aload(EVALUATOR_SLOT);
+        loadConstant(expression, "ast/CallExpression");
+        invokeEvaluator("evalCallee", "(Last/CallExpression;)" + KONG_OBJECT_DESCRIPTOR, -1);
+        checkError();
+
+        compileList(expression.getArguments());
+        invokeEvaluator("call", "(Last/CallExpression;" + KONG_OBJECT_DESCRIPTOR + "L" + LIST + ";)"
+                + KONG_OBJECT_DESCRIPTOR, -3);
+        checkError();
+        return null;
+    }
+
+    @Override
+    public Void visit(ArrayLiteral expression) {
+        code.op2(Code.NEW, classFile.classRef(KONG_ARRAY), 1);
+        code.op(Code.DUP, 1);
+        compileList(expression.getElements());
+        code.op2(Code.INVOKESPECIAL, classFile.methodRef(KONG_ARRAY, "<init>", "(L" + LIST + ";)V"), -2);
+        return null;
+    }
+
+    @Override
+    public Void visit(IndexExpression expression) {
+        code.aload(EVALUATOR_SLOT);
+        expression.getLeft().accept(this);
+        expression.getIndex().accept(this);
+        invokeEvaluator("applyIndexExpression", "(" + KONG_OBJECT_DESCRIPTOR + KONG_OBJECT_DESCRIPTOR + ")"
+                + KONG_OBJECT_DESCRIPTOR, -2);
+        checkError();
+        return null;
+    }
+
+    @Override
+    public Void visit(MapLiteral expression) {
+        // Keys are checked for hashability one pair at a time, maps are rarely built in hot code
+        compileFallback(expression, "ast/MapLiteral");
+        return null;
+    }
+
+    // Leaves the value of the last statement on the stack, null when it is a let or there are no statements
+    private void compileStatements(List<Statement> statements) {
+        if(statements.isEmpty()) {
+            code.op(Code.ACONST_NULL, 1);
+            return;
+        }
+
+        int last = statements.size() - 1;
+        for(int i = 0 ; i <= last ; i++) {
+            Statement statement = statements.get(i);
+            statement.accept(this);
+            if(statement instanceof ReturnStatement) {
+                // The rest of the block is unreachable, count the value the block would have left
+                code.setStackDepth(code.getStackDepth() + 1);
+                return;
+            }
+            if(statement instanceof LetStatement) {
+                if(i == last) code.op(Code.ACONST_NULL, 1);
+            } else if(i != last) {
+                code.op(Code.POP, -1);
+            }
+        }
+    }
+
+    // Leaves an ArrayList of the values of the expressions on the stack
+    private void compileList(List<Expression> expressions) {
+        code.op2(Code.NEW, classFile.classRef(ARRAY_LIST), 1);
+        code.op(Code.DUP, 1);
+        code.pushInt(classFile, expressions.size());
+        code.op2(Code.INVOKESPECIAL, classFile.methodRef(ARRAY_LIST, "<init>", "(I)V"), -2);
+        int add = classFile.interfaceMethodRef(LIST, "add", "(Ljava/lang/Object;)Z");
+        for(Expression expression : expressions) {
+            code.op(Code.DUP, 1);
+            expression.accept(this);
+            code.invokeinterface(add, 1, -1);
+            code.op(Code.POP, -1);
+        }
+    }
+
+    // Stores the value of an operand in a new local and returns it, integer literals need no local
+    private int compileOperand(Expression operand) {
+        if(operand instanceof IntegerLiteral) return -1;
+
+        int local = allocateLocal();
+        operand.accept(this);
+        code.astore(local);
+        return local;
+    }
+
+    private void loadOperand(Expression operand, int local) {
+        if(local == -1) {
+            operand.accept(this);
+        } else {
+            code.aload(local);
+        }
+    }
+
+    private void loadOperandValue(Expression operand, int local) {
+        if(local == -1) {
+            code.op2(Code.LDC2_W, classFile.longConstant(((IntegerLiteral) operand).getValue()), 2);
+        } else {
+            loadLong(local);
+        }
+    }
+
+    private void jumpUnlessInteger(int local, Code.Label label) {
+        code.aload(local);
+        code.op2(Code.INSTANCEOF, classFile.classRef(KONG_INTEGER), 0);
+        code.jump(Code.IFEQ, label, -1);
+    }
+
+    private void loadLong(int local) {
+        code.aload(local);
+        code.op2(Code.CHECKCAST, classFile.classRef(KONG_INTEGER), 0);
+        code.op2(Code.INVOKEVIRTUAL, classFile.methodRef(KONG_INTEGER, "getValue", "()J"), 1);
+    }
+
+    private void boxLong() {
+        code.op2(Code.INVOKESTATIC, classFile.methodRef(KONG_INTEGER, "valueOf", "(J)L" + KONG_INTEGER + ";"), -1);
+    }
+
+    // Consumes two longs and leaves the boxed result, the same operators as Evaluator.evalIntegerInfixExpression
+    private void compileIntegerOperator(InfixOperator operator) {
+        switch (operator) {
+            case PLUS:     code.op(Code.LADD, -2); boxLong(); return;
+            case MINUS:    code.op(Code.LSUB, -2); boxLong(); return;
+            case ASTERISK: code.op(Code.LMUL, -2); boxLong(); return;
+            case SLASH:    code.op(Code.LDIV, -2); boxLong(); return;
+            case LT:       compileComparison(Code.IFGE); return;
+            case GT:       compileComparison(Code.IFLE); return;
+            case EQ:       compileComparison(Code.IFNE); return;
+            case NOT_EQ:   compileComparison(Code.IFEQ); return;
+            default: throw new UnsupportedOperationException("operator " + operator);
+        }
+    }
+
+    // Compares two longs, jumpIfFalse tests the result of lcmp for the comparison not holding
+    private void compileComparison(int jumpIfFalse) {
+        Code.Label isFalse = code.newLabel();
+        Code.Label end = code.newLabel();
+        code.op(Code.LCMP, -3);
+        code.jump(jumpIfFalse, isFalse, -1);
+        loadBoolean(true);
+        code.jump(Code.GOTO, end, 0);
+        code.mark(isFalse);
+        code.setStackDepth(code.getStackDepth() - 1);
+        loadBoolean(false);
+        code.mark(end);
+    }
+
+    private void loadBoolean(boolean value) {
+        String name = value ? "TRUE" : "FALSE";
+        code.op2(Code.GETSTATIC, classFile.fieldRef(KONG_BOOLEAN, name, KONG_BOOLEAN_DESCRIPTOR), 1);
+    }
+
+    private void applyPrefix(PrefixExpression expression) {
+        code.aload(EVALUATOR_SLOT);
+        code.op(Code.SWAP, 0);
+        loadConstant(expression, "ast/PrefixExpression");
+        code.op(Code.SWAP, 0);
+        invokeEvaluator("applyPrefixExpression", "(Last/PrefixExpression;" + KONG_OBJECT_DESCRIPTOR + ")" + KONG_OBJECT_DESCRIPTOR, -2);
+        checkError();
+    }
+
+    private void compileFallback(Expression expression, String type) {
+        code.aload(EVALUATOR_SLOT);
+        loadConstant(expression, type);
+        invokeEvaluator("visit", "(L" + type + ";)" + KONG_OBJECT_DESCRIPTOR, -1);
+        checkError();
+    }
+
+    // Returns the value on top of the stack from the function when it is an error or the return signal
+    private void checkError() {
+        Code.Label notError = code.newLabel();
+        code.op(Code.DUP, 1);
+        code.op2(Code.INVOKESTATIC, classFile.methodRef(EVALUATOR, "isAbrupt", "(" + KONG_OBJECT_DESCRIPTOR + ")Z"), 0);
+        code.jump(Code.IFEQ, notError, -1);
+        code.op(Code.ARETURN, 0);
+        code.mark(notError);
+    }
+
+    private int allocateLocal() {
+        return nextLocal++;
+    }
+
+    // Operands are released in the reverse order of their allocation
+    private void releaseLocal() {
+        nextLocal--;
+    }
+
+    private void loadConstant(Object constant, String type) {
+        Integer index = constantIndexes.get(constant);
+        if(index == null) {
+            index = constants.size();
+            constants.add(constant);
+            constantIndexes.put(constant, index);
+        }
+        code.aload(THIS_SLOT);
+        code.op2(Code.GETFIELD, classFile.fieldRef(className, "constants", CONSTANTS_DESCRIPTOR), 0);
+        code.pushInt(classFile, index);
+        code.op(Code.AALOAD, -1);
+        code.op2(Code.CHECKCAST, classFile.classRef(type), 0);
+    }
+
+    private void invokeEvaluator(String name, String descriptor, int stackEffect) {
+        code.op2(Code.INVOKEVIRTUAL, classFile.methodRef(EVALUATOR, name, descriptor), stackEffect);
+    }
+}
@@ -0,0 +1,177 @@
+package jit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Instruction buffer of a single method, tracks the operand stack depth to compute max_stack
+class Code {
+
+    static final int ACONST_NULL = 0x01;
+    static final int ICONST_0 = 0x03;
+    static final int BIPUSH = 0x10;
+    static final int SIPUSH = 0x11;
+    static final int LDC_W = 0x13;
+    static final int LDC2_W = 0x14;
+    static final int ALOAD = 0x19;
+    static final int AALOAD = 0x32;
+    static final int ASTORE = 0x3a;
+    static final int POP = 0x57;
+    static final int DUP = 0x59;
+    static final int SWAP = 0x5f;
+    static final int LADD = 0x61;
+    static final int LSUB = 0x65;
+    static final int LMUL = 0x69;
+    static final int LDIV = 0x6d;
+    static final int LNEG = 0x75;
+    static final int LCMP = 0x94;
+    static final int IFEQ = 0x99;
+    static final int IFNE = 0x9a;
+    static final int IFGE = 0x9c;
+    static final int IFLE = 0x9e;
+    static final int GOTO = 0xa7;
+    static final int ARETURN = 0xb0;
+    static final int RETURN = 0xb1;
+    static final int GETSTATIC = 0xb2;
+    static final int GETFIELD = 0xb4;
+    static final int PUTFIELD = 0xb5;
+    static final int INVOKEVIRTUAL = 0xb6;
+    static final int INVOKESPECIAL = 0xb7;
+    static final int INVOKESTATIC = 0xb8;
+    static final int INVOKEINTERFACE = 0xb9;
+    static final int NEW = 0xbb;
+    static final int CHECKCAST = 0xc0;
+    static final int INSTANCEOF = 0xc1;
+    static final int IFNONNULL = 0xc7;
+
+    // Branch offsets are signed 16 bit values
+    private static final int MAX_CODE_SIZE = 0x7FFF;
+
+    private byte[] code = new byte[256];
+    private int size;
+    private final List<Label> labels = new ArrayList<>();
+
+    private int stackDepth;
+    private int maxStack;
+    private int maxLocals;
+
+    Code(int parameterSlots) {
+        this.maxLocals = parameterSlots;
+    }
+
+    void op(int opcode, int stackEffect) {
+        u1(opcode);
+        adjustStack(stackEffect);
+    }
+
+    void op1(int opcode, int operand, int stackEffect) {
+        u1(opcode);
+        u1(operand);
+        adjustStack(stackEffect);
+    }
+
+    void op2(int opcode, int operand, int stackEffect) {
+        u1(opcode);
+        u2(operand);
+        adjustStack(stackEffect);
+    }
+
+    void aload(int local) {
+        op1(ALOAD, local, 1);
+        maxLocals = Math.max(maxLocals, local + 1);
+    }
+
+    void astore(int local) {
+        op1(ASTORE, local, -1);
+        maxLocals = Math.max(maxLocals, local + 1);
+    }
+
+    void pushInt(ClassFile classFile, int value) {
+        if(value >= -1 && value <= 5) {
+            op(ICONST_0 + value, 1);
+        } else if(value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            op1(BIPUSH, value & 0xFF, 1);
+        } else if(value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            op2(SIPUSH, value & 0xFFFF, 1);
+        } else {
+            op2(LDC_W, classFile.integer(value), 1);
+        }
+    }
+
+    void invokeinterface(int methodRef, int argumentSlots, int stackEffect) {
+        u1(INVOKEINTERFACE);
+        u2(methodRef);
+        u1(argumentSlots + 1);
+        u1(0);
+        adjustStack(stackEffect);
+    }
+
+    Label newLabel() {
+        Label label = new Label();
+        labels.add(label);
+        return label;
+    }
+
+    void jump(int opcode, Label label, int stackEffect) {
+        label.fixups.add(size);
+        u1(opcode);
+        u2(0);
+        adjustStack(stackEffect);
+    }
+
+    void mark(Label label) {
+        label.position = size;
+    }
+
+    int getStackDepth() {
+        return stackDepth;
+    }
+
+    void setStackDepth(int stackDepth) {
+        this.stackDepth = stackDepth;
+    }
+
+    int getMaxStack() {
+        return maxStack;
+    }
+
+    int getMaxLocals() {
+        return maxLocals;
+    }
+
+    byte[] toByteArray() {
+        if(size > MAX_CODE_SIZE) throw new UnsupportedOperationException("method too large");
+        for(Label label : labels) {
+            for(int fixup : label.fixups) {
+                int offset = label.position - fixup;
+                code[fixup + 1] = (byte) (offset >> 8);
+                code[fixup + 2] = (byte) offset;
+            }
+        }
+        return Arrays.copyOf(code, size);
+    }
+
+    private void adjustStack(int stackEffect) {
+        stackDepth += stackEffect;
+        maxStack = Math.max(maxStack, stackDepth);
+    }
+
+    private void u1(int value) {
+        if(size == code.length) code = Arrays.copyOf(code, size * 2);
+        code[size++] = (byte) value;
+    }
+
+    private void u2(int value) {
+        u1(value >> 8);
+        u1(value);
+    }
+
+    static class Label {
+
+        private final List<Integer> fixups = new ArrayList<>();
+        private int position = -1;
+
+        private Label() {
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package jit;
+
+import evaluator.Evaluator;
+import object.KongObject;
+
+// A function body translated to JVM bytecode, runs in the environment the evaluator is currently in
+public interface CompiledBody {
+
+    KongObject execute(Evaluator evaluator);
+}
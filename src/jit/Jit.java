@@ -0,0 +1,61 @@
+package jit;
+
+import ast.FunctionLiteral;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Counts calls per function literal and replaces the body of hot functions with generated JVM classes
+public class Jit {
+
+    private static final AtomicInteger classCounter = new AtomicInteger();
+
+    private static volatile boolean enabled = !"false".equals(System.getProperty("kong.jit"));
+    private static volatile int threshold = Integer.getInteger("kong.jit.threshold", 1000);
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        Jit.enabled = enabled;
+    }
+
+    public static int getThreshold() {
+        return threshold;
+    }
+
+    public static void setThreshold(int threshold) {
+        Jit.threshold = threshold;
+    }
+
+    // Returns the compiled body of the function or null while it should still be interpreted
+    public static CompiledBody lookup(FunctionLiteral literal) {
+        if(!enabled) return null;
+
+        CompiledBody body = literal.getCompiledBody();
+        if(body != null) return body;
+
+        // Compilation is attempted once, by the call reaching the threshold, other calls stay interpreted meanwhile
+        if(!literal.countCall(threshold)) return null;
+
+        body = compile(literal);
+        literal.setCompiledBody(body);
+        return body;
+    }
+
+    static CompiledBody compile(FunctionLiteral literal) {
+        if(literal.getLocalNames() == null) return null;
+
+        String className = "jit/generated/Body" + classCounter.incrementAndGet();
+        try {
+            BodyCompiler compiler = new BodyCompiler(className);
+            byte[] classBytes = compiler.compile(literal);
+            BodyClassLoader loader = new BodyClassLoader(Jit.class.getClassLoader());
+            Class<?> bodyClass = loader.define(className.replace('/', '.'), classBytes);
+            return (CompiledBody) bodyClass.getConstructor(Object[].class).newInstance((Object) compiler.getConstants());
+        } catch (UnsupportedOperationException | ReflectiveOperationException | LinkageError e) {
+            // Bodies the compiler can not translate keep running in the evaluator
+            return null;
+        }
+    }
+}
@@ -1,14 +1,18 @@
 package lexer;
 
+import token.Symbol;
 import token.Token;
+import token.TokenBuffer;
 import token.TokenType;
 
-import java.util.HashMap;
-import java.util.Map;
-
 public class Lexer {
 
-    private final String input;
+    // Tokens lexed at a time when the parser asks for more
+    private static final int BATCH_SIZE = 256;
+
+    // A String or any other sequence, like a Utf8Sequence over a mapped file, read front to back
+    private final CharSequence input;
+    private final int length;
 
     // current position in input (points to current char)
     private int position;
@@ -19,88 +23,129 @@ public class Lexer {
     // current char under examination
     private char ch;
 
-    private static final Map<String, TokenType> keywords = new HashMap<>();
+    // Last token scanned, its literal is the input between start and end
+    private TokenType tokenType;
+    private int tokenStart;
+    private int tokenEnd;
+    private Symbol tokenSymbol;
 
-    static {
-        keywords.put("fn", TokenType.FUNCTION);
-        keywords.put("let", TokenType.LET);
-        keywords.put("true", TokenType.TRUE);
-        keywords.put("false", TokenType.FALSE);
-        keywords.put("if", TokenType.IF);
-        keywords.put("else", TokenType.ELSE);
-        keywords.put("return", TokenType.RETURN);
+    public Lexer(CharSequence input) {
+        this(input, 0);
     }
 
-    public Lexer(String input) {
+    // Starts at an offset where a token or the whitespace before one starts
+    public Lexer(CharSequence input, int start) {
         this.input = input;
+        this.length = input.length();
+        this.readPosition = start;
         readChar();
     }
 
     public Token nextToken() {
-        Token token;
+        scan();
+        if(tokenSymbol != null) return new Token(tokenSymbol);
+
+        String literal = tokenType.getLiteral();
+        if(literal == null) literal = input.subSequence(tokenStart, tokenEnd).toString();
+        return new Token(tokenType, literal);
+    }
+
+    // Lexes the rest of the input into a buffer of types and offsets, literals are left in the input
+    public TokenBuffer tokenize() {
+        TokenBuffer buffer = new TokenBuffer(input);
+        do {
+            scan();
+            buffer.add(tokenType, tokenStart, tokenEnd, tokenSymbol);
+        } while (tokenType != TokenType.EOF);
+        return buffer;
+    }
+
+    // Lexes only as far as the buffer is read, for parsers that may stop before the end of the input
+    public TokenBuffer tokenizeOnDemand() {
+        return new TokenBuffer(input, buffer -> {
+            for(int i = 0 ; i < BATCH_SIZE ; i++) {
+                scan();
+                buffer.add(tokenType, tokenStart, tokenEnd, tokenSymbol);
+                if(tokenType == TokenType.EOF) return false;
+            }
+            return true;
+        });
+    }
+
+    // Reads the next token into tokenType, tokenStart, tokenEnd and tokenSymbol
+    private void scan() {
         skipWhitespace();
+        tokenStart = position;
+        tokenSymbol = null;
         switch (ch) {
             case '=': {
                 if (peekChar() == '=') {
-                    char currentChar = ch;
                     readChar();
-                    token =  newToken(TokenType.EQ, currentChar + "" + ch);
+                    tokenType = TokenType.EQ;
                 } else {
-                    token =  newToken(TokenType.ASSIGN, ch);
+                    tokenType = TokenType.ASSIGN;
                 }
                 break;
             }
-            case '(': token =  newToken(TokenType.L_PAREN, ch); break;
-            case ')': token =  newToken(TokenType.R_PAREN, ch); break;
-            case '{': token =  newToken(TokenType.L_BRACE, ch); break;
-            case '}': token =  newToken(TokenType.R_BRACE, ch); break;
-            case '[': token =  newToken(TokenType.L_BRACKET, ch); break;
-            case ']': token =  newToken(TokenType.R_BRACKET, ch); break;
-            case '+': token =  newToken(TokenType.PLUS, ch); break;
-            case '-': token =  newToken(TokenType.MINUS, ch); break;
+            case '(': tokenType = TokenType.L_PAREN; break;
+            case ')': tokenType = TokenType.R_PAREN; break;
+            case '{': tokenType = TokenType.L_BRACE; break;
+            case '}': tokenType = TokenType.R_BRACE; break;
+            case '[': tokenType = TokenType.L_BRACKET; break;
+            case ']': tokenType = TokenType.R_BRACKET; break;
+            case '+': tokenType = TokenType.PLUS; break;
+            case '-': tokenType = TokenType.MINUS; break;
             case '!': {
                 if (peekChar() == '=') {
-                    char currentChar = ch;
                     readChar();
-                    token =  newToken(TokenType.NOT_EQ, currentChar + "" + ch);
+                    tokenType = TokenType.NOT_EQ;
                 }else {
-                    token =  newToken(TokenType.BANG, ch);
+                    tokenType = TokenType.BANG;
                 }
                 break;
             }
-            case '/': token =  newToken(TokenType.SLASH, ch); break;
-            case '*': token =  newToken(TokenType.ASTERISK, ch); break;
-            case '<': token =  newToken(TokenType.LT, ch); break;
-            case '>': token =  newToken(TokenType.GT, ch); break;
-            case ';': token =  newToken(TokenType.SEMICOLON, ch); break;
-            case ':': token =  newToken(TokenType.COLON, ch); break;
-            case ',': token =  newToken(TokenType.COMMA, ch); break;
-            case  0 : token =  newToken(TokenType.EOF, ' '); break;
+            case '/': tokenType = TokenType.SLASH; break;
+            case '*': tokenType = TokenType.ASTERISK; break;
+            case '<': tokenType = TokenType.LT; break;
+            case '>': tokenType = TokenType.GT; break;
+            case ';': tokenType = TokenType.SEMICOLON; break;
+            case ':': tokenType = TokenType.COLON; break;
+            case ',': tokenType = TokenType.COMMA; break;
+            case  0 : {
+                tokenType = TokenType.EOF;
+                tokenEnd = tokenStart;
+                return;
+            }
             case '\"': {
-                String literal = readString();
-                return newToken(TokenType.STRING, literal);
+                readString();
+                tokenType = TokenType.STRING;
+                return;
             }
             default: {
                 if(isLetter(ch)) {
-                    String literal = readIdentifier();
-                    TokenType tokenType = lookupIdent(literal);
-                    return newToken(tokenType, literal);
+                    // Keywords are interned with their token type so no separate lookup is needed
+                    tokenSymbol = readIdentifier();
+                    tokenType = tokenSymbol.getTokenType();
+                    tokenEnd = position;
+                    return;
                 }
                 else if(isDigit(ch)) {
-                    String literal = readNumber();
-                    return newToken(TokenType.INT, literal);
+                    readNumber();
+                    tokenType = TokenType.INT;
+                    tokenEnd = position;
+                    return;
                 }
                 else {
-                    token = newToken(TokenType.ILLEGAL, ch);
+                    tokenType = TokenType.ILLEGAL;
                 }
             }
         }
         readChar();
-        return token;
+        tokenEnd = position;
     }
 
     private void readChar() {
-        if (readPosition >= input.length()) {
+        if (readPosition >= length) {
             ch = 0;
         } else {
             ch = input.charAt(readPosition);
@@ -111,7 +156,7 @@ public class Lexer {
     }
 
     private char peekChar() {
-        if(position >= input.length()) return 0;
+        if(readPosition >= length) return 0;
         return input.charAt(readPosition);
     }
 
@@ -121,44 +166,30 @@ public class Lexer {
         }
     }
 
-    private String readIdentifier() {
+    private Symbol readIdentifier() {
         int startPosition = readPosition;
         while (isLetter(ch)) {
             readChar();
         }
-        return input.substring(startPosition - 1, position);
+        return Symbol.intern(input, startPosition - 1, position);
     }
 
-    private String readNumber() {
-        int startPosition = position;
-
+    private void readNumber() {
         while (isDigit(ch)) {
             readChar();
         }
-        return input.substring(startPosition, position);
     }
 
-    private String readString() {
-        int startPosition = position + 1;
+    // Leaves the range between the quotes in tokenStart and tokenEnd
+    private void readString() {
+        tokenStart = position + 1;
         do {
             readChar();
         } while (ch != '"' && ch != 0);
 
         // Consume closing "
         readChar();
-        return input.substring(startPosition, position - 1);
-    }
-
-    private TokenType lookupIdent(String ident) {
-        return keywords.getOrDefault(ident, TokenType.IDENT);
-    }
-
-    private Token newToken(TokenType type, String literal) {
-        return new Token(type, literal);
-    }
-
-    private Token newToken(TokenType type, char ch) {
-        return new Token(type, String.valueOf(ch));
+        tokenEnd = position - 1;
     }
 
     private boolean isLetter(char ch) {
@@ -0,0 +1,182 @@
+package lexer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// Characters of UTF-8 bytes decoded on demand, so a memory mapped script is lexed without ever being copied
+// into a String. Reads are cheapest in order like the lexer does them, a cursor remembers where the last one
+// ended and checkpoints every few thousand characters make going back to the start of a literal cheap.
+// Malformed sequences decode as U+FFFD one byte at a time
+public final class Utf8Sequence implements CharSequence {
+
+    private static final char REPLACEMENT = '\uFFFD';
+    private static final int CHECKPOINT_INTERVAL = 4096;
+
+    private final ByteBuffer bytes;
+    private final int byteStart;
+    private final int byteEnd;
+    private int length = -1;
+
+    // Character index and byte offset of the code point the last read ended on
+    private int cursorChar;
+    private int cursorByte;
+
+    // Code point boundaries reached so far, the k-th one is the first at or after character k * CHECKPOINT_INTERVAL
+    private int[] checkpointChars = new int[16];
+    private int[] checkpointBytes = new int[16];
+    private int checkpointCount = 1;
+
+    public Utf8Sequence(ByteBuffer bytes) {
+        this.bytes = bytes;
+        int start = bytes.position();
+        // Skip the byte order mark some editors write
+        if(bytes.limit() - start >= 3 && (bytes.get(start) & 0xFF) == 0xEF
+                && (bytes.get(start + 1) & 0xFF) == 0xBB && (bytes.get(start + 2) & 0xFF) == 0xBF) {
+            start += 3;
+        }
+        this.byteStart = start;
+        this.byteEnd = bytes.limit();
+        this.cursorByte = start;
+        this.checkpointBytes[0] = start;
+    }
+
+    public static Utf8Sequence map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if(channel.size() > Integer.MAX_VALUE) throw new IOException(file + " is too large to map");
+            return new Utf8Sequence(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    // Counted once without decoding, every code point but the supplementary ones is one char
+    @Override
+    public int length() {
+        if(length == -1) {
+            int count = 0;
+            for(int offset = byteStart ; offset < byteEnd ; ) {
+                int width = width(offset);
+                count += width == 4 ? 2 : 1;
+                offset += width;
+            }
+            length = count;
+        }
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if(index < 0) throw new IndexOutOfBoundsException("index " + index);
+        seek(index);
+        if(cursorByte >= byteEnd) throw new IndexOutOfBoundsException("index " + index);
+
+        int lead = bytes.get(cursorByte);
+        if(lead >= 0) return (char) lead;
+        int codePoint = decode(cursorByte);
+        if(codePoint < Character.MIN_SUPPLEMENTARY_CODE_POINT) return (char) codePoint;
+        return index == cursorChar ? Character.highSurrogate(codePoint) : Character.lowSurrogate(codePoint);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if(start < 0 || end < start) throw new IndexOutOfBoundsException("range " + start + ", " + end);
+        StringBuilder builder = new StringBuilder(end - start);
+        for(int i = start ; i < end ; i++) {
+            builder.append(charAt(i));
+        }
+        return builder.toString();
+    }
+
+    @Override
+    public String toString() {
+        return subSequence(0, length()).toString();
+    }
+
+    // Moves the cursor to the code point holding the character. Short moves back, like to the start of the
+    // token just read, step over code points backwards, longer ones restart from the nearest checkpoint
+    private void seek(int index) {
+        if(index < cursorChar) {
+            if(cursorChar - index <= CHECKPOINT_INTERVAL) {
+                while (cursorChar > index) {
+                    int width = previousWidth(cursorByte);
+                    cursorByte -= width;
+                    cursorChar -= width == 4 ? 2 : 1;
+                }
+                return;
+            }
+
+            int checkpoint = Math.min(index / CHECKPOINT_INTERVAL, checkpointCount - 1);
+            // A supplementary character may have pushed the boundary one past the interval
+            if(checkpointChars[checkpoint] > index) checkpoint--;
+            cursorChar = checkpointChars[checkpoint];
+            cursorByte = checkpointBytes[checkpoint];
+        }
+
+        while (cursorByte < byteEnd) {
+            int width = width(cursorByte);
+            int units = width == 4 ? 2 : 1;
+            if(index < cursorChar + units) return;
+
+            cursorByte += width;
+            cursorChar += units;
+            if(cursorChar >= checkpointCount * CHECKPOINT_INTERVAL) {
+                if(checkpointCount == checkpointChars.length) {
+                    checkpointChars = Arrays.copyOf(checkpointChars, checkpointCount * 2);
+                    checkpointBytes = Arrays.copyOf(checkpointBytes, checkpointCount * 2);
+                }
+                checkpointChars[checkpointCount] = cursorChar;
+                checkpointBytes[checkpointCount] = cursorByte;
+                checkpointCount++;
+            }
+        }
+    }
+
+    // Bytes taken by the sequence starting at the offset, 1 for a malformed, overlong or out of range one
+    private int width(int offset) {
+        int lead = bytes.get(offset) & 0xFF;
+        int width;
+        if(lead < 0x80) return 1;
+        else if(lead >= 0xC2 && lead < 0xE0) width = 2;
+        else if(lead >= 0xE0 && lead < 0xF0) width = 3;
+        else if(lead >= 0xF0 && lead < 0xF5) width = 4;
+        else return 1;
+
+        if(offset + width > byteEnd) return 1;
+        for(int i = 1 ; i < width ; i++) {
+            if((bytes.get(offset + i) & 0xC0) != 0x80) return 1;
+        }
+        int second = bytes.get(offset + 1) & 0xFF;
+        // Overlong forms, UTF-16 surrogates and code points past U+10FFFF
+        if(lead == 0xE0 && second < 0xA0 || lead == 0xED && second > 0x9F
+                || lead == 0xF0 && second < 0x90 || lead == 0xF4 && second > 0x8F) {
+            return 1;
+        }
+        return width;
+    }
+
+    // Bytes taken by the sequence ending at the offset. Lead bytes are never continuation bytes, so a valid
+    // sequence ending there is the one forward decoding found, otherwise the last byte stood alone
+    private int previousWidth(int offset) {
+        if(bytes.get(offset - 1) >= 0) return 1;
+        for(int width = 2 ; width <= 4 && offset - width >= byteStart ; width++) {
+            if(width(offset - width) == width) return width;
+        }
+        return 1;
+    }
+
+    private int decode(int offset) {
+        int lead = bytes.get(offset) & 0xFF;
+        switch (width(offset)) {
+            case 2: return (lead & 0x1F) << 6 | continuation(offset + 1);
+            case 3: return (lead & 0x0F) << 12 | continuation(offset + 1) << 6 | continuation(offset + 2);
+            case 4: return (lead & 0x07) << 18 | continuation(offset + 1) << 12 | continuation(offset + 2) << 6 | continuation(offset + 3);
+            default: return REPLACEMENT;
+        }
+    }
+
+    private int continuation(int offset) {
+        return bytes.get(offset) & 0x3F;
+    }
+}
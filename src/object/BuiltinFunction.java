@@ -1,19 +1,25 @@
 package object;
 
 import java.util.List;
+import java.util.function.BiFunction;
 import java.util.function.Function;
 
 public class BuiltinFunction extends KongObject{
 
-    private final Function<List<KongObject>, KongObject> function;
+    private final BiFunction<CallContext, List<KongObject>, KongObject> function;
 
     public BuiltinFunction(Function<List<KongObject>, KongObject> function) {
+        this((context, args) -> function.apply(args));
+    }
+
+    // For builtins taking functions as arguments, they call them through the context of the caller
+    public BuiltinFunction(BiFunction<CallContext, List<KongObject>, KongObject> function) {
         super(ObjectType.BUILTIN);
         this.function = function;
     }
 
-    public Function<List<KongObject>, KongObject> getFunction() {
-        return function;
+    public KongObject apply(CallContext context, List<KongObject> args) {
+        return function.apply(context, args);
     }
 
     @Override
@@ -0,0 +1,265 @@
+package object;
+
+import java.io.PrintWriter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+public class Builtins {
+
+    private static final Map<String, BuiltinFunction> builtinFunctionsMap = new HashMap<>();
+
+    public static BuiltinFunction lookup(String name) {
+        return builtinFunctionsMap.get(name);
+    }
+
+    private static KongError newError(String format, Object... args) {
+        return new KongError(format, args);
+    }
+
+    private static final Function<List<KongObject>, KongObject> builtinStringLength = args -> {
+        if(args.size() != 1) {
+            return newError("wrong number of arguments. got=%d, want=1", args.size());
+        }
+
+        switch (args.get(0).getObjectType()) {
+            case STRING: {
+                int length = ((KongString) args.get(0)).getLength();
+                return KongInteger.valueOf(length);
+            }
+            case ARRAY: {
+                KongArray value = ((KongArray)args.get(0));
+                int length = value.getElements().size();
+                return KongInteger.valueOf(length);
+            }
+            default: {
+                return newError("argument to `len` not supported, got %s", args.get(0).getObjectType());
+            }
+        }
+    };
+
+    private static final Function<List<KongObject>, KongObject> builtinArrayPush = args -> {
+        if(args.size() != 2) {
+            return newError("wrong number of arguments. got=%d, want=2", args.size());
+        }
+
+        if(args.get(0).getObjectType() != ObjectType.ARRAY) {
+            return newError("argument to `push` must be ARRAY, got %s", args.get(0).getObjectType());
+        }
+
+        // Arrays are persistent, the new array shares all but one path of its storage with the old one
+        KongArray array = (KongArray) args.get(0);
+        return new KongArray(array.getElements().push(args.get(1)));
+    };
+
+    private static final Function<List<KongObject>, KongObject> builtinArrayFirst = args -> {
+        if(args.size() != 1) {
+            return newError("wrong number of arguments. got=%d, want=1", args.size());
+        }
+
+        if(args.get(0).getObjectType() != ObjectType.ARRAY) {
+            return newError("argument to `first` must be ARRAY, got %s", args.get(0).getObjectType());
+        }
+
+        PersistentVector elements = ((KongArray) args.get(0)).getElements();
+        if(elements.isEmpty()) return KongNull.NULL;
+        return elements.get(0);
+    };
+
+    private static final Function<List<KongObject>, KongObject> builtinArrayLast = args -> {
+        if(args.size() != 1) {
+            return newError("wrong number of arguments. got=%d, want=1", args.size());
+        }
+
+        if(args.get(0).getObjectType() != ObjectType.ARRAY) {
+            return newError("argument to `last` must be ARRAY, got %s", args.get(0).getObjectType());
+        }
+
+        PersistentVector elements = ((KongArray) args.get(0)).getElements();
+        if(elements.isEmpty()) return KongNull.NULL;
+        return elements.get(elements.size() - 1);
+    };
+
+    private static final Function<List<KongObject>, KongObject> builtinArrayRest = args -> {
+        if(args.size() != 1) {
+            return newError("wrong number of arguments. got=%d, want=1", args.size());
+        }
+
+        if(args.get(0).getObjectType() != ObjectType.ARRAY) {
+            return newError("argument to `rest` must be ARRAY, got %s", args.get(0).getObjectType());
+        }
+
+        PersistentVector elements = ((KongArray) args.get(0)).getElements();
+        if(elements.isEmpty()) return KongNull.NULL;
+        return new KongArray(elements.slice(1, elements.size()));
+    };
+
+    private static final BiFunction<CallContext, List<KongObject>, KongObject> builtinPrintln = (context, args) -> {
+        PrintWriter output = context.getOutput();
+        for(KongObject arg : args) {
+            if(output != null) {
+                output.println(arg.inspect());
+            } else {
+                System.out.println(arg.inspect());
+            }
+        }
+        return KongNull.NULL;
+    };
+
+    private static final BiFunction<CallContext, List<KongObject>, KongObject> builtinParallelMap = (context, args) -> {
+        if(args.size() != 2) {
+            return newError("wrong number of arguments. got=%d, want=2", args.size());
+        }
+
+        if(args.get(0).getObjectType() != ObjectType.ARRAY) {
+            return newError("argument to `pmap` must be ARRAY, got %s", args.get(0).getObjectType());
+        }
+
+        if(!isCallable(args.get(1))) {
+            return newError("argument to `pmap` must be FUNCTION, got %s", args.get(1).getObjectType());
+        }
+
+        return Parallel.map(context, ((KongArray) args.get(0)).getElements(), args.get(1));
+    };
+
+    private static final BiFunction<CallContext, List<KongObject>, KongObject> builtinParallelFilter = (context, args) -> {
+        if(args.size() != 2) {
+            return newError("wrong number of arguments. got=%d, want=2", args.size());
+        }
+
+        if(args.get(0).getObjectType() != ObjectType.ARRAY) {
+            return newError("argument to `pfilter` must be ARRAY, got %s", args.get(0).getObjectType());
+        }
+
+        if(!isCallable(args.get(1))) {
+            return newError("argument to `pfilter` must be FUNCTION, got %s", args.get(1).getObjectType());
+        }
+
+        return Parallel.filter(context, ((KongArray) args.get(0)).getElements(), args.get(1));
+    };
+
+    private static final BiFunction<CallContext, List<KongObject>, KongObject> builtinParallelReduce = (context, args) -> {
+        if(args.size() != 3) {
+            return newError("wrong number of arguments. got=%d, want=3", args.size());
+        }
+
+        if(args.get(0).getObjectType() != ObjectType.ARRAY) {
+            return newError("argument to `preduce` must be ARRAY, got %s", args.get(0).getObjectType());
+        }
+
+        if(!isCallable(args.get(2))) {
+            return newError("argument to `preduce` must be FUNCTION, got %s", args.get(2).getObjectType());
+        }
+
+        return Parallel.reduce(context, ((KongArray) args.get(0)).getElements(), args.get(1), args.get(2));
+    };
+
+    private static boolean isCallable(KongObject object) {
+        return object instanceof KongFunction || object instanceof KongClosure || object instanceof BuiltinFunction;
+    }
+
+    private static final Function<List<KongObject>, KongObject> builtinMemo = args -> {
+        if(args.size() != 1 && args.size() != 2) {
+            return newError("wrong number of arguments. got=%d, want=1 or 2", args.size());
+        }
+
+        int capacity = MemoCache.DEFAULT_CAPACITY;
+        if(args.size() == 2) {
+            if(args.get(1).getObjectType() != ObjectType.INTEGER || ((KongInteger) args.get(1)).getValue() < 1) {
+                return newError("capacity of `memo` must be a positive INTEGER, got %s", args.get(1).inspect());
+            }
+            capacity = (int) Math.min(Integer.MAX_VALUE, ((KongInteger) args.get(1)).getValue());
+        }
+
+        KongObject function = args.get(0);
+        if(function instanceof KongFunction) {
+            KongFunction kongFunction = (KongFunction) function;
+            return new KongFunction(kongFunction.getLiteral(), kongFunction.getEnvironment(), new MemoCache(capacity));
+        }
+        if(function instanceof KongClosure) {
+            KongClosure closure = (KongClosure) function;
+            return new KongClosure(closure.getFunction(), closure.getOuterLocals(), closure.getOuter(), new MemoCache(capacity));
+        }
+        return newError("argument to `memo` must be FUNCTION, got %s", function.getObjectType());
+    };
+
+    private static final Function<List<KongObject>, KongObject> builtinMemoStats = args -> {
+        if(args.size() != 1) {
+            return newError("wrong number of arguments. got=%d, want=1", args.size());
+        }
+
+        MemoCache cache = null;
+        if(args.get(0) instanceof KongFunction) cache = ((KongFunction) args.get(0)).getMemoCache();
+        else if(args.get(0) instanceof KongClosure) cache = ((KongClosure) args.get(0)).getMemoCache();
+        if(cache == null) {
+            return newError("argument to `memo_stats` must be a memoized FUNCTION, got %s", args.get(0).getObjectType());
+        }
+
+        PersistentMap pairs = PersistentMap.EMPTY;
+        pairs = putStat(pairs, "hits", cache.getHits());
+        pairs = putStat(pairs, "misses", cache.getMisses());
+        pairs = putStat(pairs, "evictions", cache.getEvictions());
+        pairs = putStat(pairs, "size", cache.size());
+        return new KongMap(pairs);
+    };
+
+    private static PersistentMap putStat(PersistentMap pairs, String name, long value) {
+        return pairs.assoc(new KongString(name), KongInteger.valueOf(value));
+    }
+
+    private static final Function<List<KongObject>, KongObject> builtinMapAssoc = args -> {
+        if(args.size() != 3) {
+            return newError("wrong number of arguments. got=%d, want=3", args.size());
+        }
+
+        if(args.get(0).getObjectType() != ObjectType.MAP) {
+            return newError("argument to `assoc` must be MAP, got %s", args.get(0).getObjectType());
+        }
+
+        KongObject key = args.get(1);
+        if(!(key instanceof Hashable)) {
+            return newError("unusable as hash key: %s", key.getObjectType());
+        }
+
+        // Maps are persistent, the new map shares all but one path of its trie with the old one
+        PersistentMap pairs = ((KongMap) args.get(0)).getPairs();
+        return new KongMap(pairs.assoc(key, args.get(2)));
+    };
+
+    private static final Function<List<KongObject>, KongObject> builtinMapDissoc = args -> {
+        if(args.size() != 2) {
+            return newError("wrong number of arguments. got=%d, want=2", args.size());
+        }
+
+        if(args.get(0).getObjectType() != ObjectType.MAP) {
+            return newError("argument to `dissoc` must be MAP, got %s", args.get(0).getObjectType());
+        }
+
+        KongObject key = args.get(1);
+        if(!(key instanceof Hashable)) {
+            return newError("unusable as hash key: %s", key.getObjectType());
+        }
+
+        KongMap map = (KongMap) args.get(0);
+        PersistentMap pairs = map.getPairs().dissoc(key);
+        return pairs == map.getPairs() ? map : new KongMap(pairs);
+    };
+
+    static {
+        builtinFunctionsMap.put("len", new BuiltinFunction(builtinStringLength));
+        builtinFunctionsMap.put("push", new BuiltinFunction(builtinArrayPush));
+        builtinFunctionsMap.put("first", new BuiltinFunction(builtinArrayFirst));
+        builtinFunctionsMap.put("last", new BuiltinFunction(builtinArrayLast));
+        builtinFunctionsMap.put("rest", new BuiltinFunction(builtinArrayRest));
+        builtinFunctionsMap.put("puts", new BuiltinFunction(builtinPrintln));
+        builtinFunctionsMap.put("assoc", new BuiltinFunction(builtinMapAssoc));
+        builtinFunctionsMap.put("dissoc", new BuiltinFunction(builtinMapDissoc));
+        builtinFunctionsMap.put("pmap", new BuiltinFunction(builtinParallelMap));
+        builtinFunctionsMap.put("pfilter", new BuiltinFunction(builtinParallelFilter));
+        builtinFunctionsMap.put("preduce", new BuiltinFunction(builtinParallelReduce));
+        builtinFunctionsMap.put("memo", new BuiltinFunction(builtinMemo));
+        builtinFunctionsMap.put("memo_stats", new BuiltinFunction(builtinMemoStats));
+    }
+}
@@ -0,0 +1,16 @@
+package object;
+
+import java.io.PrintWriter;
+import java.util.List;
+
+// The engine running a builtin, lets it call back into Kong functions
+public interface CallContext {
+
+    KongObject applyFunction(KongObject function, List<KongObject> args);
+
+    // An independent context sharing the same globals, each thread has to call through its own
+    CallContext fork();
+
+    // Where puts writes, null for standard output
+    PrintWriter getOutput();
+}
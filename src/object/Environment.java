@@ -1,32 +1,153 @@
 package object;
 
-import java.util.HashMap;
-import java.util.Map;
+import token.Symbol;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 public class Environment {
 
-    private final Map<String, KongObject> store;
+    private KongObject[] store;
     private final Environment outerEnvironment;
 
+    // Name of each slot of a function frame
+    private final Symbol[] names;
+
+    // Slots of the global environment, which grows as new names get defined. An open addressing table from
+    // name, compared by identity, to slot, sized by the names defined here rather than every name interned
+    private Symbol[] slotNames;
+    private int[] slots;
+    private final List<Symbol> globalNames;
+
+    // Bumped on every assignment to a global slot, caches of global bindings compare against it
+    private int version;
+
     public Environment() {
-        this.store = new HashMap<>();
+        this.store = new KongObject[16];
         this.outerEnvironment = null;
+        this.names = null;
+        this.slotNames = new Symbol[32];
+        this.slots = new int[32];
+        this.globalNames = new ArrayList<>();
     }
 
-    public Environment(Environment outer) {
-        this.store = new HashMap<>();
+    public Environment(Environment outer, Symbol[] names) {
+        this.store = new KongObject[names.length];
         this.outerEnvironment = outer;
+        this.names = names;
+        this.slotNames = null;
+        this.slots = null;
+        this.globalNames = null;
+    }
+
+    // Returns the slot of a global name, adding an empty one if needed
+    public int define(Symbol name) {
+        int index = indexOf(name);
+        if(index != -1) return index;
+
+        index = globalNames.size();
+        if((index + 1) * 2 > slotNames.length) {
+            slotNames = new Symbol[slotNames.length * 2];
+            slots = new int[slotNames.length];
+            for(int i = 0 ; i < index ; i++) {
+                placeSlot(globalNames.get(i), i);
+            }
+        }
+        placeSlot(name, index);
+        globalNames.add(name);
+        if(index == store.length) {
+            store = Arrays.copyOf(store, store.length * 2);
+        }
+        return index;
+    }
+
+    public void set(int index, KongObject value) {
+        store[index] = value;
+        if(outerEnvironment == null) version++;
+    }
+
+    // Unbinds every slot so a self tail call can run in this frame again
+    public void reset() {
+        Arrays.fill(store, null);
+    }
+
+    public KongObject get(int depth, int index) {
+        Environment environment = this;
+        for(int i = 0 ; i < depth ; i++) {
+            environment = environment.outerEnvironment;
+        }
+
+        KongObject object = environment.store[index];
+        if(object == null && environment.outerEnvironment != null) {
+            // Slot not bound yet, the name may still be bound further out
+            object = environment.outerEnvironment.get(environment.nameOf(index));
+        }
+        return object;
     }
 
-    public KongObject set(String name, KongObject value) {
-        return store.put(name, value);
+    public KongObject set(Symbol name, KongObject value) {
+        int index = isGlobal() ? define(name) : indexOf(name);
+        if(index == -1) {
+            throw new IllegalArgumentException("no slot for " + name + " in function environment");
+        }
+        KongObject previous = store[index];
+        store[index] = value;
+        if(isGlobal()) version++;
+        return previous;
     }
 
-    public KongObject get(String name) {
-        KongObject object = store.get(name);
+    public KongObject get(Symbol name) {
+        int index = indexOf(name);
+        KongObject object = index == -1 ? null : store[index];
         if(object == null && outerEnvironment != null) {
             object = outerEnvironment.get(name);
         }
         return object;
     }
+
+    // Global names in slot order, defining them in this order in another environment gives the same slots
+    public List<Symbol> getGlobalNames() {
+        return Collections.unmodifiableList(globalNames);
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public boolean isGlobal() {
+        return outerEnvironment == null;
+    }
+
+    private int indexOf(Symbol name) {
+        if(isGlobal()) {
+            int mask = slotNames.length - 1;
+            for(int i = firstSlot(name, mask) ; slotNames[i] != null ; i = (i + 1) & mask) {
+                if(slotNames[i] == name) return slots[i];
+            }
+            return -1;
+        }
+        for(int i = 0 ; i < names.length ; i++) {
+            if(names[i] == name) return i;
+        }
+        return -1;
+    }
+
+    private void placeSlot(Symbol name, int index) {
+        int mask = slotNames.length - 1;
+        int i = firstSlot(name, mask);
+        while(slotNames[i] != null) i = (i + 1) & mask;
+        slotNames[i] = name;
+        slots[i] = index;
+    }
+
+    private static int firstSlot(Symbol name, int mask) {
+        int hash = name.hashCode();
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    private Symbol nameOf(int index) {
+        return isGlobal() ? globalNames.get(index) : names[index];
+    }
 }
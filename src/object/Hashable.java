@@ -1,5 +1,8 @@
 package object;
 
 public interface Hashable {
-    public KongMapKey getHashKey();
+    // Equal keys have equal hashes, computing it never allocates
+    public int hashKey();
+    // Compares by value, keys of different types are never the same
+    public boolean sameKey(KongObject other);
 }
@@ -4,14 +4,18 @@ import java.util.List;
 
 public class KongArray extends KongObject{
 
-    private final List<KongObject> elements;
+    private final PersistentVector elements;
 
-    public KongArray(List<KongObject> elements) {
+    public KongArray(PersistentVector elements) {
         super(ObjectType.ARRAY);
         this.elements = elements;
     }
 
-    public List<KongObject> getElements() {
+    public KongArray(List<KongObject> elements) {
+        this(PersistentVector.of(elements));
+    }
+
+    public PersistentVector getElements() {
         return elements;
     }
 
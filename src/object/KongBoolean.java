@@ -2,6 +2,9 @@ package object;
 
 public class KongBoolean extends KongObject implements Hashable {
 
+    public static final KongBoolean TRUE = new KongBoolean(true);
+    public static final KongBoolean FALSE = new KongBoolean(false);
+
     private final boolean value;
 
     public KongBoolean(boolean value) {
@@ -20,8 +23,12 @@ public class KongBoolean extends KongObject implements Hashable {
     }
 
     @Override
-    public KongMapKey getHashKey() {
-        int hash = value ? 1 : 0;
-        return new KongMapKey(ObjectType.BOOLEAN, hash);
+    public int hashKey() {
+        return value ? 1 : 0;
+    }
+
+    @Override
+    public boolean sameKey(KongObject other) {
+        return other instanceof KongBoolean && ((KongBoolean) other).value == value;
     }
 }
@@ -0,0 +1,49 @@
+package object;
+
+public class KongClosure extends KongObject {
+
+    private final KongCompiledFunction function;
+
+    // Locals of the frame that created this closure, shared by reference
+    private final KongObject[] outerLocals;
+
+    // Closure of the frame that created this closure
+    private final KongClosure outer;
+
+    // Results of earlier calls, only set on closures returned by the memo builtin
+    private final MemoCache memoCache;
+
+    public KongClosure(KongCompiledFunction function, KongObject[] outerLocals, KongClosure outer) {
+        this(function, outerLocals, outer, null);
+    }
+
+    public KongClosure(KongCompiledFunction function, KongObject[] outerLocals, KongClosure outer, MemoCache memoCache) {
+        // Reported as a plain function so both engines produce the same messages
+        super(ObjectType.FUNCTION);
+        this.function = function;
+        this.outerLocals = outerLocals;
+        this.outer = outer;
+        this.memoCache = memoCache;
+    }
+
+    public KongCompiledFunction getFunction() {
+        return function;
+    }
+
+    public KongObject[] getOuterLocals() {
+        return outerLocals;
+    }
+
+    public KongClosure getOuter() {
+        return outer;
+    }
+
+    public MemoCache getMemoCache() {
+        return memoCache;
+    }
+
+    @Override
+    public String inspect() {
+        return function.inspect();
+    }
+}
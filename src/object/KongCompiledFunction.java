@@ -0,0 +1,82 @@
+package object;
+
+import ast.FunctionLiteral;
+import token.Symbol;
+
+public class KongCompiledFunction extends KongObject {
+
+    private final byte[] instructions;
+    private final int numLocals;
+    private final int numParameters;
+    private final int maxStack;
+
+    // True when the body creates closures, the locals are then kept in a shared heap array
+    private final boolean capturesLocals;
+
+    // Name of every local slot, used when a slot is read before it was bound
+    private final Symbol[] localNames;
+
+    // Source literal, null for the main program
+    private final FunctionLiteral literal;
+
+    public KongCompiledFunction(byte[] instructions, int numLocals, int numParameters, int maxStack,
+                                boolean capturesLocals, Symbol[] localNames, FunctionLiteral literal) {
+        super(ObjectType.COMPILED_FUNCTION);
+        this.instructions = instructions;
+        this.numLocals = numLocals;
+        this.numParameters = numParameters;
+        this.maxStack = maxStack;
+        this.capturesLocals = capturesLocals;
+        this.localNames = localNames;
+        this.literal = literal;
+    }
+
+    public byte[] getInstructions() {
+        return instructions;
+    }
+
+    public int getNumLocals() {
+        return numLocals;
+    }
+
+    public int getNumParameters() {
+        return numParameters;
+    }
+
+    public int getMaxStack() {
+        return maxStack;
+    }
+
+    public boolean capturesLocals() {
+        return capturesLocals;
+    }
+
+    public Symbol[] getLocalNames() {
+        return localNames;
+    }
+
+    public FunctionLiteral getLiteral() {
+        return literal;
+    }
+
+    @Override
+    public String inspect() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("fn");
+        builder.append("(");
+        if(literal != null) {
+            for(int i = 0 ; i < literal.getParameters().size() ; i++) {
+                builder.append(literal.getParameters().get(i).toString());
+                if(i != (literal.getParameters().size() - 1)) {
+                    builder.append(", ");
+                }
+            }
+        }
+        builder.append(") {\n");
+        if(literal != null) {
+            builder.append(literal.getBody().toString());
+        }
+        builder.append("}");
+        return builder.toString();
+    }
+}
@@ -2,19 +2,31 @@ package object;
 
 public class KongError extends KongObject {
 
-    private final String message;
+    // Most errors are only checked and passed on, the message is formatted the first time it is read
+    private final String format;
+    private final Object[] args;
+    private String message;
 
     public KongError(String message) {
         super(ObjectType.ERROR);
+        this.format = null;
+        this.args = null;
         this.message = message;
     }
 
+    public KongError(String format, Object... args) {
+        super(ObjectType.ERROR);
+        this.format = format;
+        this.args = args;
+    }
+
     public String getMessage() {
+        if(message == null) message = String.format(format, args);
         return message;
     }
 
     @Override
     public String inspect() {
-        return "ERROR: " + message;
+        return "ERROR: " + getMessage();
     }
 }
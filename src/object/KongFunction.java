@@ -2,37 +2,53 @@ package object;
 
 
 import ast.BlockStatement;
+import ast.FunctionLiteral;
 import ast.Identifier;
 
 import java.util.List;
 
 public class KongFunction extends KongObject {
 
-    private final List<Identifier> parameters;
-    private final BlockStatement body;
+    private final FunctionLiteral literal;
     private final Environment environment;
 
-    public KongFunction(List<Identifier> parameters, BlockStatement body, Environment environment) {
+    // Results of earlier calls, only set on functions returned by the memo builtin
+    private final MemoCache memoCache;
+
+    public KongFunction(FunctionLiteral literal, Environment environment) {
+        this(literal, environment, null);
+    }
+
+    public KongFunction(FunctionLiteral literal, Environment environment, MemoCache memoCache) {
         super(ObjectType.FUNCTION);
-        this.parameters = parameters;
-        this.body = body;
+        this.literal = literal;
         this.environment = environment;
+        this.memoCache = memoCache;
+    }
+
+    public FunctionLiteral getLiteral() {
+        return literal;
     }
 
     public List<Identifier> getParameters() {
-        return parameters;
+        return literal.getParameters();
     }
 
     public BlockStatement getBody() {
-        return body;
+        return literal.getBody();
     }
 
     public Environment getEnvironment() {
         return environment;
     }
 
+    public MemoCache getMemoCache() {
+        return memoCache;
+    }
+
     @Override
     public String inspect() {
+        List<Identifier> parameters = getParameters();
         StringBuilder builder = new StringBuilder();
         builder.append("fn");
         builder.append("(");
@@ -43,7 +59,7 @@ public class KongFunction extends KongObject {
             }
         }
         builder.append(") {\n");
-        builder.append(body.toString());
+        builder.append(literal.isBodyParsed() ? getBody().toString() : "...");
         builder.append("}");
         return builder.toString();
     }
@@ -2,6 +2,17 @@ package object;
 
 public class KongInteger extends KongObject implements Hashable{
 
+    // Canonical instances of the values loop counters, indexes and lengths usually take
+    private static final int CACHE_LOW = -128;
+    private static final int CACHE_HIGH = 1024;
+    private static final KongInteger[] cache = new KongInteger[CACHE_HIGH - CACHE_LOW + 1];
+
+    static {
+        for(int i = 0 ; i < cache.length ; i++) {
+            cache[i] = new KongInteger(i + CACHE_LOW);
+        }
+    }
+
     private final long value;
 
     public KongInteger(long value) {
@@ -9,6 +20,11 @@ public class KongInteger extends KongObject implements Hashable{
         this.value = value;
     }
 
+    public static KongInteger valueOf(long value) {
+        if(value >= CACHE_LOW && value <= CACHE_HIGH) return cache[(int) value - CACHE_LOW];
+        return new KongInteger(value);
+    }
+
     public long getValue() {
         return value;
     }
@@ -19,7 +35,12 @@ public class KongInteger extends KongObject implements Hashable{
     }
 
     @Override
-    public KongMapKey getHashKey() {
-        return new KongMapKey(ObjectType.INTEGER, (int) value);
+    public int hashKey() {
+        return (int) (value ^ (value >>> 32));
+    }
+
+    @Override
+    public boolean sameKey(KongObject other) {
+        return other instanceof KongInteger && ((KongInteger) other).value == value;
     }
 }
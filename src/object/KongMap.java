@@ -1,17 +1,15 @@
 package object;
 
-import java.util.Map;
-
 public class KongMap extends KongObject{
 
-    private final Map<KongMapKey, KongMapPair> pairs;
+    private final PersistentMap pairs;
 
-    public KongMap(Map<KongMapKey, KongMapPair> pairs) {
+    public KongMap(PersistentMap pairs) {
         super(ObjectType.MAP);
         this.pairs = pairs;
     }
 
-    public Map<KongMapKey, KongMapPair> getPairs() {
+    public PersistentMap getPairs() {
         return pairs;
     }
 
@@ -21,10 +19,10 @@ public class KongMap extends KongObject{
         builder.append("{");
         int counter = 0;
         int len = pairs.size() - 1;
-        for(Map.Entry<KongMapKey, KongMapPair> pair : pairs.entrySet()) {
-            builder.append(pair.getValue().getKey().inspect());
+        for(KongMapPair pair : pairs) {
+            builder.append(pair.getKey().inspect());
             builder.append(":");
-            builder.append(pair.getValue().getValue().inspect());
+            builder.append(pair.getValue().inspect());
             if(counter++ < len) builder.append(", ");
         }
         builder.append("}");
@@ -2,6 +2,8 @@ package object;
 
 public class KongNull extends KongObject{
 
+    public static final KongNull NULL = new KongNull();
+
     public KongNull() {
         super(ObjectType.NULL);
     }
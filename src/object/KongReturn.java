@@ -1,20 +1,16 @@
 package object;
 
+// Signals that a return statement ran, the evaluator holds the returned value so no wrapper is allocated per return
 public class KongReturn extends KongObject{
 
-    private final KongObject value;
+    public static final KongReturn RETURN = new KongReturn();
 
-    public KongReturn(KongObject value) {
+    private KongReturn() {
         super(ObjectType.RETURN);
-        this.value = value;
-    }
-
-    public KongObject getValue() {
-        return value;
     }
 
     @Override
     public String inspect() {
-        return value.inspect();
+        return "return";
     }
 }
@@ -1,25 +1,93 @@
 package object;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
+
 public class KongString extends KongObject implements Hashable{
 
-    private final String value;
+    // Pieces shorter than this are copied right away, a tree node costs more than copying them
+    private static final int MIN_ROPE_LENGTH = 64;
+
+    // Either the flat String or the Concat node of a concatenation not flattened yet,
+    // flattening replaces the node so the pieces can be collected
+    private volatile Object content;
+    private final int length;
 
     public KongString(String value) {
         super(ObjectType.STRING);
-        this.value = value;
+        this.content = value;
+        this.length = value.length();
+    }
+
+    private KongString(KongString left, KongString right) {
+        super(ObjectType.STRING);
+        this.content = new Concat(left, right);
+        this.length = left.length + right.length;
+    }
+
+    // O(1), the characters are only copied once the result is indexed, compared, hashed or printed
+    public KongString concat(KongString other) {
+        if(other.length == 0) return this;
+        if(length == 0) return other;
+        if(length + other.length < MIN_ROPE_LENGTH) return new KongString(getValue() + other.getValue());
+        return new KongString(this, other);
     }
 
     public String getValue() {
+        Object current = content;
+        if(current instanceof String) return (String) current;
+
+        String value = flatten((Concat) current);
+        content = value;
         return value;
     }
 
+    public int getLength() {
+        return length;
+    }
+
     @Override
     public String inspect() {
-        return value;
+        return getValue();
     }
 
     @Override
-    public KongMapKey getHashKey() {
-        return new KongMapKey(ObjectType.STRING, value.hashCode());
+    public int hashKey() {
+        return getValue().hashCode();
+    }
+
+    @Override
+    public boolean sameKey(KongObject other) {
+        return other instanceof KongString && ((KongString) other).getValue().equals(getValue());
+    }
+
+    // Walks the tree with an explicit stack, ropes built in a loop are as deep as the number of pieces
+    private String flatten(Concat root) {
+        StringBuilder builder = new StringBuilder(length);
+        Deque<KongString> pending = new ArrayDeque<>();
+        pending.push(root.right);
+        pending.push(root.left);
+        while(!pending.isEmpty()) {
+            Object piece = pending.pop().content;
+            if(piece instanceof String) {
+                builder.append((String) piece);
+            } else {
+                Concat concat = (Concat) piece;
+                pending.push(concat.right);
+                pending.push(concat.left);
+            }
+        }
+        return builder.toString();
+    }
+
+    private static class Concat {
+
+        private final KongString left;
+        private final KongString right;
+
+        Concat(KongString left, KongString right) {
+            this.left = left;
+            this.right = right;
+        }
     }
 }
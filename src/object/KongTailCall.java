@@ -0,0 +1,29 @@
+package object;
+
+import java.util.List;
+
+// A call in tail position, returned to the caller's applyFunction which runs it without growing the stack
+public class KongTailCall extends KongObject {
+
+    private final KongFunction function;
+    private final List<KongObject> arguments;
+
+    public KongTailCall(KongFunction function, List<KongObject> arguments) {
+        super(ObjectType.TAIL_CALL);
+        this.function = function;
+        this.arguments = arguments;
+    }
+
+    public KongFunction getFunction() {
+        return function;
+    }
+
+    public List<KongObject> getArguments() {
+        return arguments;
+    }
+
+    @Override
+    public String inspect() {
+        return function.inspect();
+    }
+}
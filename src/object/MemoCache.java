@@ -0,0 +1,107 @@
+package object;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Bounded cache of the results of a memoized function, the least recently used entry is evicted first
+public class MemoCache {
+
+    public static final int DEFAULT_CAPACITY = 10000;
+
+    private final int capacity;
+    private final Map<Key, KongObject> results;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public MemoCache(int capacity) {
+        this.capacity = capacity;
+        this.results = new LinkedHashMap<Key, KongObject>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, KongObject> eldest) {
+                if(size() <= MemoCache.this.capacity) return false;
+                evictions++;
+                return true;
+            }
+        };
+    }
+
+    public synchronized KongObject get(Key key) {
+        KongObject result = results.get(key);
+        if(result != null) hits++;
+        else misses++;
+        return result;
+    }
+
+    public synchronized void put(Key key, KongObject result) {
+        results.put(key, result);
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized int size() {
+        return results.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    // Arguments of one call, compared by value
+    public static class Key {
+
+        private final KongObject[] values;
+        private final int hash;
+
+        private Key(KongObject[] values) {
+            this.values = values;
+            int hash = 1;
+            for(KongObject value : values) {
+                hash = 31 * hash + ((Hashable) value).hashKey();
+            }
+            this.hash = hash;
+        }
+
+        // Returns null when an argument can not be used as a key, such calls are not cached
+        public static Key of(List<KongObject> args) {
+            return of(args.toArray(new KongObject[0]), 0, args.size());
+        }
+
+        public static Key of(KongObject[] args, int from, int to) {
+            for(int i = from ; i < to ; i++) {
+                if(!(args[i] instanceof Hashable)) return null;
+            }
+            return new Key(Arrays.copyOfRange(args, from, to));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key that = (Key) o;
+            if(hash != that.hash || values.length != that.values.length) return false;
+            for(int i = 0 ; i < values.length ; i++) {
+                if(!((Hashable) values[i]).sameKey(that.values[i])) return false;
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -9,6 +9,8 @@ public enum ObjectType {
     MAP,
     NULL,
     RETURN,
+    TAIL_CALL,
     ERROR,
     BUILTIN,
+    COMPILED_FUNCTION,
 }
@@ -0,0 +1,217 @@
+package object;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+// Applies Kong functions to array elements on a fork join pool. Every leaf task calls them through its own
+// forked context, arrays shorter than the threshold run on the calling context instead
+public class Parallel {
+
+    // Leaves smaller than this are not worth a forked context
+    private static final int MIN_CHUNK = 64;
+
+    private static volatile int parallelism = Integer.getInteger("kong.parallelism", Runtime.getRuntime().availableProcessors());
+    private static volatile int threshold = Integer.getInteger("kong.parallel.threshold", 1024);
+    private static ForkJoinPool pool;
+
+    // Runs in progress per pool, a pool replaced by setParallelism is shut down once its last run ends
+    private static final Map<ForkJoinPool, Integer> runs = new IdentityHashMap<>();
+
+    public static int getParallelism() {
+        return parallelism;
+    }
+
+    public static synchronized void setParallelism(int parallelism) {
+        if(parallelism < 1) throw new IllegalArgumentException("parallelism must be positive, got " + parallelism);
+        Parallel.parallelism = parallelism;
+        if(pool != null) {
+            if(!runs.containsKey(pool)) pool.shutdown();
+            pool = null;
+        }
+    }
+
+    public static int getThreshold() {
+        return threshold;
+    }
+
+    public static void setThreshold(int threshold) {
+        Parallel.threshold = threshold;
+    }
+
+    public static KongObject map(CallContext context, PersistentVector elements, KongObject function) {
+        KongObject[] results = new KongObject[elements.size()];
+        KongError error = run(context, elements, (leafContext, from, to) -> {
+            for(int i = from ; i < to ; i++) {
+                KongObject result = leafContext.applyFunction(function, singletonList(elements.get(i)));
+                if(result instanceof KongError) return (KongError) result;
+                results[i] = result;
+            }
+            return null;
+        });
+        if(error != null) return error;
+        return new KongArray(Arrays.asList(results));
+    }
+
+    public static KongObject filter(CallContext context, PersistentVector elements, KongObject function) {
+        boolean[] keep = new boolean[elements.size()];
+        KongError error = run(context, elements, (leafContext, from, to) -> {
+            for(int i = from ; i < to ; i++) {
+                KongObject result = leafContext.applyFunction(function, singletonList(elements.get(i)));
+                if(result instanceof KongError) return (KongError) result;
+                keep[i] = isTruthy(result);
+            }
+            return null;
+        });
+        if(error != null) return error;
+
+        List<KongObject> kept = new ArrayList<>();
+        for(int i = 0 ; i < keep.length ; i++) {
+            if(keep[i]) kept.add(elements.get(i));
+        }
+        return new KongArray(kept);
+    }
+
+    // The function has to be associative, chunks are reduced on their own and their results combined afterwards
+    public static KongObject reduce(CallContext context, PersistentVector elements, KongObject initial, KongObject function) {
+        if(elements.size() < threshold || parallelism == 1) {
+            return fold(context, elements, 0, elements.size(), initial, function);
+        }
+
+        KongObject total = invoke(new ReduceTask(context, elements, 0, elements.size(), chunkSize(elements.size()), function));
+        if(total instanceof KongError) return total;
+        return context.applyFunction(function, Arrays.asList(initial, total));
+    }
+
+    private static KongObject fold(CallContext context, PersistentVector elements, int from, int to,
+                                   KongObject accumulator, KongObject function) {
+        for(int i = from ; i < to ; i++) {
+            accumulator = context.applyFunction(function, Arrays.asList(accumulator, elements.get(i)));
+            if(accumulator instanceof KongError) return accumulator;
+        }
+        return accumulator;
+    }
+
+    private static KongError run(CallContext context, PersistentVector elements, Chunk chunk) {
+        int size = elements.size();
+        if(size < threshold || parallelism == 1) return chunk.process(context, 0, size);
+        return invoke(new ChunkTask(context, chunk, 0, size, chunkSize(size)));
+    }
+
+    // A few chunks per worker so idle workers can steal from busy ones
+    private static int chunkSize(int size) {
+        return Math.max(MIN_CHUNK, size / (parallelism * 4));
+    }
+
+    private static <T> T invoke(ForkJoinTask<T> task) {
+        ForkJoinPool current = startRun();
+        try {
+            return current.invoke(task);
+        } finally {
+            endRun(current);
+        }
+    }
+
+    private static synchronized ForkJoinPool startRun() {
+        if(pool == null) pool = new ForkJoinPool(parallelism);
+        runs.merge(pool, 1, Integer::sum);
+        return pool;
+    }
+
+    private static synchronized void endRun(ForkJoinPool runPool) {
+        int left = runs.merge(runPool, -1, Integer::sum);
+        if(left > 0) return;
+
+        runs.remove(runPool);
+        if(runPool != pool) runPool.shutdown();
+    }
+
+    private static List<KongObject> singletonList(KongObject element) {
+        List<KongObject> args = new ArrayList<>(1);
+        args.add(element);
+        return args;
+    }
+
+    private static boolean isTruthy(KongObject object) {
+        return object != KongNull.NULL && object != KongBoolean.FALSE;
+    }
+
+    private interface Chunk {
+        // Returns the first error raised in the range or null
+        KongError process(CallContext context, int from, int to);
+    }
+
+    private static class ChunkTask extends RecursiveTask<KongError> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final CallContext context;
+        private final Chunk chunk;
+        private final int from;
+        private final int to;
+        private final int chunkSize;
+
+        ChunkTask(CallContext context, Chunk chunk, int from, int to, int chunkSize) {
+            this.context = context;
+            this.chunk = chunk;
+            this.from = from;
+            this.to = to;
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        protected KongError compute() {
+            if(to - from <= chunkSize) return chunk.process(context.fork(), from, to);
+
+            int middle = (from + to) >>> 1;
+            ChunkTask right = new ChunkTask(context, chunk, middle, to, chunkSize);
+            right.fork();
+            KongError leftError = new ChunkTask(context, chunk, from, middle, chunkSize).compute();
+            KongError rightError = right.join();
+            // The error of the lowest index wins, like in a sequential run
+            return leftError != null ? leftError : rightError;
+        }
+    }
+
+    private static class ReduceTask extends RecursiveTask<KongObject> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final CallContext context;
+        private final PersistentVector elements;
+        private final int from;
+        private final int to;
+        private final int chunkSize;
+        private final KongObject function;
+
+        ReduceTask(CallContext context, PersistentVector elements, int from, int to, int chunkSize, KongObject function) {
+            this.context = context;
+            this.elements = elements;
+            this.from = from;
+            this.to = to;
+            this.chunkSize = chunkSize;
+            this.function = function;
+        }
+
+        @Override
+        protected KongObject compute() {
+            if(to - from <= chunkSize) {
+                return fold(context.fork(), elements, from + 1, to, elements.get(from), function);
+            }
+
+            int middle = (from + to) >>> 1;
+            ReduceTask right = new ReduceTask(context, elements, middle, to, chunkSize, function);
+            right.fork();
+            KongObject left = new ReduceTask(context, elements, from, middle, chunkSize, function).compute();
+            KongObject rightResult = right.join();
+            if(left instanceof KongError) return left;
+            if(rightResult instanceof KongError) return rightResult;
+            return context.fork().applyFunction(function, Arrays.asList(left, rightResult));
+        }
+    }
+}
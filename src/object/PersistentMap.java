@@ -0,0 +1,456 @@
+package object;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+// Immutable map from hashable Kong values, iterated in insertion order.
+// Small maps are one open addressing table, larger ones a hash array mapped trie where every level consumes
+// 5 bits of the key hash and versions share untouched nodes, so assoc and dissoc copy O(log32 n) nodes
+public class PersistentMap implements Iterable<KongMapPair> {
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    // Copying a table of this many entries is cheaper than walking and copying a path of the trie
+    private static final int FLAT_LIMIT = 16;
+
+    public static final PersistentMap EMPTY = new PersistentMap(FlatTable.EMPTY, null, 0, 0);
+
+    // Exactly one of flat and root is set
+    private final FlatTable flat;
+    private final Node root;
+    private final int size;
+
+    // Insertion order of the next key added to the trie
+    private final int nextSequence;
+
+    private PersistentMap(FlatTable flat, Node root, int size, int nextSequence) {
+        this.flat = flat;
+        this.root = root;
+        this.size = size;
+        this.nextSequence = nextSequence;
+    }
+
+    // The key must be Hashable
+    public KongObject get(KongObject key) {
+        int hash = hashOf(key);
+        if(flat != null) {
+            int entry = flat.find(hash, key);
+            return entry == -1 ? null : flat.values[entry];
+        }
+        return root.find(0, hash, key);
+    }
+
+    public PersistentMap assoc(KongObject key, KongObject value) {
+        int hash = hashOf(key);
+        if(flat != null) {
+            int entry = flat.find(hash, key);
+            if(entry != -1) {
+                if(flat.values[entry] == value) return this;
+                return new PersistentMap(flat.withValue(entry, value), null, size, 0);
+            }
+            if(size < FLAT_LIMIT) return new PersistentMap(flat.with(hash, key, value), null, size + 1, 0);
+            return toTrie().assoc(key, value);
+        }
+
+        Change change = new Change();
+        Node newRoot = root.assoc(0, hash, key, value, nextSequence, change);
+        if(newRoot == root) return this;
+        if(!change.added) return new PersistentMap(null, newRoot, size, nextSequence);
+        return new PersistentMap(null, newRoot, size + 1, nextSequence + 1);
+    }
+
+    public PersistentMap dissoc(KongObject key) {
+        int hash = hashOf(key);
+        if(flat != null) {
+            int entry = flat.find(hash, key);
+            if(entry == -1) return this;
+            if(size == 1) return EMPTY;
+            return new PersistentMap(flat.without(entry), null, size - 1, 0);
+        }
+
+        Node newRoot = root.dissoc(0, hash, key);
+        if(newRoot == root) return this;
+        if(newRoot == null) return EMPTY;
+        return new PersistentMap(null, newRoot, size - 1, nextSequence);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // Pairs are only created while iterating, the map itself stores keys and values directly
+    @Override
+    public Iterator<KongMapPair> iterator() {
+        final KongObject[] keys;
+        final KongObject[] values;
+        if(flat != null) {
+            keys = flat.keys;
+            values = flat.values;
+        } else {
+            keys = new KongObject[size];
+            values = new KongObject[size];
+            collectInOrder(keys, values);
+        }
+
+        return new Iterator<KongMapPair>() {
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                return index < size;
+            }
+
+            @Override
+            public KongMapPair next() {
+                if(index >= size) throw new NoSuchElementException();
+                KongMapPair pair = new KongMapPair(keys[index], values[index]);
+                index++;
+                return pair;
+            }
+        };
+    }
+
+    private PersistentMap toTrie() {
+        Node node = BitmapNode.EMPTY;
+        Change change = new Change();
+        for(int i = 0 ; i < size ; i++) {
+            node = node.assoc(0, flat.hashes[i], flat.keys[i], flat.values[i], i, change);
+        }
+        return new PersistentMap(null, node, size, size);
+    }
+
+    private void collectInOrder(KongObject[] keys, KongObject[] values) {
+        KongObject[] unorderedKeys = new KongObject[size];
+        KongObject[] unorderedValues = new KongObject[size];
+        long[] order = new long[size];
+        root.collect(unorderedKeys, unorderedValues, order, 0);
+
+        // Each element holds the insertion sequence in the high half and the collected position in the low half
+        Arrays.sort(order);
+        for(int i = 0 ; i < size ; i++) {
+            int position = (int) order[i];
+            keys[i] = unorderedKeys[position];
+            values[i] = unorderedValues[position];
+        }
+    }
+
+    private static int hashOf(KongObject key) {
+        int hash = ((Hashable) key).hashKey();
+        return hash ^ (hash >>> 16);
+    }
+
+    private static int bitOf(int hash, int shift) {
+        return 1 << ((hash >>> shift) & MASK);
+    }
+
+    private static Object[] insertEntry(Object[] array, int entry, Object key, Object value) {
+        Object[] copy = new Object[array.length + 2];
+        System.arraycopy(array, 0, copy, 0, 2 * entry);
+        copy[2 * entry] = key;
+        copy[2 * entry + 1] = value;
+        System.arraycopy(array, 2 * entry, copy, 2 * (entry + 1), array.length - 2 * entry);
+        return copy;
+    }
+
+    private static Object[] removeEntry(Object[] array, int entry) {
+        Object[] copy = new Object[array.length - 2];
+        System.arraycopy(array, 0, copy, 0, 2 * entry);
+        System.arraycopy(array, 2 * (entry + 1), copy, 2 * entry, copy.length - 2 * entry);
+        return copy;
+    }
+
+    private static int[] insertSequence(int[] sequences, int entry, int sequence) {
+        int[] copy = new int[sequences.length + 1];
+        System.arraycopy(sequences, 0, copy, 0, entry);
+        copy[entry] = sequence;
+        System.arraycopy(sequences, entry, copy, entry + 1, sequences.length - entry);
+        return copy;
+    }
+
+    private static int[] removeSequence(int[] sequences, int entry) {
+        int[] copy = new int[sequences.length - 1];
+        System.arraycopy(sequences, 0, copy, 0, entry);
+        System.arraycopy(sequences, entry + 1, copy, entry, copy.length - entry);
+        return copy;
+    }
+
+    private static Object[] cloneAndSet(Object[] array, int index, Object value) {
+        Object[] copy = array.clone();
+        copy[index] = value;
+        return copy;
+    }
+
+    // Entries live in insertion order in parallel arrays, slots holds entry + 1 for every used slot.
+    // A lookup probes linearly from the hash and compares keys by value only when the full hashes match
+    private static class FlatTable {
+
+        private static final FlatTable EMPTY = new FlatTable(new int[0], new KongObject[0], new KongObject[0]);
+
+        private final int[] hashes;
+        private final KongObject[] keys;
+        private final KongObject[] values;
+        private final byte[] slots;
+
+        FlatTable(int[] hashes, KongObject[] keys, KongObject[] values) {
+            this(hashes, keys, values, slotsFor(hashes));
+        }
+
+        private FlatTable(int[] hashes, KongObject[] keys, KongObject[] values, byte[] slots) {
+            this.hashes = hashes;
+            this.keys = keys;
+            this.values = values;
+            this.slots = slots;
+        }
+
+        int find(int hash, KongObject key) {
+            int mask = slots.length - 1;
+            for(int slot = hash & mask ; ; slot = (slot + 1) & mask) {
+                int entry = slots[slot] - 1;
+                if(entry < 0) return -1;
+                if(hashes[entry] == hash && ((Hashable) key).sameKey(keys[entry])) return entry;
+            }
+        }
+
+        FlatTable with(int hash, KongObject key, KongObject value) {
+            int length = hashes.length;
+            int[] newHashes = Arrays.copyOf(hashes, length + 1);
+            KongObject[] newKeys = Arrays.copyOf(keys, length + 1);
+            KongObject[] newValues = Arrays.copyOf(values, length + 1);
+            newHashes[length] = hash;
+            newKeys[length] = key;
+            newValues[length] = value;
+            return new FlatTable(newHashes, newKeys, newValues);
+        }
+
+        FlatTable withValue(int entry, KongObject value) {
+            KongObject[] newValues = values.clone();
+            newValues[entry] = value;
+            return new FlatTable(hashes, keys, newValues, slots);
+        }
+
+        FlatTable without(int entry) {
+            int length = hashes.length - 1;
+            int[] newHashes = new int[length];
+            KongObject[] newKeys = new KongObject[length];
+            KongObject[] newValues = new KongObject[length];
+            System.arraycopy(hashes, 0, newHashes, 0, entry);
+            System.arraycopy(hashes, entry + 1, newHashes, entry, length - entry);
+            System.arraycopy(keys, 0, newKeys, 0, entry);
+            System.arraycopy(keys, entry + 1, newKeys, entry, length - entry);
+            System.arraycopy(values, 0, newValues, 0, entry);
+            System.arraycopy(values, entry + 1, newValues, entry, length - entry);
+            return new FlatTable(newHashes, newKeys, newValues);
+        }
+
+        // At most half of the slots are used so probe sequences stay short
+        private static byte[] slotsFor(int[] hashes) {
+            byte[] slots = new byte[Integer.highestOneBit(Math.max(1, hashes.length) * 2 - 1) << 1];
+            int mask = slots.length - 1;
+            for(int entry = 0 ; entry < hashes.length ; entry++) {
+                int slot = hashes[entry] & mask;
+                while(slots[slot] != 0) slot = (slot + 1) & mask;
+                slots[slot] = (byte) (entry + 1);
+            }
+            return slots;
+        }
+    }
+
+    // Set when an assoc added a key instead of replacing the value of an existing one
+    private static class Change {
+        private boolean added;
+    }
+
+    private interface Node {
+        KongObject find(int shift, int hash, KongObject key);
+        Node assoc(int shift, int hash, KongObject key, KongObject value, int sequence, Change change);
+        // Returns null when the node became empty
+        Node dissoc(int shift, int hash, KongObject key);
+        // Stores the entries from position on, returns the position after the last one
+        int collect(KongObject[] keys, KongObject[] values, long[] order, int position);
+    }
+
+    // Entries are stored as key and value, or as null and the child node holding the keys sharing this hash slot.
+    // Sequences holds the insertion order of each entry and is unused for children
+    private static class BitmapNode implements Node {
+
+        private static final BitmapNode EMPTY = new BitmapNode(0, new Object[0], new int[0]);
+
+        private final int bitmap;
+        private final Object[] array;
+        private final int[] sequences;
+
+        BitmapNode(int bitmap, Object[] array, int[] sequences) {
+            this.bitmap = bitmap;
+            this.array = array;
+            this.sequences = sequences;
+        }
+
+        private int entryOf(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        @Override
+        public KongObject find(int shift, int hash, KongObject key) {
+            int bit = bitOf(hash, shift);
+            if((bitmap & bit) == 0) return null;
+
+            int entry = entryOf(bit);
+            Object entryKey = array[2 * entry];
+            Object entryValue = array[2 * entry + 1];
+            if(entryKey == null) return ((Node) entryValue).find(shift + BITS, hash, key);
+            return ((Hashable) key).sameKey((KongObject) entryKey) ? (KongObject) entryValue : null;
+        }
+
+        @Override
+        public Node assoc(int shift, int hash, KongObject key, KongObject value, int sequence, Change change) {
+            int bit = bitOf(hash, shift);
+            int entry = entryOf(bit);
+            if((bitmap & bit) == 0) {
+                change.added = true;
+                return new BitmapNode(bitmap | bit, insertEntry(array, entry, key, value),
+                        insertSequence(sequences, entry, sequence));
+            }
+
+            Object entryKey = array[2 * entry];
+            Object entryValue = array[2 * entry + 1];
+            if(entryKey == null) {
+                Node child = ((Node) entryValue).assoc(shift + BITS, hash, key, value, sequence, change);
+                if(child == entryValue) return this;
+                return new BitmapNode(bitmap, cloneAndSet(array, 2 * entry + 1, child), sequences);
+            }
+            if(((Hashable) key).sameKey((KongObject) entryKey)) {
+                if(value == entryValue) return this;
+                return new BitmapNode(bitmap, cloneAndSet(array, 2 * entry + 1, value), sequences);
+            }
+
+            change.added = true;
+            Node child = createNode(shift + BITS, (KongObject) entryKey, (KongObject) entryValue, sequences[entry],
+                    hash, key, value, sequence);
+            Object[] newArray = cloneAndSet(array, 2 * entry, null);
+            newArray[2 * entry + 1] = child;
+            return new BitmapNode(bitmap, newArray, sequences);
+        }
+
+        @Override
+        public Node dissoc(int shift, int hash, KongObject key) {
+            int bit = bitOf(hash, shift);
+            if((bitmap & bit) == 0) return this;
+
+            int entry = entryOf(bit);
+            Object entryKey = array[2 * entry];
+            Object entryValue = array[2 * entry + 1];
+            if(entryKey == null) {
+                Node child = ((Node) entryValue).dissoc(shift + BITS, hash, key);
+                if(child == entryValue) return this;
+                if(child != null) return new BitmapNode(bitmap, cloneAndSet(array, 2 * entry + 1, child), sequences);
+            } else if(!((Hashable) key).sameKey((KongObject) entryKey)) {
+                return this;
+            }
+
+            if(bitmap == bit) return null;
+            return new BitmapNode(bitmap ^ bit, removeEntry(array, entry), removeSequence(sequences, entry));
+        }
+
+        @Override
+        public int collect(KongObject[] keys, KongObject[] values, long[] order, int position) {
+            for(int entry = 0 ; entry < sequences.length ; entry++) {
+                Object entryKey = array[2 * entry];
+                Object entryValue = array[2 * entry + 1];
+                if(entryKey == null) {
+                    position = ((Node) entryValue).collect(keys, values, order, position);
+                } else {
+                    keys[position] = (KongObject) entryKey;
+                    values[position] = (KongObject) entryValue;
+                    order[position] = ((long) sequences[entry] << 32) | position;
+                    position++;
+                }
+            }
+            return position;
+        }
+
+        private static Node createNode(int shift, KongObject firstKey, KongObject firstValue, int firstSequence,
+                                       int secondHash, KongObject secondKey, KongObject secondValue, int secondSequence) {
+            int firstHash = hashOf(firstKey);
+            if(firstHash == secondHash) {
+                return new CollisionNode(firstHash, new Object[] { firstKey, firstValue, secondKey, secondValue },
+                        new int[] { firstSequence, secondSequence });
+            }
+            Change change = new Change();
+            return EMPTY.assoc(shift, firstHash, firstKey, firstValue, firstSequence, change)
+                    .assoc(shift, secondHash, secondKey, secondValue, secondSequence, change);
+        }
+    }
+
+    // Keys whose whole hash is equal, searched linearly and compared by value
+    private static class CollisionNode implements Node {
+
+        private final int hash;
+        private final Object[] array;
+        private final int[] sequences;
+
+        CollisionNode(int hash, Object[] array, int[] sequences) {
+            this.hash = hash;
+            this.array = array;
+            this.sequences = sequences;
+        }
+
+        private int entryOf(KongObject key) {
+            for(int entry = 0 ; entry < sequences.length ; entry++) {
+                if(((Hashable) key).sameKey((KongObject) array[2 * entry])) return entry;
+            }
+            return -1;
+        }
+
+        @Override
+        public KongObject find(int shift, int hash, KongObject key) {
+            if(hash != this.hash) return null;
+            int entry = entryOf(key);
+            return entry == -1 ? null : (KongObject) array[2 * entry + 1];
+        }
+
+        @Override
+        public Node assoc(int shift, int hash, KongObject key, KongObject value, int sequence, Change change) {
+            if(hash != this.hash) {
+                // Nest this node one level down next to the new key
+                BitmapNode parent = new BitmapNode(bitOf(this.hash, shift), new Object[] { null, this }, new int[1]);
+                return parent.assoc(shift, hash, key, value, sequence, change);
+            }
+
+            int entry = entryOf(key);
+            if(entry != -1) {
+                if(array[2 * entry + 1] == value) return this;
+                return new CollisionNode(hash, cloneAndSet(array, 2 * entry + 1, value), sequences);
+            }
+
+            change.added = true;
+            return new CollisionNode(hash, insertEntry(array, sequences.length, key, value),
+                    insertSequence(sequences, sequences.length, sequence));
+        }
+
+        @Override
+        public Node dissoc(int shift, int hash, KongObject key) {
+            if(hash != this.hash) return this;
+            int entry = entryOf(key);
+            if(entry == -1) return this;
+            if(sequences.length == 1) return null;
+            return new CollisionNode(hash, removeEntry(array, entry), removeSequence(sequences, entry));
+        }
+
+        @Override
+        public int collect(KongObject[] keys, KongObject[] values, long[] order, int position) {
+            for(int entry = 0 ; entry < sequences.length ; entry++) {
+                keys[position] = (KongObject) array[2 * entry];
+                values[position] = (KongObject) array[2 * entry + 1];
+                order[position] = ((long) sequences[entry] << 32) | position;
+                position++;
+            }
+            return position;
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package object;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+// Immutable vector made of a 32 way trie plus a tail holding the last elements, versions share every untouched node.
+// Appending and indexing are O(log32 n), a slice is a window over the storage of the vector it was taken from until it
+// covers less than half of that storage, then its elements are copied so the rest can be collected.
+// While every element is an integer the leaves are long arrays, storing anything else boxes them once
+public class PersistentVector extends AbstractList<KongObject> implements RandomAccess {
+
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+
+    private static final Object[] EMPTY_NODE = new Object[WIDTH];
+
+    public static final PersistentVector EMPTY = new PersistentVector(0, BITS, EMPTY_NODE, new long[0], 0, 0, true);
+
+    // Number of elements in the trie and the tail, a window may see only part of them
+    private final int count;
+    private final int shift;
+    private final Object[] root;
+    private final Object tail;
+
+    private final int start;
+    private final int size;
+
+    // Leaves and tail are long[] holding integer values instead of Object[] holding elements
+    private final boolean primitive;
+
+    private PersistentVector(int count, int shift, Object[] root, Object tail, int start, int size, boolean primitive) {
+        this.count = count;
+        this.shift = shift;
+        this.root = root;
+        this.tail = tail;
+        this.start = start;
+        this.size = size;
+        this.primitive = primitive;
+    }
+
+    public static PersistentVector of(List<? extends KongObject> elements) {
+        if(elements instanceof PersistentVector) return (PersistentVector) elements;
+
+        int length = elements.size();
+        if(length == 0) return EMPTY;
+
+        boolean primitive = true;
+        for(KongObject element : elements) {
+            if(!(element instanceof KongInteger)) {
+                primitive = false;
+                break;
+            }
+        }
+
+        // Whole leaves are moved into the trie at once instead of growing the tail one element at a time
+        PersistentVector vector = null;
+        for(int from = 0 ; from < length ; from += WIDTH) {
+            int to = Math.min(from + WIDTH, length);
+            Object leaf = primitive ? unbox(elements.subList(from, to)) : elements.subList(from, to).toArray();
+            vector = appendLeaf(vector, leaf, to - from, primitive);
+        }
+        return vector;
+    }
+
+    private static PersistentVector appendLeaf(PersistentVector vector, Object leaf, int length, boolean primitive) {
+        if(vector == null) return new PersistentVector(length, BITS, EMPTY_NODE, leaf, 0, length, primitive);
+        return vector.replaceFullTail(leaf, length);
+    }
+
+    @Override
+    public KongObject get(int index) {
+        if(index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index " + index + " out of range for length " + size);
+        }
+        int position = start + index;
+        Object leaf = leafFor(position);
+        if(primitive) return KongInteger.valueOf(((long[]) leaf)[position & MASK]);
+        return (KongObject) ((Object[]) leaf)[position & MASK];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    public PersistentVector push(KongObject value) {
+        if(primitive && !(value instanceof KongInteger)) return boxed().push(value);
+
+        int position = start + size;
+        // The storage slot after a window belongs to the vector it was sliced from, write a copy of its path
+        if(position < count) {
+            return new PersistentVector(count, shift, assoc(position, value), tailWith(position, value), start, size + 1, primitive);
+        }
+
+        int tailLength = count - tailOffset();
+        if(tailLength < WIDTH) {
+            Object newTail = primitive ? Arrays.copyOf((long[]) tail, tailLength + 1) : Arrays.copyOf((Object[]) tail, tailLength + 1);
+            return new PersistentVector(count + 1, shift, root, leafWith(newTail, tailLength, value), start, size + 1, primitive);
+        }
+        Object newTail = primitive ? new long[1] : new Object[1];
+        return replaceFullTail(leafWith(newTail, 0, value), 1);
+    }
+
+    public PersistentVector update(int index, KongObject value) {
+        if(index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index " + index + " out of range for length " + size);
+        }
+        if(primitive && !(value instanceof KongInteger)) return boxed().update(index, value);
+
+        int position = start + index;
+        return new PersistentVector(count, shift, assoc(position, value), tailWith(position, value), start, size, primitive);
+    }
+
+    public PersistentVector slice(int from, int to) {
+        if(from < 0 || to > size || from > to) {
+            throw new IndexOutOfBoundsException("slice " + from + ".." + to + " out of range for length " + size);
+        }
+        if(from == to) return EMPTY;
+        // Copying once the window is under half the storage keeps repeated rest() linear overall
+        if(count > WIDTH && to - from < count >>> 1) return copyOf(start + from, to - from);
+        return new PersistentVector(count, shift, root, tail, start + from, to - from, primitive);
+    }
+
+    // New vector holding only the elements at positions [from, from + length) of this storage
+    private PersistentVector copyOf(int from, int length) {
+        PersistentVector vector = null;
+        for(int offset = 0 ; offset < length ; offset += WIDTH) {
+            int leafLength = Math.min(WIDTH, length - offset);
+            Object leaf = primitive ? new long[leafLength] : new Object[leafLength];
+            for(int copied = 0 ; copied < leafLength ; ) {
+                int position = from + offset + copied;
+                int run = Math.min(WIDTH - (position & MASK), leafLength - copied);
+                System.arraycopy(leafFor(position), position & MASK, leaf, copied, run);
+                copied += run;
+            }
+            vector = appendLeaf(vector, leaf, leafLength, primitive);
+        }
+        return vector;
+    }
+
+    private int tailOffset() {
+        return count < WIDTH ? 0 : ((count - 1) >>> BITS) << BITS;
+    }
+
+    private Object leafFor(int position) {
+        if(position >= tailOffset()) return tail;
+
+        Object node = root;
+        for(int level = shift ; level > 0 ; level -= BITS) {
+            node = ((Object[]) node)[(position >>> level) & MASK];
+        }
+        return node;
+    }
+
+    // Moves the full tail into the trie and starts a new tail of the given length
+    private PersistentVector replaceFullTail(Object newTail, int newTailLength) {
+        Object[] newRoot;
+        int newShift = shift;
+        if((count >>> BITS) > (1 << shift)) {
+            newRoot = new Object[WIDTH];
+            newRoot[0] = root;
+            newRoot[1] = newPath(shift, tail);
+            newShift += BITS;
+        } else {
+            newRoot = pushTail(shift, root, tail);
+        }
+        int newCount = count + newTailLength;
+        return new PersistentVector(newCount, newShift, newRoot, newTail, start, newCount - start, primitive);
+    }
+
+    private Object[] pushTail(int level, Object[] parent, Object leaf) {
+        int index = ((count - 1) >>> level) & MASK;
+        Object[] node = parent.clone();
+        if(level == BITS) {
+            node[index] = leaf;
+        } else {
+            Object[] child = (Object[]) parent[index];
+            node[index] = child != null ? pushTail(level - BITS, child, leaf) : newPath(level - BITS, leaf);
+        }
+        return node;
+    }
+
+    private static Object newPath(int level, Object leaf) {
+        if(level == 0) return leaf;
+        Object[] node = new Object[WIDTH];
+        node[0] = newPath(level - BITS, leaf);
+        return node;
+    }
+
+    private Object[] assoc(int position, KongObject value) {
+        return position >= tailOffset() ? root : (Object[]) assoc(shift, root, position, value);
+    }
+
+    private Object assoc(int level, Object node, int position, KongObject value) {
+        if(level == 0) return leafWith(copyOfLeaf(node), position & MASK, value);
+
+        Object[] copy = ((Object[]) node).clone();
+        int index = (position >>> level) & MASK;
+        copy[index] = assoc(level - BITS, copy[index], position, value);
+        return copy;
+    }
+
+    private Object tailWith(int position, KongObject value) {
+        if(position < tailOffset()) return tail;
+        return leafWith(copyOfLeaf(tail), position & MASK, value);
+    }
+
+    private Object copyOfLeaf(Object leaf) {
+        return primitive ? ((long[]) leaf).clone() : ((Object[]) leaf).clone();
+    }
+
+    // Stores value into a leaf nobody else sees yet
+    private Object leafWith(Object leaf, int index, KongObject value) {
+        if(primitive) ((long[]) leaf)[index] = ((KongInteger) value).getValue();
+        else ((Object[]) leaf)[index] = value;
+        return leaf;
+    }
+
+    // Copy of this vector with every leaf holding boxed elements
+    private PersistentVector boxed() {
+        return new PersistentVector(count, shift, (Object[]) box(shift, root), box(0, tail), start, size, false);
+    }
+
+    private static Object box(int level, Object node) {
+        if(level == 0) {
+            long[] values = (long[]) node;
+            Object[] leaf = new Object[values.length];
+            for(int i = 0 ; i < values.length ; i++) {
+                leaf[i] = KongInteger.valueOf(values[i]);
+            }
+            return leaf;
+        }
+
+        Object[] children = ((Object[]) node).clone();
+        for(int i = 0 ; i < children.length ; i++) {
+            if(children[i] != null) children[i] = box(level - BITS, children[i]);
+        }
+        return children;
+    }
+
+    private static long[] unbox(List<? extends KongObject> elements) {
+        long[] leaf = new long[elements.size()];
+        for(int i = 0 ; i < leaf.length ; i++) {
+            leaf[i] = ((KongInteger) elements.get(i)).getValue();
+        }
+        return leaf;
+    }
+}
@@ -0,0 +1,197 @@
+package optimizer;
+
+import ast.*;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Copies the tree bottom up, nodes whose children did not change are returned as they are. Nodes and lists
+// the parser left null for malformed input stay null
+public abstract class AstRewriter implements OptimizationPass, StatementVisitor<Statement>, ExpressionVisitor<Expression> {
+
+    @Override
+    public Program optimize(Program program) {
+        return (Program) program.accept(this);
+    }
+
+    @Override
+    public Statement visit(Program statement) {
+        List<Statement> statements = rewriteStatements(statement.getStatements());
+        if(statements == statement.getStatements()) return statement;
+        return new Program(statements);
+    }
+
+    @Override
+    public Statement visit(LetStatement statement) {
+        Expression value = rewrite(statement.getValue());
+        if(value == statement.getValue()) return statement;
+        return new LetStatement(statement.getName(), value);
+    }
+
+    @Override
+    public Statement visit(ReturnStatement statement) {
+        Expression value = rewrite(statement.getReturnValue());
+        if(value == statement.getReturnValue()) return statement;
+        return new ReturnStatement(value);
+    }
+
+    @Override
+    public Statement visit(ExpressionStatement statement) {
+        Expression expression = rewrite(statement.getExpression());
+        if(expression == statement.getExpression()) return statement;
+        return new ExpressionStatement(expression);
+    }
+
+    @Override
+    public Statement visit(BlockStatement statement) {
+        List<Statement> statements = rewriteStatements(statement.getStatements());
+        if(statements == statement.getStatements()) return statement;
+        return new BlockStatement(statements);
+    }
+
+    @Override
+    public Expression visit(Identifier expression) {
+        return expression;
+    }
+
+    @Override
+    public Expression visit(IntegerLiteral expression) {
+        return expression;
+    }
+
+    @Override
+    public Expression visit(StringLiteral expression) {
+        return expression;
+    }
+
+    @Override
+    public Expression visit(BooleanLiteral expression) {
+        return expression;
+    }
+
+    @Override
+    public Expression visit(PrefixExpression expression) {
+        Expression right = rewrite(expression.getRight());
+        if(right == expression.getRight()) return expression;
+        return new PrefixExpression(expression.getOperator(), right);
+    }
+
+    @Override
+    public Expression visit(InfixExpression expression) {
+        Expression left = rewrite(expression.getLeft());
+        Expression right = rewrite(expression.getRight());
+        if(left == expression.getLeft() && right == expression.getRight()) return expression;
+        return new InfixExpression(left, expression.getOperator(), right);
+    }
+
+    @Override
+    public Expression visit(IfExpression expression) {
+        Expression condition = rewrite(expression.getCondition());
+        BlockStatement consequence = rewrite(expression.getConsequence());
+        BlockStatement alternative = rewrite(expression.getAlternative());
+        if(condition == expression.getCondition()
+                && consequence == expression.getConsequence()
+                && alternative == expression.getAlternative()) {
+            return expression;
+        }
+        return new IfExpression(condition, consequence, alternative);
+    }
+
+    @Override
+    public Expression visit(FunctionLiteral expression) {
+        // Bodies left for a lazy parse are run as parsed
+        if(!expression.isBodyParsed()) return expression;
+        BlockStatement body = rewrite(expression.getBody());
+        if(body == expression.getBody()) return expression;
+        return new FunctionLiteral(expression.getParameters(), body);
+    }
+
+    @Override
+    public Expression visit(CallExpression expression) {
+        Expression function = rewrite(expression.getFunction());
+        List<Expression> arguments = rewriteExpressions(expression.getArguments());
+        if(function == expression.getFunction() && arguments == expression.getArguments()) return expression;
+        return new CallExpression(function, arguments);
+    }
+
+    @Override
+    public Expression visit(ArrayLiteral expression) {
+        List<Expression> elements = rewriteExpressions(expression.getElements());
+        if(elements == expression.getElements()) return expression;
+        return new ArrayLiteral(elements);
+    }
+
+    @Override
+    public Expression visit(IndexExpression expression) {
+        Expression left = rewrite(expression.getLeft());
+        Expression index = rewrite(expression.getIndex());
+        if(left == expression.getLeft() && index == expression.getIndex()) return expression;
+        return new IndexExpression(left, index);
+    }
+
+    @Override
+    public Expression visit(MapLiteral expression) {
+        boolean changed = false;
+        // Keeps the iteration order of the original pairs, which is the order they are evaluated in
+        Map<Expression, Expression> pairs = new LinkedHashMap<>();
+        for(Map.Entry<Expression, Expression> pair : expression.getPairs().entrySet()) {
+            Expression key = rewrite(pair.getKey());
+            Expression value = rewrite(pair.getValue());
+            changed |= key != pair.getKey() || value != pair.getValue();
+            pairs.put(key, value);
+        }
+        if(!changed) return expression;
+        return new MapLiteral(pairs);
+    }
+
+    protected List<Statement> rewriteStatements(List<Statement> statements) {
+        if(statements == null) return null;
+        List<Statement> result = null;
+        for(int i = 0 ; i < statements.size() ; i++) {
+            Statement statement = statements.get(i);
+            Statement rewritten = rewrite(statement);
+            if(rewritten != statement && result == null) {
+                result = new ArrayList<>(statements.subList(0, i));
+            }
+            if(result != null) result.add(rewritten);
+        }
+        return result == null ? statements : result;
+    }
+
+    protected BlockStatement rewrite(BlockStatement block) {
+        if(block == null) return null;
+        return (BlockStatement) block.accept(this);
+    }
+
+    protected Statement rewrite(Statement statement) {
+        if(statement == null) return null;
+        return statement.accept(this);
+    }
+
+    protected Expression rewrite(Expression expression) {
+        if(expression == null) return null;
+        return expression.accept(this);
+    }
+
+    private List<Expression> rewriteExpressions(List<Expression> expressions) {
+        if(expressions == null) return null;
+        List<Expression> result = null;
+        for(int i = 0 ; i < expressions.size() ; i++) {
+            Expression expression = expressions.get(i);
+            Expression rewritten = rewrite(expression);
+            if(rewritten != expression && result == null) {
+                result = new ArrayList<>(expressions.subList(0, i));
+            }
+            if(result != null) result.add(rewritten);
+        }
+        return result == null ? expressions : result;
+    }
+
+    protected static boolean isLiteral(Expression expression) {
+        return expression instanceof IntegerLiteral
+                || expression instanceof StringLiteral
+                || expression instanceof BooleanLiteral;
+    }
+}
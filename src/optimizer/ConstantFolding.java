@@ -0,0 +1,72 @@
+package optimizer;
+
+import ast.*;
+import evaluator.Evaluator;
+import object.*;
+
+// Replaces prefix and infix expressions over literals with their value, the evaluator computes it
+// so folded code behaves exactly like the original, expressions that fail or overflow are left for runtime
+public class ConstantFolding extends AstRewriter {
+
+    private final Evaluator evaluator = new Evaluator(new Environment());
+
+    @Override
+    public Expression visit(PrefixExpression expression) {
+        Expression rewritten = super.visit(expression);
+        if(!(rewritten instanceof PrefixExpression)) return rewritten;
+
+        PrefixExpression prefix = (PrefixExpression) rewritten;
+        if(!isLiteral(prefix.getRight())) return prefix;
+        if(prefix.getPrefixOperator() == PrefixOperator.MINUS && prefix.getRight() instanceof IntegerLiteral
+                && ((IntegerLiteral) prefix.getRight()).getValue() == Long.MIN_VALUE) {
+            return prefix;
+        }
+        return fold(prefix);
+    }
+
+    @Override
+    public Expression visit(InfixExpression expression) {
+        Expression rewritten = super.visit(expression);
+        if(!(rewritten instanceof InfixExpression)) return rewritten;
+
+        InfixExpression infix = (InfixExpression) rewritten;
+        if(!isLiteral(infix.getLeft()) || !isLiteral(infix.getRight()) || overflows(infix)) return infix;
+        return fold(infix);
+    }
+
+    // Integer arithmetic wraps around at runtime, a folded literal would hide where that happens
+    private static boolean overflows(InfixExpression infix) {
+        if(!(infix.getLeft() instanceof IntegerLiteral) || !(infix.getRight() instanceof IntegerLiteral)) return false;
+
+        long left = ((IntegerLiteral) infix.getLeft()).getValue();
+        long right = ((IntegerLiteral) infix.getRight()).getValue();
+        try {
+            switch (infix.getInfixOperator()) {
+                case PLUS: Math.addExact(left, right); break;
+                case MINUS: Math.subtractExact(left, right); break;
+                case ASTERISK: Math.multiplyExact(left, right); break;
+                case SLASH: return left == Long.MIN_VALUE && right == -1;
+                default: break;
+            }
+            return false;
+        } catch (ArithmeticException e) {
+            return true;
+        }
+    }
+
+    private Expression fold(Expression expression) {
+        KongObject value;
+        try {
+            value = expression.accept(evaluator);
+        } catch (ArithmeticException e) {
+            return expression;
+        }
+
+        switch (value.getObjectType()) {
+            case INTEGER: return new IntegerLiteral(((KongInteger) value).getValue());
+            case STRING: return new StringLiteral(((KongString) value).getValue());
+            case BOOLEAN: return new BooleanLiteral(value == KongBoolean.TRUE);
+            default: return expression;
+        }
+    }
+}
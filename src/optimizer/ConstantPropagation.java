@@ -0,0 +1,92 @@
+package optimizer;
+
+import ast.*;
+import token.Symbol;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Replaces reads of a name bound once to a literal with the literal, only in the statements after the let
+// in the same block because a read before it or from another block may still see an outer binding.
+// Top level lets are not propagated into functions, a later program can rebind the global they read
+public class ConstantPropagation extends AstRewriter {
+
+    private Map<Symbol, Expression> constants = new HashMap<>();
+    private Map<Symbol, Integer> declarations = new HashMap<>();
+    private boolean insideFunction;
+
+    @Override
+    public Statement visit(Program statement) {
+        declarations = countDeclarations(statement.getStatements(), new ArrayList<>());
+        return super.visit(statement);
+    }
+
+    @Override
+    public Expression visit(Identifier expression) {
+        Expression constant = constants.get(expression.getSymbol());
+        return constant != null ? constant : expression;
+    }
+
+    @Override
+    public Expression visit(FunctionLiteral expression) {
+        if(!expression.isBodyParsed() || expression.getBody() == null) return expression;
+        Map<Symbol, Expression> enclosingConstants = constants;
+        Map<Symbol, Integer> enclosingDeclarations = declarations;
+        boolean enclosingInsideFunction = insideFunction;
+
+        declarations = countDeclarations(expression.getBody().getStatements(), expression.getParameters());
+        constants = new HashMap<>();
+        if(insideFunction) {
+            constants.putAll(enclosingConstants);
+            constants.keySet().removeAll(declarations.keySet());
+        }
+        insideFunction = true;
+        Expression rewritten = super.visit(expression);
+
+        constants = enclosingConstants;
+        declarations = enclosingDeclarations;
+        insideFunction = enclosingInsideFunction;
+        return rewritten;
+    }
+
+    @Override
+    protected List<Statement> rewriteStatements(List<Statement> statements) {
+        if(statements == null) return null;
+        Map<Symbol, Expression> enclosingConstants = constants;
+        constants = new HashMap<>(constants);
+
+        List<Statement> result = null;
+        for(int i = 0 ; i < statements.size() ; i++) {
+            Statement statement = statements.get(i);
+            Statement rewritten = rewrite(statement);
+            if(rewritten != statement && result == null) {
+                result = new ArrayList<>(statements.subList(0, i));
+            }
+            if(result != null) result.add(rewritten);
+
+            if(rewritten instanceof LetStatement) {
+                LetStatement let = (LetStatement) rewritten;
+                Symbol name = let.getName().getSymbol();
+                if(isLiteral(let.getValue()) && declarations.getOrDefault(name, 0) == 1) {
+                    constants.put(name, let.getValue());
+                }
+            }
+        }
+
+        constants = enclosingConstants;
+        return result == null ? statements : result;
+    }
+
+    // Parameters and lets of one function body, nested functions have their own counts
+    private Map<Symbol, Integer> countDeclarations(List<Statement> statements, List<Identifier> parameters) {
+        Map<Symbol, Integer> counts = new HashMap<>();
+        if(parameters == null || statements == null) return counts;
+        for(Identifier parameter : parameters) {
+            counts.merge(parameter.getSymbol(), 1, Integer::sum);
+        }
+        new DeclarationCollector(name -> counts.merge(name, 1, Integer::sum)).collect(statements);
+        return counts;
+    }
+}
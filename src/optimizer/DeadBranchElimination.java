@@ -0,0 +1,93 @@
+package optimizer;
+
+import ast.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Drops the branch of an if whose condition is a literal that can never run. A statement level if is
+// replaced by the statements of the branch that runs, lets are bound per function so blocks add no scope
+public class DeadBranchElimination extends AstRewriter {
+
+    private static final BooleanLiteral TRUE = new BooleanLiteral(true);
+    private static final BooleanLiteral FALSE = new BooleanLiteral(false);
+
+    @Override
+    public Expression visit(IfExpression expression) {
+        Expression rewritten = super.visit(expression);
+        if(!(rewritten instanceof IfExpression)) return rewritten;
+
+        IfExpression ifExpression = (IfExpression) rewritten;
+        Expression condition = ifExpression.getCondition();
+        if(!isLiteral(condition) || isReduced(ifExpression)) return ifExpression;
+
+        BlockStatement branch = isTruthy(condition) ? ifExpression.getConsequence() : ifExpression.getAlternative();
+        if(branch == null) {
+            // Nothing runs and the value is null, which an if without else produces
+            return new IfExpression(FALSE, new BlockStatement(Collections.emptyList()), null);
+        }
+
+        List<Statement> statements = branch.getStatements();
+        if(statements == null) return ifExpression;
+        if(statements.size() == 1 && statements.get(0) instanceof ExpressionStatement) {
+            return ((ExpressionStatement) statements.get(0)).getExpression();
+        }
+        return new IfExpression(TRUE, branch, null);
+    }
+
+    @Override
+    protected List<Statement> rewriteStatements(List<Statement> statements) {
+        List<Statement> rewritten = super.rewriteStatements(statements);
+        if(rewritten == null) return null;
+
+        List<Statement> result = null;
+        int last = rewritten.size() - 1;
+        for(int i = 0 ; i <= last ; i++) {
+            Statement statement = rewritten.get(i);
+            List<Statement> replacement = inline(statement, i == last);
+            if(replacement != null && result == null) {
+                result = new ArrayList<>(rewritten.subList(0, i));
+            }
+            if(result == null) continue;
+
+            if(replacement != null) {
+                result.addAll(replacement);
+            } else {
+                result.add(statement);
+            }
+        }
+        return result == null ? rewritten : result;
+    }
+
+    // Statements that replace a reduced statement level if, null to keep it. The block value must stay
+    // the same, so a branch ending in a let, which has no value, is only inlined when not last
+    private List<Statement> inline(Statement statement, boolean last) {
+        if(!(statement instanceof ExpressionStatement)) return null;
+        Expression expression = ((ExpressionStatement) statement).getExpression();
+        if(!(expression instanceof IfExpression) || !isReduced((IfExpression) expression)) return null;
+
+        IfExpression ifExpression = (IfExpression) expression;
+        List<Statement> statements = ifExpression.getConsequence().getStatements();
+        if(isTruthy(ifExpression.getCondition())) {
+            if(statements.isEmpty() || (last && statements.get(statements.size() - 1) instanceof LetStatement)) {
+                return null;
+            }
+            return statements;
+        }
+        return last ? null : Collections.emptyList();
+    }
+
+    // An if already left with only the branch that runs
+    private boolean isReduced(IfExpression expression) {
+        if(expression.getAlternative() != null) return false;
+        if(expression.getCondition() == TRUE) return true;
+        return expression.getCondition() == FALSE && expression.getConsequence().getStatements().isEmpty();
+    }
+
+    // Only null and false are falsy, every integer and string literal is truthy
+    private boolean isTruthy(Expression literal) {
+        if(literal instanceof BooleanLiteral) return ((BooleanLiteral) literal).isValue();
+        return true;
+    }
+}
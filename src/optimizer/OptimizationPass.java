@@ -0,0 +1,9 @@
+package optimizer;
+
+import ast.Program;
+
+public interface OptimizationPass {
+
+    // Returns the same program instance when nothing was changed
+    Program optimize(Program program);
+}
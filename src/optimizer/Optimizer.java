@@ -0,0 +1,34 @@
+package optimizer;
+
+import ast.Program;
+
+import java.util.Arrays;
+import java.util.List;
+
+// Runs the passes in order until a round leaves the program unchanged, each pass can expose work for the others
+public class Optimizer {
+
+    private static final int MAX_ROUNDS = 8;
+
+    private final List<OptimizationPass> passes;
+
+    public Optimizer() {
+        this(Arrays.asList(new ConstantFolding(), new ConstantPropagation(), new DeadBranchElimination()));
+    }
+
+    public Optimizer(List<OptimizationPass> passes) {
+        this.passes = passes;
+    }
+
+    public Program optimize(Program program) {
+        for(int round = 0 ; round < MAX_ROUNDS ; round++) {
+            Program optimized = program;
+            for(OptimizationPass pass : passes) {
+                optimized = pass.optimize(optimized);
+            }
+            if(optimized == program) break;
+            program = optimized;
+        }
+        return program;
+    }
+}
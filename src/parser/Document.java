@@ -0,0 +1,121 @@
+package parser;
+
+import ast.Program;
+import ast.Statement;
+import lexer.Lexer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// A source together with its parse, for editors and other long lived sessions. Every top level statement keeps
+// the offset it starts at and its parser errors, so an edit only reparses from the statement before it until a
+// statement ends where an old one behind the edit started, everything from there on is the same text and is
+// reused as it is. Reused statements are shared with the old program, resolving one of them resolves both
+public final class Document {
+
+    private final String source;
+    private final List<Entry> entries;
+    private final int reparsed;
+    private final Program program;
+
+    private Document(String source, List<Entry> entries, int reparsed) {
+        this.source = source;
+        this.entries = entries;
+        this.reparsed = reparsed;
+
+        List<Statement> statements = new ArrayList<>(entries.size());
+        for(Entry entry : entries) {
+            if(entry.statement != null) statements.add(entry.statement);
+        }
+        this.program = new Program(statements);
+    }
+
+    public static Document parse(String source) {
+        List<Entry> entries = new ArrayList<>();
+        int reparsed = parseFrom(source, 0, entries, null, 0, 0, 0);
+        return new Document(source, entries, reparsed);
+    }
+
+    // Replaces length characters at offset with text and returns the document of the new source
+    public Document edit(int offset, int length, String text) {
+        if(offset < 0 || length < 0 || offset + length > source.length()) {
+            throw new IndexOutOfBoundsException(String.format("edit of %d at %d in a source of %d", length, offset, source.length()));
+        }
+
+        String edited = source.substring(0, offset) + text + source.substring(offset + length);
+
+        // The statement before the edited one is parsed again too, it looked at the first token after it
+        int first = 0;
+        while (first < entries.size() && entries.get(first).start < offset) first++;
+        first = Math.max(0, first - 2);
+
+        List<Entry> result = new ArrayList<>(entries.subList(0, first));
+        int from = first > 0 ? entries.get(first).start : 0;
+        int reparsed = parseFrom(edited, from, result, this, first, offset + length, text.length() - length);
+        return new Document(edited, result, reparsed);
+    }
+
+    // Parses statements from an offset into entries, stopping at the first one the previous document already
+    // has behind the edit. Returns how many statements were parsed
+    private static int parseFrom(String source, int from, List<Entry> entries,
+                                 Document previous, int next, int editEnd, int delta) {
+        Parser parser = new Parser(new Lexer(source, from).tokenizeOnDemand(), false);
+        int parsed = 0;
+        while (!parser.isAtEnd()) {
+            int start = parser.currentOffset();
+            if(previous != null && start >= editEnd + delta) {
+                int oldStart = start - delta;
+                while (next < previous.entries.size() && previous.entries.get(next).start < oldStart) next++;
+                if(next < previous.entries.size() && previous.entries.get(next).start == oldStart) {
+                    for(int i = next ; i < previous.entries.size() ; i++) {
+                        Entry entry = previous.entries.get(i);
+                        entries.add(new Entry(entry.start + delta, entry.statement, entry.errors));
+                    }
+                    return parsed;
+                }
+            }
+
+            int errorCount = parser.getErrors().size();
+            Statement statement = parser.parseTopLevelStatement();
+            List<String> errors = parser.getErrors();
+            entries.add(new Entry(start, statement, errors.size() == errorCount
+                    ? Collections.<String>emptyList()
+                    : new ArrayList<>(errors.subList(errorCount, errors.size()))));
+            parsed++;
+        }
+        return parsed;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public Program getProgram() {
+        return program;
+    }
+
+    public List<String> getErrors() {
+        List<String> errors = new ArrayList<>();
+        for(Entry entry : entries) errors.addAll(entry.errors);
+        return errors;
+    }
+
+    // Top level statements parsed to build this document, the others were taken from the previous one
+    public int getReparsedCount() {
+        return reparsed;
+    }
+
+    private static class Entry {
+
+        private final int start;
+        private final Statement statement;
+        private final List<String> errors;
+
+        Entry(int start, Statement statement, List<String> errors) {
+            this.start = start;
+            this.statement = statement;
+            this.errors = errors;
+        }
+    }
+}
@@ -2,28 +2,36 @@ package parser;
 
 import ast.*;
 import lexer.Lexer;
-import token.Token;
+import token.Symbol;
+import token.TokenBuffer;
 import token.TokenType;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
 import java.util.function.Function;
-import java.util.function.Supplier;
 
 import static ast.Precedence.*;
 
 public class Parser {
 
-    private final Lexer lexer;
-    private Token currentToken;
-    private Token peekToken;
+    // Tokens of the source as types and offsets, the parser only moves an index through them
+    private final TokenBuffer tokens;
+    private int current;
+
+    // Function bodies are only checked for balanced brackets and parsed the first time they are needed
+    private final boolean lazyFunctions;
     private final List<String> errors;
-    private final Map<TokenType, Supplier<Expression>> prefixParseFns;
-    private final Map<TokenType, Function<Expression, Expression>> infixParseFns;
 
-    private static final Map<TokenType, Precedence> precedences = new HashMap<>();
+    // Built once per process, the parse functions take the parser they run on
+    private static final Map<TokenType, Function<Parser, Expression>> prefixParseFns = new EnumMap<>(TokenType.class);
+    private static final Map<TokenType, BiFunction<Parser, Expression, Expression>> infixParseFns = new EnumMap<>(TokenType.class);
+    private static final Map<TokenType, Precedence> precedences = new EnumMap<>(TokenType.class);
 
     static {
         precedences.put(TokenType.EQ, EQUALS);
@@ -36,54 +44,57 @@ public class Parser {
         precedences.put(TokenType.ASTERISK, PRODUCT);
         precedences.put(TokenType.L_PAREN, CALL);
         precedences.put(TokenType.L_BRACKET, INDEX);
+
+        registerPrefix(TokenType.IDENT, Parser::parseIdentifier);
+        registerPrefix(TokenType.INT, Parser::parseIntegerLiteral);
+        registerPrefix(TokenType.STRING, Parser::parseStringLiteral);
+        registerPrefix(TokenType.BANG, Parser::parsePrefixExpression);
+        registerPrefix(TokenType.MINUS, Parser::parsePrefixExpression);
+        registerPrefix(TokenType.TRUE, Parser::parseBooleanExpression);
+        registerPrefix(TokenType.FALSE, Parser::parseBooleanExpression);
+        registerPrefix(TokenType.L_PAREN, Parser::parseGroupedExpression);
+        registerPrefix(TokenType.IF, Parser::parseIfExpression);
+        registerPrefix(TokenType.FUNCTION, Parser::parseFunctionLiteral);
+        registerPrefix(TokenType.L_BRACKET, Parser::parseArrayLiteral);
+        registerPrefix(TokenType.L_BRACE, Parser::parseMapLiteral);
+
+        registerInfix(TokenType.PLUS, Parser::parseInfixExpression);
+        registerInfix(TokenType.MINUS, Parser::parseInfixExpression);
+        registerInfix(TokenType.SLASH, Parser::parseInfixExpression);
+        registerInfix(TokenType.ASTERISK, Parser::parseInfixExpression);
+        registerInfix(TokenType.EQ, Parser::parseInfixExpression);
+        registerInfix(TokenType.NOT_EQ, Parser::parseInfixExpression);
+        registerInfix(TokenType.LT, Parser::parseInfixExpression);
+        registerInfix(TokenType.GT, Parser::parseInfixExpression);
+        registerInfix(TokenType.L_PAREN, Parser::parseCallExpression);
+        registerInfix(TokenType.L_BRACKET, Parser::parseIndexExpression);
     }
 
     public Parser(Lexer lexer) {
-        this.lexer = lexer;
-        this.errors = new ArrayList<>();
+        this(lexer.tokenize(), false);
+    }
 
-        this.prefixParseFns = new HashMap<>();
-        registerPrefix(TokenType.IDENT, parseIdentifier);
-        registerPrefix(TokenType.INT, parseIntegerLiteral);
-        registerPrefix(TokenType.STRING, parseStringLiteral);
-        registerPrefix(TokenType.BANG, parsePrefixExpression);
-        registerPrefix(TokenType.MINUS, parsePrefixExpression);
-        registerPrefix(TokenType.TRUE, parseBooleanExpression);
-        registerPrefix(TokenType.FALSE, parseBooleanExpression);
-        registerPrefix(TokenType.L_PAREN, parseGroupedExpression);
-        registerPrefix(TokenType.IF, parseIfExpression);
-        registerPrefix(TokenType.FUNCTION, parseFunctionLiteral);
-        registerPrefix(TokenType.L_BRACKET, parseArrayLiteral);
-        registerPrefix(TokenType.L_BRACE, parseMapLiteral);
-
-        this.infixParseFns = new HashMap<>();
-        registerInfix(TokenType.PLUS, parseInfixExpression);
-        registerInfix(TokenType.MINUS, parseInfixExpression);
-        registerInfix(TokenType.SLASH, parseInfixExpression);
-        registerInfix(TokenType.ASTERISK, parseInfixExpression);
-        registerInfix(TokenType.EQ, parseInfixExpression);
-        registerInfix(TokenType.NOT_EQ, parseInfixExpression);
-        registerInfix(TokenType.LT, parseInfixExpression);
-        registerInfix(TokenType.GT, parseInfixExpression);
-        registerInfix(TokenType.L_PAREN, parseCallExpression);
-        registerInfix(TokenType.L_BRACKET, parseIndexExpression);
-
-        // Read two tokens, so curToken and peekToken are both set
-        nextToken();
-        nextToken();
+    public Parser(Lexer lexer, boolean lazyFunctions) {
+        this(lexer.tokenize(), lazyFunctions);
     }
 
-    private void registerPrefix(TokenType tokenType, Supplier<Expression> prefixParseFn) {
+    public Parser(TokenBuffer tokens, boolean lazyFunctions) {
+        this.tokens = tokens;
+        this.lazyFunctions = lazyFunctions;
+        this.errors = new ArrayList<>();
+    }
+
+    private static void registerPrefix(TokenType tokenType, Function<Parser, Expression> prefixParseFn) {
         prefixParseFns.put(tokenType, prefixParseFn);
     }
 
-    private void registerInfix(TokenType tokenType, Function<Expression, Expression> infixParseFn) {
+    private static void registerInfix(TokenType tokenType, BiFunction<Parser, Expression, Expression> infixParseFn) {
         infixParseFns.put(tokenType, infixParseFn);
     }
 
     public Program parseProgram() {
         List<Statement> statements = new ArrayList<>();
-        while (currentToken.getTokenType() != TokenType.EOF) {
+        while (currentTokenType() != TokenType.EOF) {
             Statement statement = parseStatement();
             if(statement != null) {
                 statements.add(statement);
@@ -93,8 +104,25 @@ public class Parser {
         return new Program(statements);
     }
 
+    // Document parses top level statements one at a time and keeps where each of them started
+    boolean isAtEnd() {
+        return currentTokenType() == TokenType.EOF;
+    }
+
+    // A string starts at its opening quote, the token itself only covers what is inside the quotes
+    int currentOffset() {
+        int start = tokens.getStart(current);
+        return currentTokenType() == TokenType.STRING ? start - 1 : start;
+    }
+
+    Statement parseTopLevelStatement() {
+        Statement statement = parseStatement();
+        nextToken();
+        return statement;
+    }
+
     private Statement parseStatement() {
-        switch (currentToken.getTokenType()) {
+        switch (currentTokenType()) {
             case LET: return parseLetStatement();
             case RETURN: return parseReturnStatement();
             default: return parseExpressionStatement();
@@ -106,7 +134,7 @@ public class Parser {
             return null;
         }
 
-        Identifier identifier = new Identifier(currentToken.getLiteral());
+        Identifier identifier = new Identifier(currentSymbol());
         if(!expectPeek(TokenType.ASSIGN)) {
             return null;
         }
@@ -159,19 +187,19 @@ public class Parser {
     }
 
     private Expression parseExpression(Precedence precedence) {
-        Supplier<Expression> prefix = prefixParseFns.get(currentToken.getTokenType());
+        Function<Parser, Expression> prefix = prefixParseFns.get(currentTokenType());
         if(prefix == null) {
-            noPrefixParseFnError(currentToken.getTokenType());
+            noPrefixParseFnError(currentTokenType());
             return null;
         }
 
-        Expression leftExp = prefix.get();
+        Expression leftExp = prefix.apply(this);
 
         while (!peekTokenIs(TokenType.SEMICOLON) && precedence.getRank() < peekPrecedence().getRank()) {
-            Function<Expression, Expression> infix = infixParseFns.get(peekToken.getTokenType());
+            BiFunction<Parser, Expression, Expression> infix = infixParseFns.get(peekTokenType());
             if(infix == null) return leftExp;
             nextToken();
-            leftExp = infix.apply(leftExp);
+            leftExp = infix.apply(this, leftExp);
         }
 
         return leftExp;
@@ -209,13 +237,13 @@ public class Parser {
 
         nextToken();
 
-        Identifier identifier = new Identifier(currentToken.getLiteral());
+        Identifier identifier = new Identifier(currentSymbol());
         identifiers.add(identifier);
 
         while (peekTokenIs(TokenType.COMMA)) {
             nextToken();
             nextToken();
-            Identifier newIdentifier = new Identifier(currentToken.getLiteral());
+            Identifier newIdentifier = new Identifier(currentSymbol());
             identifiers.add(newIdentifier);
         }
 
@@ -224,27 +252,31 @@ public class Parser {
         return identifiers;
     }
 
-    private final Supplier<Expression> parseIdentifier = () -> new Identifier(currentToken.getLiteral());
+    private Expression parseIdentifier() {
+        return new Identifier(currentSymbol());
+    }
 
-    private final Supplier<Expression> parseIntegerLiteral = () -> {
-        long value = Long.parseLong(currentToken.getLiteral());
+    private Expression parseIntegerLiteral() {
+        long value = currentInteger();
         return new IntegerLiteral(value);
-    };
+    }
 
-    private final Supplier<Expression> parseStringLiteral = () -> {
-        return new StringLiteral(currentToken.getLiteral());
-    };
+    private Expression parseStringLiteral() {
+        return new StringLiteral(currentLiteral());
+    }
 
-    private final Supplier<Expression> parsePrefixExpression = () -> {
-        String operator = currentToken.getLiteral();
+    private Expression parsePrefixExpression() {
+        String operator = currentLiteral();
         nextToken();
         Expression right = parseExpression(PREFIX);
         return new PrefixExpression(operator, right);
-    };
+    }
 
-    private final Supplier<Expression> parseBooleanExpression = () -> new BooleanLiteral(currentTokenIs(TokenType.TRUE));
+    private Expression parseBooleanExpression() {
+        return new BooleanLiteral(currentTokenIs(TokenType.TRUE));
+    }
 
-    private final Supplier<Expression> parseGroupedExpression = () -> {
+    private Expression parseGroupedExpression() {
         // Consume Left Paren
         nextToken();
 
@@ -255,9 +287,9 @@ public class Parser {
         }
 
         return expression;
-    };
+    }
 
-    private final Supplier<Expression> parseIfExpression = () -> {
+    private Expression parseIfExpression() {
         if(!expectPeek(TokenType.L_PAREN)) return null;
 
         // consume {
@@ -282,27 +314,96 @@ public class Parser {
         }
 
         return new IfExpression(condition, consequence, alternative);
-    };
+    }
 
-    private final Supplier<Expression> parseFunctionLiteral = () -> {
+    private Expression parseFunctionLiteral() {
         if(!expectPeek(TokenType.L_PAREN)) return null;
 
         List<Identifier> parameters = parseFunctionParameters();
 
         if(!expectPeek(TokenType.L_BRACE)) return null;
 
-        BlockStatement body = parseBlockStatement();
+        return parseFunctionBody(parameters);
+    }
+
+    private FunctionLiteral parseFunctionBody(List<Identifier> parameters) {
+        if(!lazyFunctions) return new FunctionLiteral(parameters, parseBlockStatement());
 
-        return new FunctionLiteral(parameters, body);
-    };
+        int bodyStart = current;
+        if(!skipBody()) return null;
+        int bodyEnd = current;
+        return new FunctionLiteral(parameters, new LazyBody(tokens, bodyStart, bodyEnd));
+    }
+
+    // Moves from the { of a body to its matching }, checking that brackets pair up on the way
+    private boolean skipBody() {
+        TokenType[] closers = new TokenType[16];
+        int depth = 0;
+        do {
+            TokenType type = currentTokenType();
+            if(type == TokenType.L_BRACE || type == TokenType.L_PAREN || type == TokenType.L_BRACKET) {
+                if(depth == closers.length) closers = Arrays.copyOf(closers, depth * 2);
+                closers[depth++] = type == TokenType.L_BRACE ? TokenType.R_BRACE
+                        : type == TokenType.L_PAREN ? TokenType.R_PAREN : TokenType.R_BRACKET;
+            } else if(type == TokenType.R_BRACE || type == TokenType.R_PAREN || type == TokenType.R_BRACKET) {
+                if(type != closers[--depth]) {
+                    errors.add(String.format("expected %s in function body, got %s instead", closers[depth], type));
+                    return false;
+                }
+            } else if(type == TokenType.EOF) {
+                errors.add(String.format("expected %s in function body, got EOF instead", closers[depth - 1]));
+                return false;
+            }
+            if(depth > 0) nextToken();
+        } while (depth > 0);
+        return true;
+    }
 
-    private final Supplier<Expression> parseArrayLiteral = () -> {
+    private static class LazyBody implements DeferredBody {
+
+        private final TokenBuffer tokens;
+        private final int start;
+        private final int end;
+
+        LazyBody(TokenBuffer tokens, int start, int end) {
+            this.tokens = tokens;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public BlockStatement parse(List<String> errors) {
+            Parser parser = new Parser(tokens, true);
+            parser.current = start;
+            BlockStatement body = parser.parseBlockStatement();
+            errors.addAll(parser.errors);
+            if(errors.isEmpty() && parser.current != end) {
+                errors.add(String.format("unexpected %s after function body", parser.currentTokenType()));
+            }
+            return body;
+        }
+
+        @Override
+        public void forEachName(Consumer<Symbol> action) {
+            for(int i = start ; i < end ; i++) {
+                if(tokens.getType(i) == TokenType.IDENT) action.accept(tokens.getSymbol(i));
+            }
+        }
+
+        // Literals are read from the source through its cursor
+        @Override
+        public Object getLock() {
+            return tokens;
+        }
+    }
+
+    private Expression parseArrayLiteral() {
         List<Expression> elements = parseExpressionList(TokenType.R_BRACKET);
         return new ArrayLiteral(elements);
-    };
+    }
 
-    private final Supplier<Expression> parseMapLiteral = () -> {
-        Map<Expression, Expression> pairs = new HashMap<>();
+    private Expression parseMapLiteral() {
+        Map<Expression, Expression> pairs = new LinkedHashMap<>();
 
         while (!peekTokenIs(TokenType.R_BRACE)) {
             nextToken();
@@ -317,43 +418,62 @@ public class Parser {
 
         if(!expectPeek(TokenType.R_BRACE)) return null;
         return new MapLiteral(pairs);
-    };
+    }
 
-    private final Function<Expression, Expression> parseInfixExpression = left -> {
-        String operator = currentToken.getLiteral();
+    private Expression parseInfixExpression(Expression left) {
+        String operator = currentLiteral();
 
         Precedence precedence = currentPrecedence();
         nextToken();
         Expression right = parseExpression(precedence);
 
         return new InfixExpression(left, operator, right);
-    };
+    }
 
-    private final Function<Expression, Expression> parseCallExpression = function -> {
+    private Expression parseCallExpression(Expression function) {
         List<Expression> arguments = parseExpressionList(TokenType.R_PAREN);
         return new CallExpression(function, arguments);
-    };
+    }
 
-    private final Function<Expression, Expression> parseIndexExpression = left -> {
+    private Expression parseIndexExpression(Expression left) {
         nextToken();
         Expression index = parseExpression(LOWEST);
 
         if(!expectPeek(TokenType.R_BRACKET)) return null;
 
         return new IndexExpression(left, index);
-    };
+    }
 
     private void nextToken() {
-        currentToken = peekToken;
-        peekToken = lexer.nextToken();
+        current++;
+    }
+
+    private TokenType currentTokenType() {
+        return tokens.getType(current);
+    }
+
+    private TokenType peekTokenType() {
+        return tokens.getType(current + 1);
+    }
+
+    private Symbol currentSymbol() {
+        return tokens.getSymbol(current);
+    }
+
+    private String currentLiteral() {
+        return tokens.getLiteral(current);
+    }
+
+    private long currentInteger() {
+        return tokens.parseLong(current);
     }
 
     private boolean currentTokenIs(TokenType type) {
-        return currentToken.getTokenType() == type;
+        return currentTokenType() == type;
     }
 
     private boolean peekTokenIs(TokenType type) {
-        return peekToken.getTokenType() == type;
+        return peekTokenType() == type;
     }
 
     private boolean expectPeek(TokenType type) {
@@ -366,11 +486,11 @@ public class Parser {
     }
 
     private Precedence peekPrecedence() {
-        return precedences.getOrDefault(peekToken.getTokenType(), LOWEST);
+        return precedences.getOrDefault(peekTokenType(), LOWEST);
     }
 
     private Precedence currentPrecedence() {
-        return precedences.getOrDefault(currentToken.getTokenType(), LOWEST);
+        return precedences.getOrDefault(currentTokenType(), LOWEST);
     }
 
     public List<String> getErrors() {
@@ -380,7 +500,7 @@ public class Parser {
     private void peekError(TokenType type){
         String message = String.format("expected next token to be %s, got %s instead",
                 type,
-                peekToken.getTokenType());
+                peekTokenType());
         errors.add(message);
     }
 
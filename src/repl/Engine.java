@@ -0,0 +1,8 @@
+package repl;
+
+public enum Engine {
+    // Tree-walking evaluator.Evaluator
+    EVALUATOR,
+    // compiler.Compiler and the stack based vm.VM
+    VM,
+}
@@ -1,14 +1,19 @@
 package repl;
 
 import ast.Program;
+import compiler.Compiler;
+import compiler.SymbolTable;
 import evaluator.Evaluator;
 import lexer.Lexer;
 import object.Environment;
 import object.KongObject;
+import optimizer.Optimizer;
 import parser.Parser;
+import vm.VM;
 
 import java.io.InputStream;
 import java.io.PrintStream;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Scanner;
 
@@ -17,8 +22,20 @@ public class Repl {
     private static final String PROMPT = ">> ";
 
     public static void start(InputStream input, PrintStream output) {
+        start(input, output, Engine.EVALUATOR);
+    }
+
+    public static void start(InputStream input, PrintStream output, Engine engine) {
+        start(input, output, engine, new Optimizer(), false);
+    }
+
+    public static void start(InputStream input, PrintStream output, Engine engine, Optimizer optimizer, boolean dumpAst) {
         Scanner scanner = new Scanner(input);
         Environment environment = new Environment();
+        SymbolTable symbolTable = new SymbolTable();
+        List<KongObject> constants = new ArrayList<>();
+        KongObject[] globals = new KongObject[VM.GLOBALS_SIZE];
+        Evaluator evaluator = new Evaluator(environment);
 
         while (true) {
             output.print(PROMPT);
@@ -34,8 +51,17 @@ public class Repl {
                     continue;
                 }
 
-                Evaluator evaluator = new Evaluator(environment);
-                KongObject evaluated = evaluator.visit(program);
+                program = optimizer.optimize(program);
+                if(dumpAst) output.println(program);
+
+                KongObject evaluated;
+                if(engine == Engine.VM) {
+                    Compiler compiler = new Compiler(symbolTable, constants);
+                    VM machine = new VM(compiler.compile(program), globals);
+                    evaluated = machine.run();
+                } else {
+                    evaluated = evaluator.visit(program);
+                }
                 if(evaluated != null) {
                     output.print(evaluated.inspect());
                     output.print("\n");
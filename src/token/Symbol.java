@@ -0,0 +1,147 @@
+package token;
+
+import java.util.Arrays;
+
+// Interned name, every occurrence of an identifier shares one instance so names compare by identity.
+// The hash is computed once and ids are stable for the life of the process
+public final class Symbol {
+
+    // Open addressing table, replaced by a filled bigger one when it grows
+    private static volatile Symbol[] table = new Symbol[1024];
+    private static int count;
+
+    // Symbols by id, replaced when it grows. An id found through the table without the lock may be newer
+    // than the array a reader sees, byId takes the lock for those
+    private static volatile Symbol[] byId = new Symbol[1024];
+
+    private final String name;
+    private final int id;
+    private final int hash;
+    private final TokenType tokenType;
+
+    static {
+        define("fn", TokenType.FUNCTION);
+        define("let", TokenType.LET);
+        define("true", TokenType.TRUE);
+        define("false", TokenType.FALSE);
+        define("if", TokenType.IF);
+        define("else", TokenType.ELSE);
+        define("return", TokenType.RETURN);
+    }
+
+    private Symbol(String name, int id, int hash, TokenType tokenType) {
+        this.name = name;
+        this.id = id;
+        this.hash = hash;
+        this.tokenType = tokenType;
+    }
+
+    public static Symbol intern(String name) {
+        return intern(name, 0, name.length());
+    }
+
+    // Looks the characters up in place, a String is only created the first time a name is seen. Names seen
+    // before are found without taking the lock, a miss is looked up again under it before adding the name
+    public static Symbol intern(CharSequence source, int start, int end) {
+        int hash = 0;
+        for(int i = start ; i < end ; i++) {
+            hash = 31 * hash + source.charAt(i);
+        }
+
+        Symbol symbol = find(table, hash, source, start, end);
+        if(symbol != null) return symbol;
+        return add(hash, source, start, end);
+    }
+
+    private static synchronized Symbol add(int hash, CharSequence source, int start, int end) {
+        Symbol symbol = find(table, hash, source, start, end);
+        if(symbol != null) return symbol;
+
+        symbol = new Symbol(source.subSequence(start, end).toString(), count, hash, TokenType.IDENT);
+        insert(symbol);
+        return symbol;
+    }
+
+    // Slots are filled without the lock held by readers, all fields of a symbol are final so one that is
+    // seen is seen whole, and one that is not yet seen only sends the reader to the locked path
+    private static Symbol find(Symbol[] symbols, int hash, CharSequence source, int start, int end) {
+        int mask = symbols.length - 1;
+        int slot = spread(hash) & mask;
+        for(Symbol symbol = symbols[slot] ; symbol != null ; symbol = symbols[slot]) {
+            if(symbol.hash == hash && matches(symbol.name, source, start, end)) return symbol;
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    private static synchronized void define(String name, TokenType tokenType) {
+        insert(new Symbol(name, count, name.hashCode(), tokenType));
+    }
+
+    private static void insert(Symbol symbol) {
+        Symbol[] symbols = byId;
+        if(symbol.id == symbols.length) symbols = Arrays.copyOf(symbols, symbols.length * 2);
+        symbols[symbol.id] = symbol;
+        byId = symbols;
+
+        if(++count * 2 > table.length) {
+            // Filled before it is published so readers never see a half empty table
+            Symbol[] grown = new Symbol[table.length * 2];
+            for(Symbol existing : table) {
+                if(existing != null) place(grown, existing);
+            }
+            table = grown;
+        }
+        place(table, symbol);
+    }
+
+    private static void place(Symbol[] symbols, Symbol symbol) {
+        int mask = symbols.length - 1;
+        int slot = spread(symbol.hash) & mask;
+        while(symbols[slot] != null) slot = (slot + 1) & mask;
+        symbols[slot] = symbol;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean matches(String name, CharSequence source, int start, int end) {
+        if(name.length() != end - start) return false;
+        for(int i = 0 ; i < name.length() ; i++) {
+            if(name.charAt(i) != source.charAt(start + i)) return false;
+        }
+        return true;
+    }
+
+    public static Symbol byId(int id) {
+        Symbol[] symbols = byId;
+        if(id < symbols.length && symbols[id] != null) return symbols[id];
+        synchronized (Symbol.class) {
+            return byId[id];
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    // IDENT for names, the keyword type for reserved words
+    public TokenType getTokenType() {
+        return tokenType;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -5,9 +5,19 @@ public class Token {
     private final TokenType tokenType;
     private final String literal;
 
+    // Set for identifiers and keywords
+    private final Symbol symbol;
+
     public Token(TokenType tokenType, String literal) {
         this.tokenType = tokenType;
         this.literal = literal;
+        this.symbol = null;
+    }
+
+    public Token(Symbol symbol) {
+        this.tokenType = symbol.getTokenType();
+        this.literal = symbol.getName();
+        this.symbol = symbol;
     }
 
     public TokenType getTokenType() {
@@ -18,6 +28,10 @@ public class Token {
         return literal;
     }
 
+    public Symbol getSymbol() {
+        return symbol;
+    }
+
     @Override
     public String toString() {
         return "Token {" + "tokenType=" + tokenType + ", literal='" + literal + '\'' + '}';
@@ -0,0 +1,133 @@
+package token;
+
+import java.util.Arrays;
+
+// Tokens of a whole source as pages of types and offsets, no object is created per token and growing never
+// copies what was lexed already. Names keep the id of their interned symbol, numbers and strings are read
+// from the source only when asked for
+public final class TokenBuffer {
+
+    private static final TokenType[] TYPES = TokenType.values();
+    private static final int PAGE_BITS = 12;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    private final CharSequence source;
+    // Lexes more tokens on demand, null once the EOF token is in or when the buffer was filled up front
+    private Source more;
+    private byte[][] types = new byte[4][];
+    private int[][] starts = new int[4][];
+    // Symbol id for names and keywords, end offset for every other token
+    private int[][] values = new int[4][];
+    private int size;
+
+    public TokenBuffer(CharSequence source) {
+        this.source = source;
+    }
+
+    public TokenBuffer(CharSequence source, Source more) {
+        this.source = source;
+        this.more = more;
+    }
+
+    // Offsets are the range of the literal in the source, the inside of the quotes for strings
+    public void add(TokenType type, int start, int end, Symbol symbol) {
+        int page = size >>> PAGE_BITS;
+        int slot = size & PAGE_MASK;
+        if(slot == 0) {
+            if(page == types.length) {
+                types = Arrays.copyOf(types, page * 2);
+                starts = Arrays.copyOf(starts, page * 2);
+                values = Arrays.copyOf(values, page * 2);
+            }
+            types[page] = new byte[PAGE_SIZE];
+            starts[page] = new int[PAGE_SIZE];
+            values[page] = new int[PAGE_SIZE];
+        }
+        types[page][slot] = (byte) type.ordinal();
+        starts[page][slot] = start;
+        values[page][slot] = symbol != null ? symbol.getId() : end;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Reading past the end keeps returning the last token, which is EOF once the source was lexed
+    public TokenType getType(int index) {
+        if(index >= size) index = fill(index);
+        return TYPES[types[index >>> PAGE_BITS][index & PAGE_MASK]];
+    }
+
+    private int fill(int index) {
+        while (index >= size && more != null) {
+            if(!more.lexInto(this)) more = null;
+        }
+        return Math.min(index, size - 1);
+    }
+
+    // Null unless the token is a name or a keyword
+    public Symbol getSymbol(int index) {
+        if(!isSymbol(getType(index))) return null;
+        return Symbol.byId(values[index >>> PAGE_BITS][index & PAGE_MASK]);
+    }
+
+    public int getStart(int index) {
+        return starts[index >>> PAGE_BITS][index & PAGE_MASK];
+    }
+
+    public int getEnd(int index) {
+        Symbol symbol = getSymbol(index);
+        if(symbol != null) return getStart(index) + symbol.getName().length();
+        return values[index >>> PAGE_BITS][index & PAGE_MASK];
+    }
+
+    public String getLiteral(int index) {
+        String literal = getType(index).getLiteral();
+        if(literal != null) return literal;
+        Symbol symbol = getSymbol(index);
+        if(symbol != null) return symbol.getName();
+        return source.subSequence(getStart(index), getEnd(index)).toString();
+    }
+
+    // Same result as Long.parseLong on the literal without creating it
+    public long parseLong(int index) {
+        long value = 0;
+        for(int i = getStart(index), end = getEnd(index) ; i < end ; i++) {
+            int digit = source.charAt(i) - '0';
+            if(value > (Long.MAX_VALUE - digit) / 10) {
+                throw new NumberFormatException("For input string: \"" + getLiteral(index) + "\"");
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    public Token getToken(int index) {
+        Symbol symbol = getSymbol(index);
+        if(symbol != null) return new Token(symbol);
+        return new Token(getType(index), getLiteral(index));
+    }
+
+    private static boolean isSymbol(TokenType type) {
+        switch (type) {
+            case IDENT:
+            case FUNCTION:
+            case LET:
+            case TRUE:
+            case FALSE:
+            case IF:
+            case ELSE:
+            case RETURN:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    public interface Source {
+        // Adds the next tokens to the buffer, false once the EOF token was added
+        boolean lexInto(TokenBuffer buffer);
+    }
+}
@@ -3,7 +3,7 @@ package token;
 public enum  TokenType {
 
     ILLEGAL,
-    EOF,
+    EOF(""),
 
     // Identifier + literal
     IDENT,
@@ -11,36 +11,51 @@ public enum  TokenType {
     STRING,
 
     // Operators
-    ASSIGN,
-    PLUS,
-    MINUS,
-    BANG,
-    ASTERISK,
-    SLASH,
-
-    EQ,
-    NOT_EQ,
-    LT,
-    GT,
+    ASSIGN("="),
+    PLUS("+"),
+    MINUS("-"),
+    BANG("!"),
+    ASTERISK("*"),
+    SLASH("/"),
+
+    EQ("=="),
+    NOT_EQ("!="),
+    LT("<"),
+    GT(">"),
 
     // Delimiters
-    COMMA,
-    COLON,
-    SEMICOLON,
+    COMMA(","),
+    COLON(":"),
+    SEMICOLON(";"),
 
-    L_PAREN,
-    R_PAREN,
-    L_BRACE,
-    R_BRACE,
-    L_BRACKET,
-    R_BRACKET,
+    L_PAREN("("),
+    R_PAREN(")"),
+    L_BRACE("{"),
+    R_BRACE("}"),
+    L_BRACKET("["),
+    R_BRACKET("]"),
 
     // Keywords
-    FUNCTION,
-    LET,
-    TRUE,
-    FALSE,
-    IF,
-    ELSE,
-    RETURN
+    FUNCTION("fn"),
+    LET("let"),
+    TRUE("true"),
+    FALSE("false"),
+    IF("if"),
+    ELSE("else"),
+    RETURN("return");
+
+    // Spelling of tokens that are always written the same way, null for the others
+    private final String literal;
+
+    TokenType() {
+        this(null);
+    }
+
+    TokenType(String literal) {
+        this.literal = literal;
+    }
+
+    public String getLiteral() {
+        return literal;
+    }
 }
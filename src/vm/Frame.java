@@ -0,0 +1,67 @@
+package vm;
+
+import object.KongClosure;
+import object.KongObject;
+import object.MemoCache;
+
+public class Frame {
+
+    private KongClosure closure;
+    private KongObject[] locals;
+
+    // Stack slot of the called closure, the stack is reset to it on return
+    private int basePointer;
+
+    private int ip;
+
+    // Set when the called closure is memoized, the value it returns is cached under this key
+    private MemoCache memoCache;
+    private MemoCache.Key memoKey;
+
+    // Frames are reused by the VM, enter resets one for a new call
+    public void enter(KongClosure closure, KongObject[] locals, int basePointer) {
+        this.closure = closure;
+        this.locals = locals;
+        this.basePointer = basePointer;
+        this.ip = 0;
+        this.memoCache = null;
+        this.memoKey = null;
+    }
+
+    public void memoize(MemoCache memoCache, MemoCache.Key memoKey) {
+        this.memoCache = memoCache;
+        this.memoKey = memoKey;
+    }
+
+    public boolean isMemoized() {
+        return memoKey != null;
+    }
+
+    public void cacheResult(KongObject value) {
+        if(memoKey != null) memoCache.put(memoKey, value);
+    }
+
+    public KongClosure getClosure() {
+        return closure;
+    }
+
+    public KongObject[] getLocals() {
+        return locals;
+    }
+
+    public byte[] getInstructions() {
+        return closure.getFunction().getInstructions();
+    }
+
+    public int getBasePointer() {
+        return basePointer;
+    }
+
+    public int getIp() {
+        return ip;
+    }
+
+    public void setIp(int ip) {
+        this.ip = ip;
+    }
+}
@@ -0,0 +1,564 @@
+package vm;
+
+import compiler.Bytecode;
+import compiler.OpCode;
+import object.*;
+import token.Symbol;
+
+import java.io.PrintWriter;
+import java.util.*;
+
+import static compiler.Instructions.*;
+
+public class VM implements CallContext {
+
+    public static final int GLOBALS_SIZE = 65536;
+
+    private static final int STACK_SIZE = 2048;
+    private static final int MAX_FRAMES = 1024;
+
+    // Frames calling the function given to applyFunction, CALL n then RETURN_VALUE, by number of arguments.
+    // Built up front because VMs forked by parallel builtins read them from several threads
+    private static final KongClosure[] callers = new KongClosure[256];
+
+    static {
+        for(int numArgs = 0 ; numArgs < callers.length ; numArgs++) {
+            byte[] call = make(OpCode.CALL, numArgs);
+            byte[] instructions = Arrays.copyOf(call, call.length + 1);
+            instructions[call.length] = make(OpCode.RETURN_VALUE)[0];
+            callers[numArgs] = new KongClosure(new KongCompiledFunction(instructions, 0, 0, numArgs + 1, false, new Symbol[0], null), null, null);
+        }
+    }
+
+    private static final KongNull NULL = KongNull.NULL;
+    private static final KongBoolean TRUE = KongBoolean.TRUE;
+    private static final KongBoolean FALSE = KongBoolean.FALSE;
+
+    private final KongObject[] constants;
+    private final KongObject[] globals;
+    private final List<Symbol> globalNames;
+
+    private KongObject[] stack = new KongObject[STACK_SIZE];
+    private int sp;
+
+    private Frame[] frames = new Frame[MAX_FRAMES];
+    private int framesIndex;
+
+    private PrintWriter output;
+
+    public VM(Bytecode bytecode) {
+        this(bytecode, new KongObject[GLOBALS_SIZE]);
+    }
+
+    public VM(Bytecode bytecode, KongObject[] globals) {
+        this.constants = bytecode.getConstants();
+        this.globals = globals;
+        this.globalNames = bytecode.getGlobalNames();
+
+        KongCompiledFunction mainFunction = bytecode.getMainFunction();
+        KongClosure mainClosure = new KongClosure(mainFunction, null, null);
+        growStack(mainFunction.getMaxStack());
+        pushFrame(mainClosure, new KongObject[0], 0);
+    }
+
+    private VM(KongObject[] constants, KongObject[] globals, List<Symbol> globalNames) {
+        this.constants = constants;
+        this.globals = globals;
+        this.globalNames = globalNames;
+    }
+
+    public KongObject run() {
+        return execute(0);
+    }
+
+    @Override
+    public CallContext fork() {
+        VM vm = new VM(constants, globals, globalNames);
+        vm.output = output;
+        return vm;
+    }
+
+    @Override
+    public PrintWriter getOutput() {
+        return output;
+    }
+
+    public void setOutput(PrintWriter output) {
+        this.output = output;
+    }
+
+    // Runs a call above the frames already on the stack, used by builtins that take functions
+    @Override
+    public KongObject applyFunction(KongObject function, List<KongObject> args) {
+        int numArgs = args.size();
+        if(numArgs >= callers.length) {
+            return newError("too many arguments: %d", numArgs);
+        }
+
+        int entryFrames = framesIndex;
+        int basePointer = sp;
+        growStack(basePointer + 2 + numArgs);
+        pushFrame(callers[numArgs], null, basePointer);
+        stack[basePointer + 1] = function;
+        for(int i = 0 ; i < numArgs ; i++) {
+            stack[basePointer + 2 + i] = args.get(i);
+        }
+        sp = basePointer + 2 + numArgs;
+
+        KongObject result = execute(entryFrames);
+        if(isError(result)) {
+            // Errors leave the frames they were raised in, drop them
+            framesIndex = entryFrames;
+            sp = basePointer;
+        }
+        return result;
+    }
+
+    // Runs until the frame at exitDepth returns
+    private KongObject execute(int exitDepth) {
+        Frame frame = frames[framesIndex - 1];
+        byte[] instructions = frame.getInstructions();
+        int ip = frame.getIp();
+        int localsBase = frame.getBasePointer() + 1;
+        KongObject[] stack = this.stack;
+        int sp = this.sp;
+
+        while (true) {
+            OpCode opCode = OpCode.lookup(instructions[ip]);
+            ip++;
+
+            switch (opCode) {
+                case CONSTANT: {
+                    int index = readUint16(instructions, ip);
+                    ip += 2;
+                    stack[sp++] = constants[index];
+                    break;
+                }
+                case POP: {
+                    sp--;
+                    break;
+                }
+                case ADD:
+                case SUB:
+                case MUL:
+                case DIV:
+                case EQUAL:
+                case NOT_EQUAL:
+                case GREATER_THAN:
+                case LESS_THAN: {
+                    KongObject right = stack[--sp];
+                    KongObject left = stack[sp - 1];
+                    KongObject result;
+                    if(left instanceof KongInteger && right instanceof KongInteger) {
+                        result = executeIntegerInfixOperation(opCode, ((KongInteger) left).getValue(), ((KongInteger) right).getValue());
+                    } else {
+                        result = executeInfixOperation(opCode, left, right);
+                        if(isError(result)) return result;
+                    }
+                    stack[sp - 1] = result;
+                    break;
+                }
+                case TRUE: {
+                    stack[sp++] = TRUE;
+                    break;
+                }
+                case FALSE: {
+                    stack[sp++] = FALSE;
+                    break;
+                }
+                case NULL: {
+                    stack[sp++] = NULL;
+                    break;
+                }
+                case VOID: {
+                    stack[sp++] = null;
+                    break;
+                }
+                case MINUS: {
+                    KongObject right = stack[sp - 1];
+                    if(right.getObjectType() != ObjectType.INTEGER) {
+                        return newError("unknown operator: -%s", right.getObjectType());
+                    }
+                    stack[sp - 1] = KongInteger.valueOf(-((KongInteger) right).getValue());
+                    break;
+                }
+                case BANG: {
+                    KongObject right = stack[sp - 1];
+                    stack[sp - 1] = right == FALSE || right == NULL ? TRUE : FALSE;
+                    break;
+                }
+                case JUMP_NOT_TRUTHY: {
+                    KongObject condition = stack[--sp];
+                    if(isTruthy(condition)) {
+                        ip += 4;
+                    } else {
+                        ip = readInt32(instructions, ip);
+                    }
+                    break;
+                }
+                case JUMP: {
+                    ip = readInt32(instructions, ip);
+                    break;
+                }
+                case GET_GLOBAL: {
+                    int index = readUint16(instructions, ip);
+                    ip += 2;
+                    KongObject value = globals[index];
+                    if(value == null) {
+                        value = lookupUnbound(globalNames.get(index), null);
+                        if(isError(value)) return value;
+                    }
+                    stack[sp++] = value;
+                    break;
+                }
+                case SET_GLOBAL: {
+                    int index = readUint16(instructions, ip);
+                    ip += 2;
+                    globals[index] = stack[--sp];
+                    break;
+                }
+                case GET_LOCAL: {
+                    int index = readUint16(instructions, ip);
+                    ip += 2;
+                    KongObject value = stack[localsBase + index];
+                    if(value == null) {
+                        value = lookupUnbound(frame, index);
+                        if(isError(value)) return value;
+                    }
+                    stack[sp++] = value;
+                    break;
+                }
+                case SET_LOCAL: {
+                    int index = readUint16(instructions, ip);
+                    ip += 2;
+                    stack[localsBase + index] = stack[--sp];
+                    break;
+                }
+                case GET_CAPTURED: {
+                    int index = readUint16(instructions, ip);
+                    ip += 2;
+                    KongObject value = frame.getLocals()[index];
+                    if(value == null) {
+                        value = lookupUnbound(frame, index);
+                        if(isError(value)) return value;
+                    }
+                    stack[sp++] = value;
+                    break;
+                }
+                case SET_CAPTURED: {
+                    int index = readUint16(instructions, ip);
+                    ip += 2;
+                    frame.getLocals()[index] = stack[--sp];
+                    break;
+                }
+                case GET_OUTER: {
+                    int depth = readUint8(instructions, ip);
+                    int index = readUint16(instructions, ip + 1);
+                    ip += 3;
+                    KongClosure closure = frame.getClosure();
+                    for(int i = 1 ; i < depth ; i++) {
+                        closure = closure.getOuter();
+                    }
+                    KongObject value = closure.getOuterLocals()[index];
+                    if(value == null) {
+                        Symbol name = closure.getOuter().getFunction().getLocalNames()[index];
+                        value = lookupUnbound(name, closure.getOuter());
+                        if(isError(value)) return value;
+                    }
+                    stack[sp++] = value;
+                    break;
+                }
+                case ARRAY: {
+                    int numElements = readUint16(instructions, ip);
+                    ip += 2;
+                    List<KongObject> elements = new ArrayList<>(numElements);
+                    for(int i = sp - numElements ; i < sp ; i++) {
+                        elements.add(stack[i]);
+                    }
+                    sp -= numElements;
+                    stack[sp++] = new KongArray(elements);
+                    break;
+                }
+                case MAP: {
+                    int numPairs = readUint16(instructions, ip);
+                    ip += 2;
+                    KongObject map = buildMap(stack, sp - numPairs * 2, sp);
+                    if(isError(map)) return map;
+                    sp -= numPairs * 2;
+                    stack[sp++] = map;
+                    break;
+                }
+                case INDEX: {
+                    KongObject index = stack[--sp];
+                    KongObject left = stack[sp - 1];
+                    KongObject result = executeIndexExpression(left, index);
+                    if(isError(result)) return result;
+                    stack[sp - 1] = result;
+                    break;
+                }
+                case CALL:
+                case TAIL_CALL: {
+                    int numArgs = readUint8(instructions, ip);
+                    ip += 1;
+                    int basePointer = sp - 1 - numArgs;
+                    KongObject callee = stack[basePointer];
+                    if(callee instanceof KongClosure) {
+                        KongClosure closure = (KongClosure) callee;
+                        KongCompiledFunction function = closure.getFunction();
+                        int numParameters = function.getNumParameters();
+                        if(numArgs < numParameters) {
+                            return newError("wrong number of arguments: want=%d, got=%d", numParameters, numArgs);
+                        }
+
+                        MemoCache memoCache = closure.getMemoCache();
+                        MemoCache.Key memoKey = memoCache != null ? MemoCache.Key.of(stack, basePointer + 1, sp) : null;
+                        if(memoKey != null) {
+                            KongObject result = memoCache.get(memoKey);
+                            if(result != null) {
+                                sp = basePointer;
+                                stack[sp++] = result;
+                                break;
+                            }
+                        }
+
+                        // The caller has nothing left to do but return the value, the callee takes its frame.
+                        // Locals of the caller are only referenced from the stack unless they are captured,
+                        // then closures hold their heap array. Memoized callers have to see the value to cache it
+                        boolean reuseFrame = opCode == OpCode.TAIL_CALL && !frame.isMemoized();
+                        if(reuseFrame) {
+                            int callerBase = frame.getBasePointer();
+                            System.arraycopy(stack, basePointer, stack, callerBase, numArgs + 1);
+                            basePointer = callerBase;
+                            sp = callerBase + 1 + numArgs;
+                        }
+
+                        int frameEnd = basePointer + 1 + function.getNumLocals() + function.getMaxStack();
+                        if(frameEnd > stack.length) {
+                            stack = growStack(frameEnd);
+                        }
+
+                        KongObject[] locals = null;
+                        if(function.capturesLocals()) {
+                            locals = new KongObject[function.getNumLocals()];
+                            System.arraycopy(stack, basePointer + 1, locals, 0, numParameters);
+                            sp = basePointer + 1;
+                        } else {
+                            sp = basePointer + 1 + function.getNumLocals();
+                            Arrays.fill(stack, basePointer + 1 + numParameters, sp, null);
+                        }
+
+                        if(reuseFrame) {
+                            framesIndex--;
+                        } else {
+                            frame.setIp(ip);
+                        }
+                        frame = pushFrame(closure, locals, basePointer);
+                        if(memoKey != null) frame.memoize(memoCache, memoKey);
+                        instructions = function.getInstructions();
+                        localsBase = basePointer + 1;
+                        ip = 0;
+                    } else if(callee instanceof BuiltinFunction) {
+                        List<KongObject> args = new ArrayList<>(numArgs);
+                        for(int i = basePointer + 1 ; i < sp ; i++) {
+                            args.add(stack[i]);
+                        }
+                        // The builtin may call functions, they run above the current top of the stack
+                        this.sp = sp;
+                        KongObject result = ((BuiltinFunction) callee).apply(this, args);
+                        if(isError(result)) return result;
+                        stack = this.stack;
+                        sp = basePointer;
+                        stack[sp++] = result;
+                    } else {
+                        return newError("not a function: %s", callee.getObjectType());
+                    }
+                    break;
+                }
+                case RETURN_VALUE: {
+                    KongObject value = stack[--sp];
+                    frame.cacheResult(value);
+                    framesIndex--;
+                    if(framesIndex == exitDepth) {
+                        this.sp = frame.getBasePointer();
+                        return value;
+                    }
+
+                    sp = frame.getBasePointer();
+                    stack[sp++] = value;
+
+                    frame = frames[framesIndex - 1];
+                    instructions = frame.getInstructions();
+                    localsBase = frame.getBasePointer() + 1;
+                    ip = frame.getIp();
+                    break;
+                }
+                case CLOSURE: {
+                    int index = readUint16(instructions, ip);
+                    ip += 2;
+                    KongCompiledFunction function = (KongCompiledFunction) constants[index];
+                    stack[sp++] = new KongClosure(function, frame.getLocals(), frame.getClosure());
+                    break;
+                }
+                default: throw new IllegalStateException("unknown opcode " + opCode);
+            }
+        }
+    }
+
+    private KongObject lookupUnbound(Frame frame, int index) {
+        Symbol name = frame.getClosure().getFunction().getLocalNames()[index];
+        return lookupUnbound(name, frame.getClosure());
+    }
+
+    // A slot read before its let ran falls back to the same name in the enclosing scopes,
+    // like the tree-walker does when a name is missing from the inner environment
+    private KongObject lookupUnbound(Symbol name, KongClosure closure) {
+        for(KongClosure current = closure ; current != null && current.getOuter() != null ; current = current.getOuter()) {
+            Symbol[] names = current.getOuter().getFunction().getLocalNames();
+            for(int i = 0 ; i < names.length ; i++) {
+                if(names[i] == name && current.getOuterLocals()[i] != null) {
+                    return current.getOuterLocals()[i];
+                }
+            }
+        }
+
+        if(closure != null) {
+            int index = globalNames.indexOf(name);
+            if(index != -1 && globals[index] != null) return globals[index];
+        }
+
+        BuiltinFunction function = Builtins.lookup(name.getName());
+        if(function != null) return function;
+
+        return newError("identifier not found: %s", name);
+    }
+
+    private KongObject executeInfixOperation(OpCode opCode, KongObject left, KongObject right) {
+        if(left.getObjectType() == ObjectType.STRING && right.getObjectType() == ObjectType.STRING) {
+            return executeStringInfixOperation(opCode, left, right);
+        }
+        if(opCode == OpCode.EQUAL) return nativeBoolToBooleanObject(left == right);
+        if(opCode == OpCode.NOT_EQUAL) return nativeBoolToBooleanObject(left != right);
+        if(left.getObjectType() != right.getObjectType()) {
+            return newError("type mismatch: %s %s %s", left.getObjectType(), operatorOf(opCode), right.getObjectType());
+        }
+        return newError("unknown operator: %s %s %s", left.getObjectType(), operatorOf(opCode), right.getObjectType());
+    }
+
+    private KongObject executeIntegerInfixOperation(OpCode opCode, long leftValue, long rightValue) {
+        switch (opCode) {
+            case ADD: return KongInteger.valueOf(leftValue + rightValue);
+            case SUB: return KongInteger.valueOf(leftValue - rightValue);
+            case MUL: return KongInteger.valueOf(leftValue * rightValue);
+            case DIV: return KongInteger.valueOf(leftValue / rightValue);
+
+            case LESS_THAN: return nativeBoolToBooleanObject(leftValue < rightValue);
+            case GREATER_THAN: return nativeBoolToBooleanObject(leftValue > rightValue);
+            case EQUAL: return nativeBoolToBooleanObject(leftValue == rightValue);
+            case NOT_EQUAL: return nativeBoolToBooleanObject(leftValue != rightValue);
+            default: throw new IllegalStateException("unknown integer operator " + opCode);
+        }
+    }
+
+    private KongObject executeStringInfixOperation(OpCode opCode, KongObject left, KongObject right) {
+        KongString leftString = (KongString) left;
+        KongString rightString = (KongString) right;
+        switch (opCode) {
+            case ADD: return leftString.concat(rightString);
+            case LESS_THAN: return nativeBoolToBooleanObject(leftString.getLength() < rightString.getLength());
+            case GREATER_THAN: return nativeBoolToBooleanObject(leftString.getLength() > rightString.getLength());
+            case EQUAL: return nativeBoolToBooleanObject(leftString.getValue().equals(rightString.getValue()));
+            case NOT_EQUAL: return nativeBoolToBooleanObject(!leftString.getValue().equals(rightString.getValue()));
+            default: return newError("unknown operator: %s %s %s", left.getObjectType(), operatorOf(opCode), right.getObjectType());
+        }
+    }
+
+    private KongObject executeIndexExpression(KongObject left, KongObject index) {
+        if(left.getObjectType() == ObjectType.ARRAY && index.getObjectType() == ObjectType.INTEGER) {
+            List<KongObject> elements = ((KongArray) left).getElements();
+            long arrayIndex = ((KongInteger) index).getValue();
+            if(arrayIndex < 0 || arrayIndex > elements.size() - 1) return NULL;
+            return elements.get((int) arrayIndex);
+        }
+        if(left.getObjectType() == ObjectType.MAP) {
+            if(!(index instanceof Hashable)) {
+                return newError("unusable as hash key: %s", index.getObjectType());
+            }
+            KongObject value = ((KongMap) left).getPairs().get(index);
+            if(value == null) return NULL;
+            return value;
+        }
+        if(left.getObjectType() == ObjectType.STRING && index.getObjectType() == ObjectType.INTEGER) {
+            String value = ((KongString) left).getValue();
+            long stringIndex = ((KongInteger) index).getValue();
+            if(stringIndex < 0 || stringIndex > value.length() - 1) return NULL;
+            return new KongString(String.valueOf(value.charAt((int) stringIndex)));
+        }
+        return newError("index operator not supported: %s", left.getObjectType());
+    }
+
+    private KongObject buildMap(KongObject[] stack, int startIndex, int endIndex) {
+        PersistentMap pairs = PersistentMap.EMPTY;
+        for(int i = startIndex ; i < endIndex ; i += 2) {
+            KongObject key = stack[i];
+            KongObject value = stack[i + 1];
+            if(!(key instanceof Hashable)) {
+                return newError("unusable as hash key: %s", key.getObjectType());
+            }
+            pairs = pairs.assoc(key, value);
+        }
+        return new KongMap(pairs);
+    }
+
+    private String operatorOf(OpCode opCode) {
+        switch (opCode) {
+            case ADD: return "+";
+            case SUB: return "-";
+            case MUL: return "*";
+            case DIV: return "/";
+            case LESS_THAN: return "<";
+            case GREATER_THAN: return ">";
+            case EQUAL: return "==";
+            case NOT_EQUAL: return "!=";
+            default: return opCode.name();
+        }
+    }
+
+    private KongObject[] growStack(int size) {
+        if(size > stack.length) {
+            stack = Arrays.copyOf(stack, Math.max(stack.length * 2, size));
+        }
+        return stack;
+    }
+
+    private Frame pushFrame(KongClosure closure, KongObject[] locals, int basePointer) {
+        if(framesIndex == frames.length) {
+            frames = Arrays.copyOf(frames, frames.length * 2);
+        }
+        Frame frame = frames[framesIndex];
+        if(frame == null) {
+            frame = new Frame();
+            frames[framesIndex] = frame;
+        }
+        frame.enter(closure, locals, basePointer);
+        framesIndex++;
+        return frame;
+    }
+
+    private KongBoolean nativeBoolToBooleanObject(boolean value) {
+        return value ? TRUE : FALSE;
+    }
+
+    private boolean isTruthy(KongObject object) {
+        if(object == NULL) return false;
+        if(object == TRUE) return true;
+        return object != FALSE;
+    }
+
+    private KongError newError(String format, Object... args) {
+        return new KongError(format, args);
+    }
+
+    private boolean isError(KongObject object) {
+        return object instanceof KongError;
+    }
+}
@@ -0,0 +1,88 @@
+package embed;
+
+import ast.Program;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class AstCacheTest {
+
+    private static final String SOURCE = "let add = fn(a, b) { a + b }; puts(add(1, 2), \"three\");";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void loadsTheSameProgramFromItsEntry() throws IOException {
+        AstCache cache = new AstCache(folder.newFolder("cache").toPath());
+        Path script = script("a.kong", SOURCE);
+
+        Program parsed = cache.parse(script);
+        Program cached = cache.parse(script);
+        assertEquals(parsed.toString(), cached.toString());
+        assertEquals(1, entries(cache).length);
+    }
+
+    @Test
+    public void givesDifferentSourcesDifferentEntries() throws IOException {
+        AstCache cache = new AstCache(folder.newFolder("cache").toPath());
+        cache.parse(script("a.kong", "1 + 2"));
+        cache.parse(script("b.kong", "2 + 1"));
+        assertEquals(2, entries(cache).length);
+    }
+
+    @Test
+    public void reparsesACorruptedEntry() throws IOException {
+        AstCache cache = new AstCache(folder.newFolder("cache").toPath());
+        Path script = script("a.kong", SOURCE);
+        String expected = cache.parse(script).toString();
+
+        Path entry = entries(cache)[0].toPath();
+        byte[] written = Files.readAllBytes(entry);
+        for(int i = written.length - 1 ; i >= written.length - 8 ; i--) {
+            byte[] corrupted = written.clone();
+            corrupted[i] ^= 0x01;
+            Files.write(entry, corrupted);
+
+            assertEquals(expected, cache.parse(script).toString());
+            assertArrayEquals(written, Files.readAllBytes(entry));
+        }
+    }
+
+    @Test
+    public void reparsesAnEntryWithTrailingBytes() throws IOException {
+        AstCache cache = new AstCache(folder.newFolder("cache").toPath());
+        Path script = script("a.kong", SOURCE);
+        String expected = cache.parse(script).toString();
+
+        Path entry = entries(cache)[0].toPath();
+        byte[] written = Files.readAllBytes(entry);
+        byte[] extended = Arrays.copyOf(written, written.length + 4);
+        Files.write(entry, extended);
+        assertNotEquals(written.length, Files.size(entry));
+
+        assertEquals(expected, cache.parse(script).toString());
+        assertArrayEquals(written, Files.readAllBytes(entry));
+    }
+
+    private Path script(String name, String source) throws IOException {
+        Path script = folder.getRoot().toPath().resolve(name);
+        Files.write(script, source.getBytes(StandardCharsets.UTF_8));
+        return script;
+    }
+
+    private static File[] entries(AstCache cache) {
+        return cache.getDirectory().toFile().listFiles((directory, name) -> name.endsWith(".kast"));
+    }
+}
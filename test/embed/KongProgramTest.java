@@ -0,0 +1,69 @@
+package embed;
+
+import object.KongInteger;
+import object.KongObject;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+
+public class KongProgramTest {
+
+    private static final String SOURCE = ""
+            + "let fib = fn(n) { if (n < 2) { n } else { fib(n - 1) + fib(n - 2) } };"
+            + "let add = fn(a, b) { a + b };"
+            + "let loop = fn(i, acc) { if (i == 0) { acc } else { loop(i - 1, add(acc, 1)) } };"
+            + "[fib(input), add(input, input), add(\"k\", \"v\"), loop(input * 100, 0), -input]";
+
+    @Test
+    public void runsOneProgramFromSeveralThreads() throws Exception {
+        KongProgram program = KongProgram.compile(SOURCE);
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for(int i = 0 ; i < threads * 4 ; i++) {
+                long input = 10 + i % threads;
+                Callable<String> run = () -> {
+                    ExecutionContext context = program.newContext();
+                    context.set("input", KongInteger.valueOf(input));
+                    KongObject result = context.run();
+                    return result.inspect();
+                };
+                results.add(executor.submit(run));
+            }
+
+            for(int i = 0 ; i < results.size() ; i++) {
+                long input = 10 + i % threads;
+                String expected = "[" + fib(input) + ", " + (input * 2) + ", kv, " + (input * 100) + ", " + (-input) + "]";
+                assertEquals(expected, results.get(i).get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void keepsGlobalsOfEachContextApart() {
+        KongProgram program = KongProgram.compile("let doubled = input * 2;");
+        ExecutionContext first = program.newContext();
+        ExecutionContext second = program.newContext();
+        first.set("input", KongInteger.valueOf(1));
+        second.set("input", KongInteger.valueOf(2));
+        first.run();
+        second.run();
+
+        assertEquals("2", first.get("doubled").inspect());
+        assertEquals("4", second.get("doubled").inspect());
+    }
+
+    private static long fib(long n) {
+        return n < 2 ? n : fib(n - 1) + fib(n - 2);
+    }
+}
@@ -0,0 +1,46 @@
+package embed;
+
+import org.junit.Test;
+import repl.Engine;
+
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.SimpleScriptContext;
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+
+public class KongScriptEngineTest {
+
+    @Test
+    public void putsWritesToTheContextWriter() throws Exception {
+        assertOutput(new KongScriptEngine());
+        assertOutput(new KongScriptEngine(new KongScriptEngineFactory(), Engine.VM));
+    }
+
+    @Test
+    public void parallelBuiltinsWriteToTheContextWriter() throws Exception {
+        ScriptEngine engine = new KongScriptEngine();
+        StringWriter writer = new StringWriter();
+        ScriptContext context = new SimpleScriptContext();
+        context.setWriter(writer);
+        engine.eval("pmap([1, 1, 1], fn(x) { puts(x) });", context);
+        assertEquals(lines("1", "1", "1"), writer.toString());
+    }
+
+    private static void assertOutput(ScriptEngine engine) throws Exception {
+        StringWriter writer = new StringWriter();
+        ScriptContext context = new SimpleScriptContext();
+        context.setWriter(writer);
+        engine.eval("puts(\"hi\", 1 + 2);", context);
+        assertEquals(lines("hi", "3"), writer.toString());
+    }
+
+    private static String lines(String... lines) {
+        StringBuilder builder = new StringBuilder();
+        for(String line : lines) {
+            builder.append(line).append(System.lineSeparator());
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,109 @@
+package embed;
+
+import ast.Program;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import repl.Engine;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class ProjectLoaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void joinsTheFilesOfADirectoryInPathOrder() throws IOException {
+        Path project = folder.newFolder("project").toPath();
+        script(project.resolve("b.kong"), "let order = push(order, \"b\");");
+        script(project.resolve("sub/c.kong"), "let order = push(order, \"c\"); order");
+        script(project.resolve("a.kong"), "let order = [\"a\"];");
+        script(project.resolve("notes.txt"), "not a kong file");
+
+        for(ProjectLoader loader : loaders()) {
+            assertEquals("[a, b, c]", run(loader.load(project)));
+        }
+    }
+
+    @Test
+    public void keepsTheOrderOfListedFiles() throws IOException {
+        Path first = script(folder.getRoot().toPath().resolve("z.kong"), "let order = [\"z\"];");
+        Path second = script(folder.getRoot().toPath().resolve("y.kong"), "let order = push(order, \"y\");");
+        Path project = folder.newFolder("project").toPath();
+        script(project.resolve("b.kong"), "let order = push(order, \"b\");");
+        script(project.resolve("a.kong"), "let order = push(order, \"a\");");
+        Path last = script(folder.getRoot().toPath().resolve("x.kong"), "push(order, \"x\")");
+
+        for(ProjectLoader loader : loaders()) {
+            assertEquals("[z, y, a, b, x]", run(loader.load(Arrays.asList(first, second, project, last))));
+        }
+    }
+
+    @Test
+    public void reportsTheParserErrorsOfEveryFile() throws IOException {
+        Path project = folder.newFolder("project").toPath();
+        Path broken = script(project.resolve("a.kong"), "let = 1;");
+        script(project.resolve("b.kong"), "let fine = 1;");
+        Path alsoBroken = script(project.resolve("c.kong"), "let x = 2; let = 3;");
+
+        for(ProjectLoader loader : loaders()) {
+            try {
+                loader.load(project);
+                fail("expected parser errors");
+            } catch (KongParseException e) {
+                assertEquals(Arrays.asList(
+                        broken + ": no prefix parse function for ASSIGN found",
+                        alsoBroken + ": no prefix parse function for ASSIGN found"), e.getErrors());
+            }
+        }
+    }
+
+    @Test
+    public void failsWhenAFileCanNotBeRead() throws IOException {
+        Path broken = script(folder.getRoot().toPath().resolve("broken.kong"), "let = 1;");
+        Path fine = script(folder.getRoot().toPath().resolve("fine.kong"), "let fine = 1;");
+        Path missing = folder.getRoot().toPath().resolve("missing.kong");
+
+        for(ProjectLoader loader : loaders()) {
+            try {
+                // Not being able to read a file wins over the parser errors of the others
+                loader.load(Arrays.asList(broken, fine, missing));
+                fail("expected the load to fail");
+            } catch (NoSuchFileException e) {
+                assertEquals(missing.toString(), e.getFile());
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsParallelismBelowOne() {
+        new ProjectLoader(0, null);
+    }
+
+    // One worker, several workers and several workers parsing through the cache
+    private List<ProjectLoader> loaders() throws IOException {
+        return Arrays.asList(
+                new ProjectLoader(1, null),
+                new ProjectLoader(4, null),
+                new ProjectLoader(4, new AstCache(folder.newFolder().toPath())));
+    }
+
+    private static String run(Program program) {
+        return KongProgram.compile(program, Engine.EVALUATOR).execute().inspect();
+    }
+
+    private static Path script(Path file, String source) throws IOException {
+        Files.createDirectories(file.getParent());
+        return Files.write(file, source.getBytes(StandardCharsets.UTF_8));
+    }
+}
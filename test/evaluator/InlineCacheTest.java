@@ -0,0 +1,99 @@
+package evaluator;
+
+import ast.BlockStatement;
+import ast.CallExpression;
+import ast.FunctionLiteral;
+import ast.Identifier;
+import ast.Program;
+import object.BuiltinFunction;
+import object.Environment;
+import object.KongFunction;
+import object.KongInteger;
+import org.junit.Test;
+import token.Symbol;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class InlineCacheTest {
+
+    @Test
+    public void classifiesCallees() {
+        InlineCache cache = new InlineCache();
+        assertEquals(InlineCache.Target.FUNCTION, cache.targetOf(newFunction()));
+        assertEquals(InlineCache.Target.BUILTIN, cache.targetOf(new BuiltinFunction(args -> args.get(0))));
+        assertEquals(InlineCache.Target.NOT_CALLABLE, cache.targetOf(KongInteger.valueOf(1)));
+    }
+
+    @Test
+    public void becomesMegamorphicAfterFourCallees() {
+        InlineCache cache = new InlineCache();
+        KongFunction[] callees = new KongFunction[6];
+        for(int i = 0 ; i < 4 ; i++) {
+            callees[i] = newFunction();
+            assertEquals(InlineCache.Target.FUNCTION, cache.targetOf(callees[i]));
+            assertFalse(cache.isMegamorphic());
+        }
+        // Values that can not be called are not remembered and do not count
+        cache.targetOf(KongInteger.valueOf(1));
+        assertEquals(InlineCache.Target.FUNCTION, cache.targetOf(callees[0]));
+        assertFalse(cache.isMegamorphic());
+
+        callees[4] = newFunction();
+        assertEquals(InlineCache.Target.FUNCTION, cache.targetOf(callees[4]));
+        assertTrue(cache.isMegamorphic());
+        assertEquals(InlineCache.Target.FUNCTION, cache.targetOf(callees[3]));
+        assertEquals(InlineCache.Target.BUILTIN, cache.targetOf(new BuiltinFunction(args -> args.get(0))));
+    }
+
+    @Test
+    public void dropsTheGlobalCalleeWhenAGlobalIsAssigned() {
+        Environment globals = new Environment();
+        KongFunction callee = newFunction();
+        InlineCache cache = new InlineCache();
+        cache.setGlobalCallee(globals, callee);
+        assertSame(callee, cache.getGlobalCallee(globals));
+        assertNull(cache.getGlobalCallee(new Environment()));
+
+        globals.set(Symbol.intern("inlineCacheOther"), KongInteger.valueOf(1));
+        assertNull(cache.getGlobalCallee(globals));
+    }
+
+    @Test
+    public void callsTheReboundGlobal() {
+        Session session = new Session();
+        Program program = session.resolve("let f = fn() { 1 }; let call = fn() { f() }; call()");
+        assertEquals("1", session.run(program).inspect());
+        CallExpression site = Session.find(program, CallExpression.class,
+                call -> ((Identifier) call.getFunction()).getValue().equals("f")).get(0);
+        assertSame(session.run(session.resolve("f")), site.getInlineCache().getGlobalCallee(session.globals()));
+
+        assertEquals("2", session.run("let f = fn() { 2 }; call()"));
+        assertEquals("ERROR: not a function: INTEGER", session.run("let f = 3; call()"));
+        assertEquals("6", session.run("let f = fn() { 6 }; call()"));
+    }
+
+    @Test
+    public void callsEveryCalleeOfAMegamorphicSite() {
+        Session session = new Session();
+        Program program = session.resolve("let apply = fn(g, x) { g(x) };"
+                + "[apply(fn(x) { x + 1 }, 1), apply(fn(x) { x * 2 }, 2), apply(len, \"abc\"), apply(fn(x) { -x }, 4),"
+                + " apply(fn(x) { x }, 5), apply(first, [6]), apply(fn(x) { [x] }, 7), apply(fn(x) { x - 1 }, 8)]");
+        assertEquals("[2, 4, 3, -4, 5, 6, [7], 7]", session.run(program).inspect());
+
+        CallExpression site = Session.find(program, CallExpression.class,
+                call -> ((Identifier) call.getFunction()).getValue().equals("g")).get(0);
+        assertTrue(site.getInlineCache().isMegamorphic());
+        assertEquals("9", session.run("apply(fn(x) { x + x }, 4) + 1"));
+    }
+
+    private static KongFunction newFunction() {
+        FunctionLiteral literal = new FunctionLiteral(Collections.<Identifier>emptyList(), new BlockStatement(Collections.emptyList()));
+        return new KongFunction(literal, new Environment());
+    }
+}
@@ -0,0 +1,103 @@
+package evaluator;
+
+import ast.Identifier;
+import ast.Program;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ResolverTest {
+
+    @Test
+    public void addressesParametersLocalsAndGlobals() {
+        Session session = new Session();
+        Program program = session.resolve("let x = 1; let f = fn(a) { let b = a; b + x }; f(2)");
+
+        assertLocal(0, 0, uses(program, "a").get(0));
+        assertLocal(0, 1, uses(program, "b").get(0));
+        assertGlobal(uses(program, "x").get(0));
+        assertGlobal(uses(program, "f").get(0));
+        assertEquals("3", session.run(program).inspect());
+    }
+
+    @Test
+    public void addressesTheInnermostBindingOfAShadowedName() {
+        Session session = new Session();
+        Program program = session.resolve(""
+                + "let a = 1;"
+                + "let f = fn(a) { let g = fn() { a }; let h = fn(a) { a }; let k = fn() { let a = 4; a }; [g(), h(3), k(), a] };"
+                + "[f(2), a]");
+
+        List<Identifier> uses = uses(program, "a");
+        assertLocal(1, 0, uses.get(0));
+        assertLocal(0, 0, uses.get(1));
+        assertLocal(0, 0, uses.get(2));
+        assertLocal(0, 0, uses.get(3));
+        assertGlobal(uses.get(4));
+        assertEquals("[[2, 3, 4, 2], 1]", session.run(program).inspect());
+    }
+
+    @Test
+    public void addressesVariablesCapturedSeveralFunctionsOut() {
+        Session session = new Session();
+        Program program = session.resolve(""
+                + "let make = fn(n) { let twice = n * 2; fn(m) { fn(k) { n + m + k + twice } } };"
+                + "let inner = make(1)(2); [inner(3), make(10)(20)(30), inner(4)]");
+
+        List<Identifier> n = uses(program, "n");
+        assertLocal(0, 0, n.get(0));
+        assertLocal(2, 0, n.get(1));
+        assertLocal(1, 0, uses(program, "m").get(0));
+        assertLocal(2, 1, uses(program, "twice").get(0));
+        assertEquals("[8, 80, 9]", session.run(program).inspect());
+    }
+
+    @Test
+    public void bindsLetsInIfBlocksInTheEnclosingFunction() {
+        Session session = new Session();
+        Program program = session.resolve("let f = fn(c) { let y = 1; if (c) { let y = 2; let z = 3; }; [y, z] }; f(true)");
+
+        for(Identifier use : uses(program, "y")) assertLocal(0, 1, use);
+        assertLocal(0, 2, uses(program, "z").get(0));
+        assertEquals("[2, 3]", session.run(program).inspect());
+        assertEquals("ERROR: identifier not found: z", session.run("f(false)"));
+    }
+
+    @Test
+    public void bindsTopLevelLetsInIfBlocksAsGlobals() {
+        Session session = new Session();
+        Program program = session.resolve("if (true) { let w = 5; }; w");
+        assertGlobal(uses(program, "w").get(0));
+        assertEquals("5", session.run(program).inspect());
+    }
+
+    @Test
+    public void keepsGlobalSlotsAcrossPrograms() {
+        Session session = new Session();
+        Program first = session.resolve("let counter = 1; let next = fn() { counter + 1 }");
+        session.run(first);
+        assertGlobal(uses(first, "counter").get(0));
+        assertEquals("2", session.run("next()"));
+        // A later program rebinding the global is seen by the function resolved before it
+        assertEquals("11", session.run("let counter = 10; next()"));
+    }
+
+    private static List<Identifier> uses(Program program, String name) {
+        return Session.find(program, Identifier.class, identifier -> identifier.getValue().equals(name));
+    }
+
+    private static void assertLocal(int depth, int index, Identifier identifier) {
+        assertFalse(identifier.getValue() + " is global", identifier.isGlobal());
+        assertEquals(identifier.getValue() + " depth", depth, identifier.getDepth());
+        assertEquals(identifier.getValue() + " index", index, identifier.getIndex());
+    }
+
+    private static void assertGlobal(Identifier identifier) {
+        assertTrue(identifier.getValue() + " is not global", identifier.isGlobal());
+        assertTrue(identifier.isResolved());
+    }
+}
@@ -0,0 +1,89 @@
+package evaluator;
+
+import ast.CallExpression;
+import ast.Expression;
+import ast.Identifier;
+import ast.InfixExpression;
+import ast.PrefixExpression;
+import ast.Program;
+import lexer.Lexer;
+import object.Environment;
+import object.KongObject;
+import optimizer.AstRewriter;
+import parser.Parser;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Predicate;
+
+import static org.junit.Assert.assertEquals;
+
+// Programs resolved and run one after another against the same globals, like lines typed into the repl
+class Session {
+
+    private final Environment globals = new Environment();
+    private final Evaluator evaluator = new Evaluator(globals);
+
+    Environment globals() {
+        return globals;
+    }
+
+    Program resolve(String source) {
+        Parser parser = new Parser(new Lexer(source));
+        Program program = parser.parseProgram();
+        assertEquals(source, Collections.emptyList(), parser.getErrors());
+        new Resolver(globals).resolve(program);
+        return program;
+    }
+
+    KongObject run(Program program) {
+        return evaluator.visit(program);
+    }
+
+    String run(String source) {
+        return run(resolve(source)).inspect();
+    }
+
+    // Nodes of a type in the order they appear in the source, inside function bodies too
+    static <T extends Expression> List<T> find(Program program, Class<T> type) {
+        return find(program, type, node -> true);
+    }
+
+    static <T extends Expression> List<T> find(Program program, Class<T> type, Predicate<T> filter) {
+        List<T> found = new ArrayList<>();
+        program.accept(new AstRewriter() {
+            @Override
+            public Expression visit(Identifier expression) {
+                collect(expression);
+                return expression;
+            }
+
+            @Override
+            public Expression visit(InfixExpression expression) {
+                super.visit(expression);
+                collect(expression);
+                return expression;
+            }
+
+            @Override
+            public Expression visit(PrefixExpression expression) {
+                super.visit(expression);
+                collect(expression);
+                return expression;
+            }
+
+            @Override
+            public Expression visit(CallExpression expression) {
+                super.visit(expression);
+                collect(expression);
+                return expression;
+            }
+
+            private void collect(Expression expression) {
+                if(type.isInstance(expression) && filter.test(type.cast(expression))) found.add(type.cast(expression));
+            }
+        });
+        return found;
+    }
+}
@@ -0,0 +1,84 @@
+package evaluator;
+
+import ast.InfixExpression;
+import ast.PrefixExpression;
+import ast.Program;
+import ast.Specialization;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class SpecializationTest {
+
+    @Test
+    public void specializesOnTheFirstOperandTypes() {
+        Session session = new Session();
+        Program program = session.resolve("let add = fn(a, b) { a + b }; let join = fn(a, b) { a + b }; let eq = fn(a, b) { a == b }");
+        session.run(program);
+        InfixExpression add = Session.find(program, InfixExpression.class).get(0);
+        InfixExpression join = Session.find(program, InfixExpression.class).get(1);
+        InfixExpression eq = Session.find(program, InfixExpression.class).get(2);
+        assertEquals(Specialization.UNINITIALIZED, add.getSpecialization());
+
+        assertEquals("3", session.run("add(1, 2)"));
+        assertEquals(Specialization.INTEGER, add.getSpecialization());
+        assertEquals("ab", session.run("join(\"a\", \"b\")"));
+        assertEquals(Specialization.STRING, join.getSpecialization());
+        assertEquals("true", session.run("eq(true, true)"));
+        assertEquals(Specialization.GENERIC, eq.getSpecialization());
+    }
+
+    @Test
+    public void respecializesWhenTheOperandTypesChange() {
+        Session session = new Session();
+        Program program = session.resolve("let add = fn(a, b) { a + b }; let join = fn(a, b) { a + b }");
+        session.run(program);
+        InfixExpression add = Session.find(program, InfixExpression.class).get(0);
+        InfixExpression join = Session.find(program, InfixExpression.class).get(1);
+
+        assertEquals("7", session.run("add(3, 4)"));
+        assertEquals("xy", session.run("add(\"x\", \"y\")"));
+        assertEquals(Specialization.GENERIC, add.getSpecialization());
+        assertEquals("9", session.run("add(4, 5)"));
+        assertEquals("ERROR: type mismatch: INTEGER + STRING", session.run("add(1, \"s\")"));
+        assertEquals(Specialization.GENERIC, add.getSpecialization());
+
+        assertEquals("xy", session.run("join(\"x\", \"y\")"));
+        assertEquals("3", session.run("join(1, 2)"));
+        assertEquals(Specialization.GENERIC, join.getSpecialization());
+        assertEquals("zz", session.run("join(\"z\", \"z\")"));
+    }
+
+    @Test
+    public void leavesTheIntegerPathOnAMismatchedOperand() {
+        // An integer site reads its operands unboxed, a non integer one must still take the generic path
+        Session session = new Session();
+        Program program = session.resolve("let lt = fn(a, b) { a < b }");
+        session.run(program);
+        InfixExpression lt = Session.find(program, InfixExpression.class).get(0);
+
+        assertEquals("true", session.run("lt(1, 2)"));
+        assertEquals(Specialization.INTEGER, lt.getSpecialization());
+        assertEquals("ERROR: type mismatch: BOOLEAN < INTEGER", session.run("lt(true, 2)"));
+        assertEquals(Specialization.GENERIC, lt.getSpecialization());
+        assertEquals("false", session.run("lt(3, 2)"));
+    }
+
+    @Test
+    public void respecializesPrefixSites() {
+        Session session = new Session();
+        Program program = session.resolve("let negate = fn(a) { -a }; let not = fn(a) { !a }");
+        session.run(program);
+        PrefixExpression negate = Session.find(program, PrefixExpression.class).get(0);
+        PrefixExpression not = Session.find(program, PrefixExpression.class).get(1);
+
+        assertEquals("-5", session.run("negate(5)"));
+        assertEquals(Specialization.INTEGER, negate.getSpecialization());
+        assertEquals("ERROR: unknown operator: -BOOLEAN", session.run("negate(true)"));
+        assertEquals(Specialization.GENERIC, negate.getSpecialization());
+        assertEquals("-6", session.run("negate(6)"));
+
+        assertEquals("false", session.run("not(1)"));
+        assertEquals(Specialization.GENERIC, not.getSpecialization());
+    }
+}
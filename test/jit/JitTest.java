@@ -0,0 +1,141 @@
+package jit;
+
+import ast.ExpressionStatement;
+import ast.FunctionLiteral;
+import ast.LetStatement;
+import ast.Program;
+import ast.Statement;
+import embed.KongProgram;
+import evaluator.Evaluator;
+import evaluator.Resolver;
+import lexer.Lexer;
+import object.Environment;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import parser.Parser;
+import repl.Engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class JitTest {
+
+    private boolean enabled;
+    private int threshold;
+
+    @Before
+    public void compileOnFirstCall() {
+        enabled = Jit.isEnabled();
+        threshold = Jit.getThreshold();
+        Jit.setEnabled(true);
+        Jit.setThreshold(1);
+    }
+
+    @After
+    public void restoreSettings() {
+        Jit.setEnabled(enabled);
+        Jit.setThreshold(threshold);
+    }
+
+    @Test
+    public void runsIntegerArithmeticAndComparisons() {
+        assertSameResult("[[9, 5, 14, 3, false, true, false, true, -7], [-5, -9, -14, -3, true, false, false, true, 7], "
+                        + "[4, 0, 4, 1, false, false, true, false, -2]]",
+                "let f = fn(a, b) { [a + b, a - b, a * b, a / b, a < b, a > b, a == b, a != b, -a] };"
+                        + "[f(7, 2), f(-7, 2), f(2, 2)]");
+        assertSameResult("[-9223372036854775808, 6]",
+                "let f = fn(a) { a + 1 }; let g = fn(a) { 2 * a + 10 / 5 }; [f(9223372036854775807), g(2)]");
+        assertSameResult("610", "let fib = fn(n) { if (n < 2) { n } else { fib(n - 1) + fib(n - 2) } }; fib(15)");
+    }
+
+    @Test
+    public void runsOperatorsOverOtherTypes() {
+        assertSameResult("[xy, false, true, true, false]",
+                "let f = fn(a, b) { [a + b, a == b, a != b, !false, !a] }; f(\"x\", \"y\")");
+        assertSameResult("[false, true, false]", "let f = fn(a, b) { [a == b, a != b, !a] }; f(true, false)");
+        assertSameResult("[true, false]", "let f = fn(a, b) { [a == b, a < 2] }; [f(1, 1)[0], f(3, 1)[1]]");
+    }
+
+    @Test
+    public void reportsErrorsLikeTheInterpreter() {
+        assertSameResult("ERROR: type mismatch: INTEGER + BOOLEAN", "let f = fn(a, b) { a + b }; f(1, true)");
+        assertSameResult("ERROR: unknown operator: BOOLEAN + BOOLEAN", "let f = fn() { let x = true + false; 5 }; f()");
+        assertSameResult("ERROR: identifier not found: nope", "let f = fn() { nope }; f()");
+        assertSameResult("ERROR: unknown operator: -STRING", "let f = fn(s) { -s }; f(\"a\")");
+    }
+
+    @Test
+    public void returnsEarly() {
+        assertSameResult("[6, -1, 0]", ""
+                + "let f = fn(n) { if (n > 0) { return n * 2; }; if (n == 0) { if (true) { return 0; } }; return -1; 99 };"
+                + "[f(3), f(-3), f(0)]");
+    }
+
+    @Test
+    public void runsClosures() {
+        assertSameResult("[5, 11, 3]", ""
+                + "let adder = fn(n) { fn(x) { x + n } }; let addTwo = adder(2);"
+                + "let twice = fn(f, x) { f(f(x)) };"
+                + "[addTwo(3), adder(10)(1), twice(fn(x) { x + 1 }, 1)]");
+    }
+
+    @Test
+    public void buildsMapsThroughTheInterpreter() {
+        assertSameResult("[1, 2, null, 2]",
+                "let f = fn(k, v) { let m = {k: v, \"b\": 2}; [m[k], m[\"b\"], m[\"z\"], len([m, m])] }; f(\"a\", 1)");
+    }
+
+    @Test
+    public void compilesBodiesOnceTheyReachTheThreshold() {
+        Program program = resolve("let f = fn(a) { a * 2 }; let g = fn(a) { {a: 1} }; f(1); g(2)");
+        assertNotNull(functionBoundBy(program, 0).getCompiledBody());
+        // Map literals fall back to the interpreter one node at a time, the rest of the body is still compiled
+        assertNotNull(functionBoundBy(program, 1).getCompiledBody());
+    }
+
+    @Test
+    public void leavesBodiesItCanNotCompileToTheInterpreter() {
+        // Without lexical addresses from the resolver there is nothing to compile environment access to
+        Program program = new Parser(new Lexer("let f = fn(a) { a * 2 };")).parseProgram();
+        assertNull(Jit.compile(functionBoundBy(program, 0)));
+
+        Jit.setThreshold(3);
+        Program counted = resolve("let f = fn(a) { a + 1 }; f(1); f(2)");
+        assertNull(functionBoundBy(counted, 0).getCompiledBody());
+    }
+
+    @Test
+    public void doesNothingWhenDisabled() {
+        Jit.setEnabled(false);
+        Program program = resolve("let f = fn(a) { a * 2 }; f(1)");
+        assertNull(functionBoundBy(program, 0).getCompiledBody());
+    }
+
+    // Compares the compiled run against the interpreter without the jit and the vm
+    private static void assertSameResult(String expected, String source) {
+        assertEquals("jit", expected, KongProgram.compile(source, Engine.EVALUATOR).execute().inspect());
+        assertEquals("vm", expected, KongProgram.compile(source, Engine.VM).execute().inspect());
+        Jit.setEnabled(false);
+        try {
+            assertEquals("evaluator", expected, KongProgram.compile(source, Engine.EVALUATOR).execute().inspect());
+        } finally {
+            Jit.setEnabled(true);
+        }
+    }
+
+    private static Program resolve(String source) {
+        Program program = new Parser(new Lexer(source)).parseProgram();
+        Environment environment = new Environment();
+        new Resolver(environment).resolve(program);
+        new Evaluator(environment).visit(program);
+        return program;
+    }
+
+    private static FunctionLiteral functionBoundBy(Program program, int index) {
+        Statement statement = program.getStatements().get(index);
+        if(statement instanceof LetStatement) return (FunctionLiteral) ((LetStatement) statement).getValue();
+        return (FunctionLiteral) ((ExpressionStatement) statement).getExpression();
+    }
+}
@@ -0,0 +1,137 @@
+package lexer;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class Utf8SequenceTest {
+
+    @Test
+    public void decodesEveryWidth() {
+        String text = "a\u00e9\u20ac\ud83d\ude00z";
+        Utf8Sequence sequence = sequenceOf(text);
+        assertEquals(text.length(), sequence.length());
+        assertEquals(text, sequence.toString());
+        assertEquals("\u20ac\ud83d", sequence.subSequence(2, 4).toString());
+    }
+
+    @Test
+    public void readsSupplementaryCharactersAsSurrogatePairs() {
+        String text = "\ud83d\ude00x\ud834\udd1e";
+        Utf8Sequence sequence = sequenceOf(text);
+        assertEquals(5, sequence.length());
+        // Low surrogate first, then the high one of the same code point
+        assertEquals('\ude00', sequence.charAt(1));
+        assertEquals('\ud83d', sequence.charAt(0));
+        assertEquals('\udd1e', sequence.charAt(4));
+        assertEquals('x', sequence.charAt(2));
+        assertEquals('\ud834', sequence.charAt(3));
+    }
+
+    @Test
+    public void matchesTheStringAcrossCheckpointsForwardAndBackward() {
+        String text = randomText(new Random(7), 30000);
+        Utf8Sequence sequence = sequenceOf(text);
+
+        for(int i = 0 ; i < text.length() ; i++) {
+            assertEquals("forward at " + i, text.charAt(i), sequence.charAt(i));
+        }
+        for(int i = text.length() - 1 ; i >= 0 ; i--) {
+            assertEquals("backward at " + i, text.charAt(i), sequence.charAt(i));
+        }
+        assertEquals(text.length(), sequence.length());
+    }
+
+    @Test
+    public void matchesTheStringForRandomJumps() {
+        Random random = new Random(11);
+        String text = randomText(random, 20000);
+        Utf8Sequence sequence = sequenceOf(text);
+
+        // Short steps back use the cursor, long ones the checkpoints, some land before any checkpoint was made
+        int index = 0;
+        for(int i = 0 ; i < 20000 ; i++) {
+            switch (random.nextInt(4)) {
+                case 0: index = random.nextInt(text.length()); break;
+                case 1: index = Math.max(0, index - random.nextInt(5000)); break;
+                case 2: index = Math.min(text.length() - 1, index + random.nextInt(5000)); break;
+                default: index = Math.max(0, index - random.nextInt(8)); break;
+            }
+            assertEquals("at " + index, text.charAt(index), sequence.charAt(index));
+        }
+    }
+
+    @Test
+    public void decodesMalformedBytesOneAtATime() {
+        // Stray continuation, truncated sequence, invalid lead, overlong forms, surrogate, past U+10FFFF
+        assertDecodes("a\ufffdb", 'a', 0x80, 'b');
+        assertDecodes("\ufffd\ufffdb", 0xE2, 0x82, 'b');
+        assertDecodes("\ufffd\ufffd", 0xC0, 0xAF);
+        assertDecodes("\ufffd\ufffd\ufffd", 0xE0, 0x80, 0xAF);
+        assertDecodes("\ufffd\ufffd\ufffd\ufffd", 0xF0, 0x80, 0x80, 0xAF);
+        assertDecodes("\ufffd\ufffd\ufffd", 0xED, 0xA0, 0x80);
+        assertDecodes("\ufffd\ufffd\ufffd\ufffd", 0xF4, 0x90, 0x80, 0x80);
+        assertDecodes("\ufffd", 0xFF);
+        assertDecodes("\ufffd\u20ac", 0xE2, 0xE2, 0x82, 0xAC);
+    }
+
+    @Test
+    public void stepsBackOverMalformedBytes() {
+        byte[] bytes = {'a', (byte) 0xE2, (byte) 0x82, (byte) 0x80, (byte) 0xE2, (byte) 0x82, 'b'};
+        Utf8Sequence sequence = new Utf8Sequence(ByteBuffer.wrap(bytes));
+        assertEquals(5, sequence.length());
+        for(int i = 4 ; i >= 0 ; i--) {
+            assertEquals("a\u2080\ufffd\ufffdb".charAt(i), sequence.charAt(i));
+        }
+    }
+
+    @Test
+    public void skipsAByteOrderMark() {
+        byte[] bytes = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF, 'l', 'e', 't'};
+        Utf8Sequence sequence = new Utf8Sequence(ByteBuffer.wrap(bytes));
+        assertEquals("let", sequence.toString());
+        assertEquals(3, sequence.length());
+    }
+
+    @Test
+    public void startsAtThePositionOfTheBuffer() {
+        ByteBuffer buffer = ByteBuffer.wrap("xx\u00e9y".getBytes(StandardCharsets.UTF_8));
+        buffer.position(2);
+        assertEquals("\u00e9y", new Utf8Sequence(buffer).toString());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void rejectsReadsPastTheEnd() {
+        sequenceOf("ab").charAt(2);
+    }
+
+    private static void assertDecodes(String expected, int... bytes) {
+        byte[] array = new byte[bytes.length];
+        for(int i = 0 ; i < bytes.length ; i++) array[i] = (byte) bytes[i];
+        Utf8Sequence sequence = new Utf8Sequence(ByteBuffer.wrap(array));
+        assertEquals(expected, sequence.toString());
+        assertEquals(expected.length(), sequence.length());
+    }
+
+    private static Utf8Sequence sequenceOf(String text) {
+        return new Utf8Sequence(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    // Mostly ASCII like source code, with characters of every encoded width
+    private static String randomText(Random random, int codePoints) {
+        StringBuilder builder = new StringBuilder();
+        for(int i = 0 ; i < codePoints ; i++) {
+            switch (random.nextInt(8)) {
+                case 0: builder.append((char) (0x80 + random.nextInt(0x780))); break;
+                case 1: builder.append((char) (0x800 + random.nextInt(0xD000))); break;
+                case 2: builder.appendCodePoint(0x10000 + random.nextInt(0xFFFFF)); break;
+                default: builder.append((char) (' ' + random.nextInt(95))); break;
+            }
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,76 @@
+package object;
+
+import org.junit.Test;
+import token.Symbol;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class EnvironmentTest {
+
+    @Test
+    public void givesGlobalsSlotsInDefinitionOrder() {
+        Environment environment = new Environment();
+        List<Symbol> names = new ArrayList<>();
+        for(int i = 0 ; i < 1000 ; i++) {
+            Symbol name = Symbol.intern("environmentGlobal" + i);
+            names.add(name);
+            assertEquals(i, environment.define(name));
+        }
+        for(int i = 0 ; i < names.size() ; i++) {
+            assertEquals(i, environment.define(names.get(i)));
+        }
+        assertEquals(names, environment.getGlobalNames());
+    }
+
+    @Test
+    public void bindsGlobalsByName() {
+        Environment environment = new Environment();
+        Symbol name = Symbol.intern("environmentBound");
+        assertNull(environment.get(name));
+
+        environment.set(name, KongInteger.valueOf(1));
+        KongObject previous = environment.set(name, KongInteger.valueOf(2));
+        assertEquals(1L, ((KongInteger) previous).getValue());
+        assertEquals(2L, ((KongInteger) environment.get(name)).getValue());
+        assertNull(environment.get(Symbol.intern("environmentUnbound")));
+    }
+
+    @Test
+    public void findsNamesDefinedLongAfterTheirInterning() {
+        // Ids grow for the whole process, a new environment must not care how many names came before
+        for(int i = 0 ; i < 50000 ; i++) {
+            Symbol.intern("environmentFiller" + i);
+        }
+        Symbol early = Symbol.intern("fn");
+        Symbol late = Symbol.intern("environmentLate");
+        for(int i = 0 ; i < 100 ; i++) {
+            Environment environment = new Environment();
+            environment.define(late);
+            environment.define(early);
+            environment.set(late, KongInteger.valueOf(i));
+            assertEquals(0, environment.define(late));
+            assertEquals(1, environment.define(early));
+            assertEquals((long) i, ((KongInteger) environment.get(late)).getValue());
+        }
+    }
+
+    @Test
+    public void looksUpOuterBindingsFromFunctionFrames() {
+        Environment globals = new Environment();
+        Symbol outer = Symbol.intern("environmentOuter");
+        Symbol local = Symbol.intern("environmentLocal");
+        globals.set(outer, KongInteger.valueOf(7));
+
+        Environment frame = new Environment(globals, new Symbol[] {local, outer});
+        frame.set(0, KongInteger.valueOf(1));
+        assertEquals(1L, ((KongInteger) frame.get(0, 0)).getValue());
+        // An unbound slot of the frame falls through to the enclosing binding of its name
+        assertSame(globals.get(outer), frame.get(0, 1));
+        assertSame(globals.get(outer), frame.get(1, 0));
+    }
+}
@@ -0,0 +1,67 @@
+package object;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class KongStringTest {
+
+    @Test
+    public void flattensDeepRopesBuiltInALoop() {
+        KongString appended = new KongString("");
+        KongString prepended = new KongString("");
+        StringBuilder expected = new StringBuilder();
+        for(int i = 0 ; i < 200000 ; i++) {
+            String piece = "piece " + i + " of a rope long enough to skip the copy;";
+            appended = appended.concat(new KongString(piece));
+            prepended = new KongString(piece).concat(prepended);
+            expected.append(piece);
+        }
+
+        assertEquals(expected.length(), appended.getLength());
+        assertEquals(expected.toString(), appended.getValue());
+        assertSame(appended.getValue(), appended.getValue());
+        assertEquals(expected.length(), prepended.getLength());
+        assertTrue(prepended.getValue().startsWith("piece 199999 "));
+    }
+
+    @Test
+    public void flattensSharedPiecesOnce() {
+        KongString base = new KongString(repeat('a', 100));
+        KongString left = base.concat(new KongString(repeat('b', 100)));
+        KongString right = base.concat(new KongString(repeat('c', 100)));
+        KongString both = left.concat(right);
+
+        assertEquals(repeat('a', 100) + repeat('c', 100), right.getValue());
+        assertEquals(repeat('a', 100) + repeat('b', 100) + repeat('a', 100) + repeat('c', 100), both.getValue());
+        assertEquals(repeat('a', 100) + repeat('b', 100), left.getValue());
+    }
+
+    @Test
+    public void comparesRopesAndFlatStringsByValue() {
+        KongString rope = new KongString(repeat('x', 60)).concat(new KongString(repeat('y', 60)));
+        KongString flat = new KongString(repeat('x', 60) + repeat('y', 60));
+
+        assertEquals(flat.hashKey(), rope.hashKey());
+        assertTrue(rope.sameKey(flat));
+        assertTrue(flat.sameKey(rope));
+    }
+
+    @Test
+    public void copiesShortConcatenationsAndSkipsEmptyOnes() {
+        KongString hello = new KongString("hello");
+        KongString empty = new KongString("");
+
+        assertSame(hello, hello.concat(empty));
+        assertSame(hello, empty.concat(hello));
+        assertEquals("hello world", hello.concat(new KongString(" world")).getValue());
+    }
+
+    private static String repeat(char c, int count) {
+        StringBuilder builder = new StringBuilder(count);
+        for(int i = 0 ; i < count ; i++) builder.append(c);
+        return builder.toString();
+    }
+}
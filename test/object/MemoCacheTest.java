@@ -0,0 +1,126 @@
+package object;
+
+import embed.KongProgram;
+import org.junit.Test;
+import repl.Engine;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class MemoCacheTest {
+
+    @Test
+    public void evictsTheLeastRecentlyUsedEntryAtCapacity() {
+        MemoCache cache = new MemoCache(2);
+        cache.put(key(1), KongInteger.valueOf(10));
+        cache.put(key(2), KongInteger.valueOf(20));
+        // Reading 1 makes 2 the least recently used
+        cache.get(key(1));
+        cache.put(key(3), KongInteger.valueOf(30));
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+        assertNull(cache.get(key(2)));
+        assertSame(KongInteger.valueOf(10), cache.get(key(1)));
+        assertSame(KongInteger.valueOf(30), cache.get(key(3)));
+    }
+
+    @Test
+    public void countsHitsMissesAndEvictions() {
+        MemoCache cache = new MemoCache(1);
+        assertNull(cache.get(key(1)));
+        cache.put(key(1), KongInteger.valueOf(10));
+        cache.get(key(1));
+        cache.get(key(1));
+        cache.put(key(2), KongInteger.valueOf(20));
+        cache.put(key(3), KongInteger.valueOf(30));
+        assertNull(cache.get(key(1)));
+
+        assertEquals(2, cache.getHits());
+        assertEquals(2, cache.getMisses());
+        assertEquals(2, cache.getEvictions());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void replacingAnEntryDoesNotEvict() {
+        MemoCache cache = new MemoCache(1);
+        KongObject replaced = KongInteger.valueOf(11);
+        cache.put(key(1), KongInteger.valueOf(10));
+        cache.put(key(1), replaced);
+
+        assertEquals(0, cache.getEvictions());
+        assertSame(replaced, cache.get(key(1)));
+    }
+
+    @Test
+    public void comparesArgumentsByValue() {
+        MemoCache cache = new MemoCache(MemoCache.DEFAULT_CAPACITY);
+        KongObject result = new KongString("result");
+        cache.put(MemoCache.Key.of(Arrays.asList(new KongString("a"), KongInteger.valueOf(1), KongBoolean.TRUE)), result);
+
+        assertSame(result, cache.get(MemoCache.Key.of(Arrays.asList(new KongString("a"), KongInteger.valueOf(1), KongBoolean.TRUE))));
+        assertNull(cache.get(MemoCache.Key.of(Arrays.asList(new KongString("a"), KongInteger.valueOf(1), KongBoolean.FALSE))));
+        assertNull(cache.get(MemoCache.Key.of(Arrays.asList(new KongString("a"), KongInteger.valueOf(1)))));
+        assertEquals(MemoCache.Key.of(Collections.emptyList()), MemoCache.Key.of(Collections.emptyList()));
+    }
+
+    @Test
+    public void unhashableArgumentsHaveNoKey() {
+        KongObject array = new KongArray(Collections.singletonList(KongInteger.valueOf(1)));
+        assertNull(MemoCache.Key.of(Arrays.asList(KongInteger.valueOf(1), array)));
+        assertNull(MemoCache.Key.of(new KongObject[]{ array, KongInteger.valueOf(1) }, 0, 2));
+        // Only the range is checked, the callee in front of the arguments is not part of the key
+        assertEquals(key(1), MemoCache.Key.of(new KongObject[]{ array, KongInteger.valueOf(1) }, 1, 2));
+    }
+
+    @Test
+    public void memoizedFunctionsReportTheirStats() {
+        assertRuns("[832040, 31, 28, 31]", ""
+                + "let fib = memo(fn(n) { if (n < 2) { n } else { fib(n - 1) + fib(n - 2) } });"
+                + "let result = fib(30);"
+                + "let s = memo_stats(fib);"
+                + "[result, s[\"misses\"], s[\"hits\"], s[\"size\"]]");
+    }
+
+    @Test
+    public void memoizedFunctionsEvictAtTheirCapacity() {
+        assertRuns("[[2, 4, 2, 6, 4], 1, 4, 2, 2]", ""
+                + "let f = memo(fn(x) { x * 2 }, 2);"
+                + "let results = [f(1), f(2), f(1), f(3), f(2)];"
+                + "let s = memo_stats(f);"
+                + "[results, s[\"hits\"], s[\"misses\"], s[\"evictions\"], s[\"size\"]]");
+    }
+
+    @Test
+    public void callsWithUnhashableArgumentsSkipTheCache() {
+        assertRuns("[2, 2, 0, 0, 0]", ""
+                + "let f = memo(fn(a) { len(a) });"
+                + "let first = f([1, 2]);"
+                + "let second = f([1, 2]);"
+                + "let s = memo_stats(f);"
+                + "[first, second, s[\"hits\"], s[\"misses\"], s[\"size\"]]");
+    }
+
+    @Test
+    public void rejectsArgumentsThatAreNotFunctions() {
+        assertRuns("ERROR: argument to `memo` must be FUNCTION, got INTEGER", "memo(1)");
+        assertRuns("ERROR: argument to `memo` must be FUNCTION, got BUILTIN", "memo(len)");
+        assertRuns("ERROR: capacity of `memo` must be a positive INTEGER, got 0", "memo(fn(x) { x }, 0)");
+        assertRuns("ERROR: argument to `memo_stats` must be a memoized FUNCTION, got FUNCTION", "memo_stats(fn(x) { x })");
+    }
+
+    private static void assertRuns(String expected, String source) {
+        for(Engine engine : Engine.values()) {
+            assertEquals(engine + ": " + source, expected, KongProgram.compile(source, engine).execute().inspect());
+        }
+    }
+
+    private static MemoCache.Key key(long argument) {
+        return MemoCache.Key.of(Collections.singletonList(KongInteger.valueOf(argument)));
+    }
+}
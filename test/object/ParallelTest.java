@@ -0,0 +1,55 @@
+package object;
+
+import embed.KongProgram;
+import org.junit.After;
+import org.junit.Test;
+import repl.Engine;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+
+public class ParallelTest {
+
+    private static final String SQUARES = ""
+            + "let range = fn(i, n, acc) { if (i == n) { acc } else { range(i + 1, n, push(acc, i)) } };"
+            + "let squares = pmap(range(0, 5000, []), fn(x) { x * x });"
+            + "preduce(squares, 0, fn(a, b) { a + b })";
+
+    // Sum of the squares below 5000
+    private static final String EXPECTED = "41654167500";
+
+    private final int defaultParallelism = Parallel.getParallelism();
+
+    @After
+    public void restoreParallelism() {
+        Parallel.setParallelism(defaultParallelism);
+    }
+
+    @Test
+    public void mapsAndReducesOnBothEngines() {
+        Parallel.setParallelism(4);
+        assertEquals(EXPECTED, KongProgram.compile(SQUARES, Engine.EVALUATOR).execute().inspect());
+        assertEquals(EXPECTED, KongProgram.compile(SQUARES, Engine.VM).execute().inspect());
+    }
+
+    @Test
+    public void runsInProgressSurviveAParallelismChange() throws Exception {
+        KongProgram program = KongProgram.compile(SQUARES);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<?>[] runs = new Future<?>[8];
+            for(int i = 0 ; i < runs.length ; i++) {
+                runs[i] = executor.submit(() -> program.execute().inspect());
+                Parallel.setParallelism(1 + i % 3);
+            }
+            for(Future<?> run : runs) {
+                assertEquals(EXPECTED, run.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package object;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class PersistentMapTest {
+
+    @Test
+    public void switchesFromTheFlatTableToTheTrieAtSixteenEntries() {
+        List<KongObject> keys = new ArrayList<>();
+        PersistentMap map = PersistentMap.EMPTY;
+        for(int i = 0 ; i < 40 ; i++) {
+            PersistentMap previous = map;
+            KongObject key = KongInteger.valueOf(i * 7919);
+            keys.add(key);
+            map = map.assoc(key, KongInteger.valueOf(i));
+
+            assertEquals(i + 1, map.size());
+            assertEquals(i, previous.size());
+            assertNull(previous.get(key));
+            assertContainsInOrder(keys, map);
+        }
+    }
+
+    @Test
+    public void replacesValuesOnBothSidesOfTheSwitch() {
+        for(int size : new int[] {15, 16, 17, 100}) {
+            PersistentMap map = PersistentMap.EMPTY;
+            for(int i = 0 ; i < size ; i++) {
+                map = map.assoc(KongInteger.valueOf(i), KongInteger.valueOf(i));
+            }
+            PersistentMap replaced = map.assoc(KongInteger.valueOf(3), new KongString("three"));
+
+            assertEquals(size, replaced.size());
+            assertEquals("three", replaced.get(KongInteger.valueOf(3)).inspect());
+            assertEquals("3", map.get(KongInteger.valueOf(3)).inspect());
+            assertEquals("0", replaced.iterator().next().getValue().inspect());
+        }
+    }
+
+    @Test
+    public void keepsKeysWhoseHashesCollide() {
+        // Every key is a sequence of "Aa" and "BB", which have the same String hash code
+        List<KongObject> keys = new ArrayList<>();
+        for(int bits = 0 ; bits < 64 ; bits++) {
+            StringBuilder key = new StringBuilder();
+            for(int i = 0 ; i < 6 ; i++) {
+                key.append((bits & (1 << i)) != 0 ? "Aa" : "BB");
+            }
+            keys.add(new KongString(key.toString()));
+            keys.add(KongInteger.valueOf(bits));
+        }
+
+        PersistentMap map = PersistentMap.EMPTY;
+        for(KongObject key : keys) {
+            map = map.assoc(key, key);
+        }
+        assertContainsInOrder(keys, map);
+
+        // Removing colliding keys one by one leaves the others reachable
+        for(int i = 0 ; i < keys.size() ; i += 2) {
+            PersistentMap previous = map;
+            map = map.dissoc(keys.get(i));
+            assertNull(map.get(keys.get(i)));
+            assertSame(keys.get(i), previous.get(keys.get(i)));
+            for(int j = i + 2 ; j < keys.size() ; j++) {
+                assertSame(keys.get(j), map.get(keys.get(j)));
+            }
+        }
+        assertEquals(64, map.size());
+    }
+
+    @Test
+    public void removesEveryKeyFromTheTrie() {
+        PersistentMap map = PersistentMap.EMPTY;
+        for(int i = 0 ; i < 100 ; i++) {
+            map = map.assoc(KongInteger.valueOf(i), KongInteger.valueOf(i));
+        }
+        for(int i = 99 ; i >= 0 ; i--) {
+            map = map.dissoc(KongInteger.valueOf(i));
+            assertEquals(i, map.size());
+            assertNull(map.get(KongInteger.valueOf(i)));
+        }
+        assertSame(PersistentMap.EMPTY, map);
+        assertSame(map, map.dissoc(KongInteger.valueOf(1)));
+    }
+
+    private static void assertContainsInOrder(List<KongObject> keys, PersistentMap map) {
+        assertEquals(keys.size(), map.size());
+        int index = 0;
+        for(KongMapPair pair : map) {
+            assertSame(keys.get(index), pair.getKey());
+            assertSame(pair.getValue(), map.get(pair.getKey()));
+            index++;
+        }
+        assertEquals(keys.size(), index);
+    }
+}
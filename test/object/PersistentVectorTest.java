@@ -0,0 +1,86 @@
+package object;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class PersistentVectorTest {
+
+    @Test
+    public void pushesAcrossTailAndTrieBoundaries() {
+        for(int length : new int[] {31, 32, 33, 1023, 1024, 1025, 1056, 1057, 32 * 1024 + 33}) {
+            PersistentVector vector = PersistentVector.EMPTY;
+            for(int i = 0 ; i < length ; i++) {
+                vector = vector.push(KongInteger.valueOf(i));
+            }
+            assertElements(range(0, length), vector);
+        }
+    }
+
+    @Test
+    public void buildsAcrossTailAndTrieBoundaries() {
+        for(int length : new int[] {32, 33, 1024, 1025, 1056, 1057}) {
+            assertElements(range(0, length), PersistentVector.of(range(0, length)));
+        }
+    }
+
+    @Test
+    public void boxesLeavesWhenANonIntegerIsStored() {
+        PersistentVector integers = PersistentVector.of(range(0, 1025));
+        PersistentVector mixed = integers.update(40, new KongString("x")).push(KongBoolean.TRUE);
+
+        assertEquals("x", mixed.get(40).inspect());
+        assertEquals(KongBoolean.TRUE, mixed.get(1025));
+        assertEquals(41L, ((KongInteger) mixed.get(41)).getValue());
+        assertElements(range(0, 1025), integers);
+    }
+
+    @Test
+    public void keepsTheOriginalWhenPushingAfterASlice() {
+        PersistentVector vector = PersistentVector.of(range(0, 100));
+        PersistentVector window = vector.slice(10, 90).push(KongInteger.valueOf(-1));
+
+        assertElements(range(0, 100), vector);
+        List<KongObject> expected = range(10, 90);
+        expected.add(KongInteger.valueOf(-1));
+        assertElements(expected, window);
+    }
+
+    @Test
+    public void compactsRepeatedRests() {
+        PersistentVector vector = PersistentVector.of(range(0, 2000));
+        for(int dropped = 1 ; dropped < 2000 ; dropped++) {
+            vector = vector.slice(1, vector.size());
+            assertEquals(dropped, ((KongInteger) vector.get(0)).getValue());
+            assertEquals(1999L, ((KongInteger) vector.get(vector.size() - 1)).getValue());
+        }
+        vector = vector.push(KongInteger.valueOf(2000));
+        assertElements(range(1999, 2001), vector);
+    }
+
+    @Test
+    public void compactsSmallSlicesOfLargeVectors() {
+        PersistentVector vector = PersistentVector.of(range(0, 5000));
+        assertElements(range(1000, 1070), vector.slice(1000, 1070));
+        assertElements(range(30, 1100), vector.slice(30, 1100));
+        assertElements(range(0, 4000), vector.slice(0, 4000));
+    }
+
+    private static List<KongObject> range(int from, int to) {
+        List<KongObject> elements = new ArrayList<>();
+        for(int i = from ; i < to ; i++) {
+            elements.add(KongInteger.valueOf(i));
+        }
+        return elements;
+    }
+
+    private static void assertElements(List<KongObject> expected, PersistentVector vector) {
+        assertEquals(expected.size(), vector.size());
+        for(int i = 0 ; i < expected.size() ; i++) {
+            assertEquals(((KongInteger) expected.get(i)).getValue(), ((KongInteger) vector.get(i)).getValue());
+        }
+    }
+}
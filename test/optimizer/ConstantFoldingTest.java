@@ -0,0 +1,63 @@
+package optimizer;
+
+import ast.Program;
+import lexer.Lexer;
+import org.junit.Test;
+import parser.Parser;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+
+public class ConstantFoldingTest {
+
+    @Test
+    public void foldsIntegerArithmeticAndComparisons() {
+        assertFolded("7", "1 + 2 * 3");
+        assertFolded("-5", "-(10 / 2)");
+        assertFolded("true", "2 * 3 > 5");
+        assertFolded("false", "(1 + 1) != 2");
+    }
+
+    @Test
+    public void foldsStringsAndBooleans() {
+        assertFolded("abc", "\"a\" + \"b\" + \"c\"");
+        assertFolded("true", "\"a\" + \"b\" == \"ab\"");
+        assertFolded("true", "!false");
+        assertFolded("true", "!true == false");
+        assertFolded("false", "true != true");
+    }
+
+    @Test
+    public void leavesOperandsThatAreNotLiteralsAlone() {
+        assertFolded("(x + 3)", "x + (1 + 2)");
+        assertFolded("((1 + x) + 2)", "1 + x + 2");
+    }
+
+    @Test
+    public void leavesDivisionByZeroForRuntime() {
+        assertFolded("(1 / 0)", "1 / 0");
+        assertFolded("(10 / 0)", "(5 + 5) / (1 - 1)");
+    }
+
+    @Test
+    public void leavesOverflowForRuntime() {
+        assertFolded("(9223372036854775807 + 1)", "9223372036854775807 + 1");
+        assertFolded("(9223372036854775807 * 2)", "9223372036854775807 * 2");
+        assertFolded("(-9223372036854775807 - 2)", "-9223372036854775807 - 2");
+        assertFolded("9223372036854775806", "9223372036854775807 - 1");
+    }
+
+    @Test
+    public void leavesOperatorsThatFailAlone() {
+        assertFolded("(-true)", "-true");
+        assertFolded("(a - b)", "\"a\" - \"b\"");
+        assertFolded("(1 + true)", "1 + true");
+    }
+
+    private static void assertFolded(String expected, String source) {
+        Program program = new Parser(new Lexer(source)).parseProgram();
+        Optimizer optimizer = new Optimizer(Collections.<OptimizationPass>singletonList(new ConstantFolding()));
+        assertEquals(expected, optimizer.optimize(program).toString());
+    }
+}
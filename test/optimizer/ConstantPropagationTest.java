@@ -0,0 +1,67 @@
+package optimizer;
+
+import ast.Program;
+import embed.KongProgram;
+import lexer.Lexer;
+import org.junit.Test;
+import parser.Parser;
+import repl.Engine;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+
+public class ConstantPropagationTest {
+
+    @Test
+    public void replacesNamesBoundOnceToALiteral() {
+        assertPropagated("let x = 1;let y = s;2s", "let x = 1; let y = \"s\"; x + 1; y");
+        assertPropagated("let f = fn() let x = 3;4;", "let f = fn() { let x = 3; x + 1 }");
+        assertRuns("4", "let f = fn() { let x = 3; x + 1 }; f()");
+    }
+
+    @Test
+    public void doesNotPropagateANameThatIsRebound() {
+        String source = "let x = 1; let f = fn() { x }; let x = 2; f()";
+        assertPropagated("let x = 1;let f = fn() x;let x = 2;f()", source);
+        assertRuns("2", source);
+    }
+
+    @Test
+    public void doesNotPropagatePastALetInsideAnIfBlock() {
+        // Blocks have no scope of their own, the inner let rebinds the x of the function
+        String inFunction = "let f = fn(c) { let x = 1; if (c) { let x = 2; }; x }; [f(true), f(false)]";
+        assertRuns("[2, 1]", inFunction);
+
+        String atTopLevel = "let c = len(\"a\") > 0; let x = 1; if (c) { let x = 2; }; x";
+        assertRuns("2", atTopLevel);
+    }
+
+    @Test
+    public void doesNotPropagateGlobalsIntoFunctions() {
+        assertPropagated("let x = 1;let f = fn() x;", "let x = 1; let f = fn() { x }");
+    }
+
+    @Test
+    public void doesNotPropagateIntoFunctionsThatShadowTheName() {
+        assertRuns("[5, 1]", "let g = fn() { let x = 1; let h = fn(x) { x }; [h(5), x] }; g()");
+        assertRuns("[5, 1]", "let g = fn() { let x = 1; let h = fn() { let x = 5; x }; [h(), x] }; g()");
+    }
+
+    private static void assertPropagated(String expected, String source) {
+        Program program = new Parser(new Lexer(source)).parseProgram();
+        Optimizer optimizer = new Optimizer(Arrays.asList(new ConstantPropagation(), new ConstantFolding()));
+        assertEquals(expected, optimizer.optimize(program).toString());
+    }
+
+    // The optimized program gives the same value on both engines as the original
+    static void assertRuns(String expected, String source) {
+        for(Engine engine : Engine.values()) {
+            for(Optimizer optimizer : new Optimizer[] {new Optimizer(), new Optimizer(Collections.<OptimizationPass>emptyList())}) {
+                Program program = new Parser(new Lexer(source)).parseProgram();
+                assertEquals(engine + ": " + source, expected, KongProgram.compile(program, engine, optimizer).execute().inspect());
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package optimizer;
+
+import ast.Program;
+import lexer.Lexer;
+import org.junit.Test;
+import parser.Parser;
+
+import java.util.Collections;
+
+import static optimizer.ConstantPropagationTest.assertRuns;
+import static org.junit.Assert.assertEquals;
+
+public class DeadBranchEliminationTest {
+
+    @Test
+    public void keepsOnlyTheBranchThatRuns() {
+        assertEliminated("1", "if (true) { 1 } else { 2 }");
+        assertEliminated("2", "if (false) { 1 } else { 2 }");
+        assertEliminated("3", "if (0) { 3 } else { 4 }");
+        assertRuns("3", "if (0) { 3 } else { 4 }");
+    }
+
+    @Test
+    public void keepsTheNullValueOfAnIfThatDoesNotRun() {
+        assertEliminated("iffalse ", "if (false) { 1 }");
+        assertRuns("null", "if (false) { 1 }");
+        assertRuns("null", "let f = fn() { if (false) { 1 } }; f()");
+        assertRuns("[null, 2]", "[if (false) { 1 }, 2]");
+    }
+
+    @Test
+    public void inlinesStatementLevelBranches() {
+        assertEliminated("let x = 1;x", "if (true) { let x = 1; }; x");
+        assertEliminated("5", "if (false) { puts(1) }; 5");
+        assertRuns("1", "if (true) { let x = 1; }; x");
+    }
+
+    @Test
+    public void keepsABranchEndingInALetWhenItIsTheValue() {
+        assertEliminated("iftrue let x = 1;", "if (true) { let x = 1; }");
+        assertRuns("1", "let f = fn() { if (true) { let x = 1; }; x }; f()");
+    }
+
+    @Test
+    public void leavesConditionsThatAreNotLiteralsAlone() {
+        assertEliminated("ifx 1else 2", "if (x) { 1 } else { 2 }");
+    }
+
+    private static void assertEliminated(String expected, String source) {
+        Program program = new Parser(new Lexer(source)).parseProgram();
+        Optimizer optimizer = new Optimizer(Collections.<OptimizationPass>singletonList(new DeadBranchElimination()));
+        assertEquals(expected, optimizer.optimize(program).toString());
+    }
+}
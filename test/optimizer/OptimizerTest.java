@@ -0,0 +1,38 @@
+package optimizer;
+
+import lexer.Lexer;
+import org.junit.Test;
+import parser.Parser;
+
+import static optimizer.ConstantPropagationTest.assertRuns;
+import static org.junit.Assert.assertEquals;
+
+public class OptimizerTest {
+
+    private static final String SOURCE = ""
+            + "let a = [1, 2 * 3]; let f = fn(x, y) { if (x > 1) { let z = 2 + 2; z } else { y } };"
+            + "let m = {\"k\": !true, 1: [fn(b) { b }(3)]}; if (false) { 1 } else { f(a[0], m[\"k\"]) }; -(4 - 5)";
+
+    @Test
+    public void passesFeedEachOther() {
+        // Folding exposes a literal to propagate, which exposes a condition to fold and a branch to drop
+        assertEquals("let x = 2;big", new Optimizer().optimize(
+                new Parser(new Lexer("let x = 1 + 1; if (x * 2 > 3) { \"big\" } else { \"small\" }")).parseProgram()).toString());
+        assertRuns("big", "let x = 1 + 1; if (x * 2 > 3) { \"big\" } else { \"small\" }");
+    }
+
+    @Test
+    public void optimizesTheTreesOfMalformedInput() {
+        // The parser leaves null nodes and lists behind for every prefix that does not parse
+        for(int end = 1 ; end <= SOURCE.length() ; end++) {
+            Parser parser = new Parser(new Lexer(SOURCE.substring(0, end)));
+            new Optimizer().optimize(parser.parseProgram());
+        }
+        new Optimizer().optimize(new Parser(new Lexer("let a = [1, 2")).parseProgram());
+    }
+
+    @Test
+    public void runsLikeTheOriginal() {
+        assertRuns("1", SOURCE);
+    }
+}
@@ -0,0 +1,89 @@
+package parser;
+
+import ast.Statement;
+import lexer.Lexer;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DocumentTest {
+
+    private static final String SOURCE = ""
+            + "let add = fn(a, b) { a + b };\n"
+            + "let twice = fn(f, x) { f(f(x)) };\n"
+            + "let values = [1, 2, 3];\n"
+            + "let table = {\"one\": 1, \"two\": 2};\n"
+            + "if (add(1, 2) > 2) { puts(\"big\") } else { puts(\"small\") }\n"
+            + "twice(fn(x) { x * 2 }, values[1]);\n"
+            + "let last = table[\"two\"];\n"
+            + "last\n";
+
+    @Test
+    public void reparsesOnlyStatementsAroundAnEdit() {
+        Document document = Document.parse(SOURCE);
+        int offset = SOURCE.indexOf("[1, 2, 3]");
+        Document edited = document.edit(offset + 1, 1, "10");
+
+        assertMatchesFullParse(edited);
+        assertTrue("reparsed " + edited.getReparsedCount(), edited.getReparsedCount() <= 3);
+    }
+
+    @Test
+    public void matchesAFullParseAfterEditsThatJoinAndSplitStatements() {
+        Document document = Document.parse(SOURCE);
+
+        // Removing a semicolon and a closing brace changes where statements end
+        document = document.edit(SOURCE.indexOf(";"), 1, "");
+        assertMatchesFullParse(document);
+        int brace = document.getSource().indexOf("}", document.getSource().indexOf("twice"));
+        document = document.edit(brace, 1, "");
+        assertMatchesFullParse(document);
+        document = document.edit(brace, 0, "};\nlet extra = 5;");
+        assertMatchesFullParse(document);
+        document = document.edit(0, 0, "let first = 0;\n");
+        assertMatchesFullParse(document);
+        document = document.edit(document.getSource().length(), 0, "\nfirst + extra");
+        assertMatchesFullParse(document);
+    }
+
+    @Test
+    public void matchesAFullParseAfterRandomEdits() {
+        String[] insertions = {"", ";", "}", "{", "let x = ", "fn(a) { a }", "(", ")", "1 + ", "\n", "\"s\"", "if"};
+        Random random = new Random(42);
+        for(int round = 0 ; round < 50 ; round++) {
+            Document document = Document.parse(SOURCE);
+            for(int step = 0 ; step < 20 ; step++) {
+                int length = document.getSource().length();
+                int offset = random.nextInt(length + 1);
+                int removed = random.nextInt(Math.min(6, length - offset) + 1);
+                document = document.edit(offset, removed, insertions[random.nextInt(insertions.length)]);
+                assertMatchesFullParse(document);
+            }
+        }
+    }
+
+    private static void assertMatchesFullParse(Document document) {
+        Parser parser = new Parser(new Lexer(document.getSource()));
+        List<Statement> expected = parser.parseProgram().getStatements();
+        List<Statement> actual = document.getProgram().getStatements();
+
+        assertEquals(document.getSource(), parser.getErrors(), document.getErrors());
+        assertEquals(document.getSource(), expected.size(), actual.size());
+        for(int i = 0 ; i < expected.size() ; i++) {
+            assertEquals(document.getSource(), describe(expected.get(i)), describe(actual.get(i)));
+        }
+    }
+
+    // Some malformed input leaves nodes the parser gave up on without reporting an error, they cannot be printed
+    private static String describe(Statement statement) {
+        try {
+            return statement.toString();
+        } catch (NullPointerException e) {
+            return "incomplete " + statement.getClass().getSimpleName();
+        }
+    }
+}
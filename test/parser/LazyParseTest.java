@@ -0,0 +1,162 @@
+package parser;
+
+import ast.BlockStatement;
+import ast.DeferredBody;
+import ast.ExpressionStatement;
+import ast.FunctionLiteral;
+import ast.Identifier;
+import ast.LetStatement;
+import ast.Program;
+import evaluator.Evaluator;
+import lexer.Lexer;
+import object.Environment;
+import object.Parallel;
+import org.junit.Test;
+import token.Symbol;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class LazyParseTest {
+
+    @Test
+    public void leavesBodiesUnparsedUntilTheFirstCall() {
+        Program program = parseLazily("let f = fn(x) { x * 2 }; let g = fn() { 1 };");
+        FunctionLiteral f = functionBoundBy(program, 0);
+        assertFalse(f.isBodyParsed());
+        assertEquals("let f = fn(x) { ... };let g = fn() { ... };", program.toString());
+
+        BlockStatement body = f.getBody();
+        assertTrue(f.isBodyParsed());
+        assertSame(body, f.getBody());
+        assertEquals("(x * 2)", body.toString());
+        assertFalse(functionBoundBy(program, 1).isBodyParsed());
+    }
+
+    @Test
+    public void runsLikeAnEagerParse() {
+        String source = ""
+                + "let adder = fn(n) { fn(x) { let sum = x + n; if (sum > 10) { return \"big\"; }; sum } };"
+                + "let apply = fn(f, values) { [f(values[0]), f(values[1])] };"
+                + "apply(adder(5), [1, 9])";
+        assertEquals("[6, big]", run(source));
+    }
+
+    @Test
+    public void reportsSyntaxErrorsOnTheFirstCall() {
+        // The let before the call runs, the error stops the program at the call
+        String source = "let log = fn(x) { x }; let broken = fn() { 1 + }; let before = log(3); broken(); before";
+        String result = run(source);
+        assertTrue(result, result.startsWith("ERROR: parser errors in function body: "));
+
+        assertEquals("5", run("let broken = fn() { let = 2 }; 5"));
+    }
+
+    @Test
+    public void rejectsUnbalancedBodiesUpFront() {
+        Parser parser = new Parser(new Lexer("let f = fn() { [1, 2 }; 5"), true);
+        parser.parseProgram();
+        assertFalse(parser.getErrors().isEmpty());
+    }
+
+    @Test
+    public void materializesABodyOnceAcrossThreads() throws Exception {
+        AtomicInteger parses = new AtomicInteger();
+        FunctionLiteral literal = new FunctionLiteral(Collections.<Identifier>emptyList(), new DeferredBody() {
+            @Override
+            public BlockStatement parse(List<String> errors) {
+                parses.incrementAndGet();
+                return new BlockStatement(Collections.emptyList());
+            }
+
+            @Override
+            public void forEachName(Consumer<Symbol> action) {
+            }
+
+            @Override
+            public Object getLock() {
+                return this;
+            }
+        });
+
+        int threads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<BlockStatement>> bodies = new ArrayList<>();
+            for(int i = 0 ; i < threads ; i++) {
+                bodies.add(executor.submit(new Callable<BlockStatement>() {
+                    @Override
+                    public BlockStatement call() throws Exception {
+                        start.await();
+                        return literal.getBody();
+                    }
+                }));
+            }
+            start.countDown();
+            for(Future<BlockStatement> body : bodies) {
+                assertSame(bodies.get(0).get(), body.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(1, parses.get());
+    }
+
+    @Test
+    public void materializesBodiesFromParallelBuiltins() {
+        // Every element calls a different unparsed function, all of them read the one shared source
+        StringBuilder source = new StringBuilder("let fs = [");
+        StringBuilder indexes = new StringBuilder("[");
+        StringBuilder expected = new StringBuilder("[");
+        for(int i = 0 ; i < 200 ; i++) {
+            String separator = i == 0 ? "" : ", ";
+            source.append(separator).append("fn(x) { let y = x * ").append(i).append("; y + 1 }");
+            indexes.append(separator).append(i);
+            expected.append(separator).append(i * i + 1);
+        }
+        source.append("]; let shared = fn(x) { x };");
+        source.append("pmap(").append(indexes).append("], fn(i) { shared(fs[i](i)) })");
+        expected.append("]");
+
+        int parallelism = Parallel.getParallelism();
+        Parallel.setParallelism(8);
+        try {
+            for(int round = 0 ; round < 5 ; round++) {
+                assertEquals(expected.toString(), run(source.toString()));
+            }
+        } finally {
+            Parallel.setParallelism(parallelism);
+        }
+    }
+
+    private static Program parseLazily(String source) {
+        Parser parser = new Parser(new Lexer(source), true);
+        Program program = parser.parseProgram();
+        assertEquals(Collections.emptyList(), parser.getErrors());
+        return program;
+    }
+
+    private static String run(String source) {
+        return new Evaluator(new Environment()).visit(parseLazily(source)).inspect();
+    }
+
+    private static FunctionLiteral functionBoundBy(Program program, int index) {
+        Object statement = program.getStatements().get(index);
+        if(statement instanceof LetStatement) return (FunctionLiteral) ((LetStatement) statement).getValue();
+        return (FunctionLiteral) ((ExpressionStatement) statement).getExpression();
+    }
+}
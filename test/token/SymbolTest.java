@@ -0,0 +1,92 @@
+package token;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class SymbolTest {
+
+    @Test
+    public void internsEachNameOnce() {
+        Symbol symbol = Symbol.intern("symbolName");
+        assertSame(symbol, Symbol.intern("symbolName"));
+        assertSame(symbol, Symbol.intern("xx symbolName yy", 3, 13));
+        assertSame(symbol, Symbol.intern(new StringBuilder("symbolName"), 0, 10));
+        assertSame(symbol, Symbol.byId(symbol.getId()));
+        assertEquals("symbolName", symbol.getName());
+        assertEquals("symbolName".hashCode(), symbol.hashCode());
+        assertNotSame(symbol, Symbol.intern("symbolNam"));
+        assertNotSame(symbol, Symbol.intern("symbolNamf"));
+    }
+
+    @Test
+    public void internsCollidingNamesSeparately() {
+        Symbol first = Symbol.intern("AaAaBB");
+        Symbol second = Symbol.intern("BBAaAa");
+        assertEquals(first.hashCode(), second.hashCode());
+        assertNotSame(first, second);
+        assertSame(first, Symbol.intern("AaAaBB"));
+        assertSame(second, Symbol.intern("BBAaAa"));
+    }
+
+    @Test
+    public void givesKeywordsTheirTokenTypes() {
+        assertEquals(TokenType.FUNCTION, Symbol.intern("fn").getTokenType());
+        assertEquals(TokenType.LET, Symbol.intern("let").getTokenType());
+        assertEquals(TokenType.TRUE, Symbol.intern("true").getTokenType());
+        assertEquals(TokenType.FALSE, Symbol.intern("false").getTokenType());
+        assertEquals(TokenType.IF, Symbol.intern("if").getTokenType());
+        assertEquals(TokenType.ELSE, Symbol.intern("else").getTokenType());
+        assertEquals(TokenType.RETURN, Symbol.intern("return").getTokenType());
+        assertEquals(TokenType.IDENT, Symbol.intern("lets").getTokenType());
+        assertEquals(TokenType.IDENT, Symbol.intern("Fn").getTokenType());
+    }
+
+    @Test
+    public void internsConcurrentlyToOneInstancePerName() throws Exception {
+        // Every thread interns the same names in its own order, across several growths of the table
+        int threads = 8;
+        int names = 20000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Symbol[]>> results = new ArrayList<>();
+            for(int t = 0 ; t < threads ; t++) {
+                final int offset = t * 997;
+                results.add(executor.submit(new Callable<Symbol[]>() {
+                    @Override
+                    public Symbol[] call() {
+                        Symbol[] symbols = new Symbol[names];
+                        for(int i = 0 ; i < names ; i++) {
+                            int n = (i + offset) % names;
+                            symbols[n] = Symbol.intern("symbolConcurrent" + n);
+                        }
+                        return symbols;
+                    }
+                }));
+            }
+
+            Symbol[] expected = results.get(0).get();
+            for(Future<Symbol[]> result : results) {
+                Symbol[] symbols = result.get();
+                for(int i = 0 ; i < names ; i++) {
+                    assertSame(expected[i], symbols[i]);
+                }
+            }
+            for(int i = 0 ; i < names ; i++) {
+                assertEquals("symbolConcurrent" + i, expected[i].getName());
+                assertSame(expected[i], Symbol.byId(expected[i].getId()));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
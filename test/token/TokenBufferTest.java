@@ -0,0 +1,104 @@
+package token;
+
+import lexer.Lexer;
+import lexer.Utf8Sequence;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TokenBufferTest {
+
+    // Every kind of token, repeated well past one 4096 token page
+    private static final String STATEMENT =
+            "let name = fn(a, b) { if (a < b) { return \"text\"; } else { [a, b][0] * -12 / 3 != true } };"
+                    + " let map = {\"k\": false, 1: a == b}; a > b; !name(1, 2)\n";
+
+    @Test
+    public void matchesTheLexerTokenByToken() {
+        String source = repeat(STATEMENT, 300);
+        TokenBuffer buffer = new Lexer(source).tokenize();
+        Lexer lexer = new Lexer(source);
+
+        int index = 0;
+        for(Token token = lexer.nextToken() ; ; token = lexer.nextToken(), index++) {
+            assertEquals("type of " + index, token.getTokenType(), buffer.getType(index));
+            assertEquals("literal of " + index, token.getLiteral(), buffer.getLiteral(index));
+            if(token.getTokenType() == TokenType.EOF) break;
+        }
+        assertEquals(index + 1, buffer.size());
+        assertTrue(buffer.size() > 3 * 4096);
+    }
+
+    @Test
+    public void lexesOnDemandLikeUpFront() {
+        String source = repeat(STATEMENT, 300);
+        TokenBuffer eager = new Lexer(source).tokenize();
+        TokenBuffer onDemand = new Lexer(source).tokenizeOnDemand();
+
+        for(int i = 0 ; i < eager.size() ; i++) {
+            assertEquals(eager.getType(i), onDemand.getType(i));
+            assertEquals(eager.getStart(i), onDemand.getStart(i));
+            assertEquals(eager.getEnd(i), onDemand.getEnd(i));
+            assertSame(eager.getSymbol(i), onDemand.getSymbol(i));
+            assertEquals(eager.getLiteral(i), onDemand.getLiteral(i));
+        }
+        assertEquals(eager.size(), onDemand.size());
+    }
+
+    @Test
+    public void lexesOnlyAsFarAsItIsRead() {
+        TokenBuffer onDemand = new Lexer(repeat(STATEMENT, 300)).tokenizeOnDemand();
+        assertEquals(TokenType.LET, onDemand.getType(0));
+        assertTrue(onDemand.size() < 4096);
+
+        // A jump far ahead lexes up to it across pages
+        assertEquals(new Lexer(repeat(STATEMENT, 300)).tokenize().getType(9000), onDemand.getType(9000));
+        assertTrue(onDemand.size() > 9000);
+    }
+
+    @Test
+    public void keepsReturningEofPastTheEnd() {
+        TokenBuffer eager = new Lexer("a + 1").tokenize();
+        TokenBuffer onDemand = new Lexer("a + 1").tokenizeOnDemand();
+        assertEquals(TokenType.EOF, eager.getType(3));
+        assertEquals(TokenType.EOF, eager.getType(100));
+        assertEquals(TokenType.EOF, onDemand.getType(100));
+        assertEquals(4, onDemand.size());
+    }
+
+    @Test
+    public void readsLiteralsFromTheSource() {
+        String source = "let s = \"h\u00e9llo \ud83d\ude00\"; 9223372036854775807; s";
+        TokenBuffer buffer = new Lexer(new Utf8Sequence(ByteBuffer.wrap(source.getBytes(StandardCharsets.UTF_8)))).tokenize();
+
+        assertSame(Symbol.intern("s"), buffer.getSymbol(1));
+        assertEquals(TokenType.STRING, buffer.getType(3));
+        assertEquals("h\u00e9llo \ud83d\ude00", buffer.getLiteral(3));
+        assertEquals(Long.MAX_VALUE, buffer.parseLong(5));
+        assertEquals("s", buffer.getToken(7).getLiteral());
+        assertEquals(TokenType.IDENT, buffer.getToken(7).getTokenType());
+    }
+
+    @Test
+    public void rejectsIntegersThatDoNotFitALong() {
+        TokenBuffer buffer = new Lexer("9223372036854775808").tokenize();
+        try {
+            buffer.parseLong(0);
+            fail();
+        } catch (NumberFormatException e) {
+            assertEquals("For input string: \"9223372036854775808\"", e.getMessage());
+        }
+    }
+
+    private static String repeat(String text, int times) {
+        StringBuilder builder = new StringBuilder();
+        for(int i = 0 ; i < times ; i++) builder.append(text);
+        return builder.toString();
+    }
+}
@@ -0,0 +1,53 @@
+package vm;
+
+import embed.KongProgram;
+import org.junit.Test;
+import repl.Engine;
+
+import static org.junit.Assert.assertEquals;
+
+public class VMTest {
+
+    @Test
+    public void runsDeepTailRecursionInConstantFrames() {
+        assertSameResult("4500001500000", ""
+                + "let loop = fn(i, acc) { if (i == 0) { acc } else { loop(i - 1, acc + i) } };"
+                + "loop(3000000, 0)");
+    }
+
+    @Test
+    public void runsMutualTailCallsAndReturns() {
+        assertSameResult("[true, false]", ""
+                + "let even = fn(n) { if (n == 0) { return true; } return odd(n - 1); };"
+                + "let odd = fn(n) { if (n == 0) { false } else { even(n - 1) } };"
+                + "[even(1000000), odd(1000000)]");
+    }
+
+    @Test
+    public void keepsCapturedLocalsOfTheReplacedFrame() {
+        assertSameResult("[10, 11, 12]", ""
+                + "let apply = fn(f, x) { f(x) };"
+                + "let adder = fn(n) { let add = fn(x) { x + n }; apply(add, 1) };"
+                + "let collect = fn(i, acc) { if (i > 12) { acc } else { collect(i + 1, push(acc, adder(i - 1))) } };"
+                + "collect(10, [])");
+    }
+
+    @Test
+    public void cachesResultsOfMemoizedTailCalls() {
+        assertSameResult("[55, 3]", ""
+                + "let count = fn(n, acc) { if (n == 0) { acc } else { count(n - 1, acc + n) } };"
+                + "let cached = memo(fn(n) { count(n, 0) });"
+                + "let outer = fn(n) { cached(n) };"
+                + "[outer(10), len([outer(10), outer(10), outer(10)])]");
+    }
+
+    @Test
+    public void callsBuiltinsInTailPosition() {
+        assertSameResult("3", "let size = fn(a) { len(a) }; size([1, 2, 3])");
+    }
+
+    private static void assertSameResult(String expected, String source) {
+        assertEquals(expected, KongProgram.compile(source, Engine.VM).execute().inspect());
+        assertEquals(expected, KongProgram.compile(source, Engine.EVALUATOR).execute().inspect());
+    }
+}